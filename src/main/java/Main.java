@@ -1,16 +1,24 @@
+import core.RuleController;
+import graphics.BatchRenderer;
 import graphics.LSystemViewer;
 import javax.swing.*;
 
 /**
  * Main entry point for the L-System visualization application.
- * Creates and displays the L-System viewer window on the Event Dispatch Thread.
+ * Without arguments, creates and displays the L-System viewer window on the Event Dispatch
+ * Thread. With arguments, renders a batch of derivations to files without any window, see
+ * {@link BatchRenderer#fromArguments(String[], java.util.List)}.
  */
 public class Main {
     /**
      * Application entry point.
-     * @param args command line arguments (currently unused)
+     * @param args command line arguments, the batch options, or none to open the viewer
      */
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(renderBatch(args));
+        }
+
         // Opens L system window.
         SwingUtilities.invokeLater(
                 () -> {
@@ -23,4 +31,34 @@ public class Main {
                     }
                 });
     }
+
+    /**
+     * Renders a batch headlessly and prints its throughput
+     * @return process exit status
+     */
+    private static int renderBatch(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        BatchRenderer batch;
+        try {
+            batch = BatchRenderer.fromArguments(args, new RuleController().getRules());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(
+                    "Usage: --rules NAME[,NAME...]|all --seeds FROM[..TO]"
+                            + " --iterations N[,N...]|FROM..TO --size WIDTHxHEIGHT"
+                            + " --format png|svg --out DIRECTORY --threads N --budget N"
+                            + " --line-width W");
+            return 2;
+        }
+
+        try {
+            BatchRenderer.Report report = batch.run(System.err);
+            System.out.println(report);
+            return report.getFailed() == 0 ? 0 : 1;
+        } catch (Exception e) {
+            System.err.println("Batch render failed: " + e.getMessage());
+            return 1;
+        }
+    }
 }
@@ -0,0 +1,162 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Bracket structure of a generation, used to find the context of modules in O(1).
+ *
+ * <p>Built in two linear passes over the modules, it holds for every module:
+ * <ul>
+ *   <li>the matching bracket of '[' and ']' modules;</li>
+ *   <li>the left context: the previous module on the path towards the root. Completed
+ *   sub-branches are skipped and the first module of a branch sees the module before its '[';</li>
+ *   <li>the right context: the next module of the same branch, skipping nested sub-branches,
+ *   or -1 at the end of a branch.</li>
+ * </ul>
+ * Modules whose symbol is ignored (e.g. turns) are never a context. The arrays are reused when
+ * the index is rebuilt for the next generation.
+ */
+public class BranchIndex {
+    private static final int ASCII_SYMBOLS = 128;
+
+    private final boolean[] asciiIgnored = new boolean[ASCII_SYMBOLS];
+    private final String ignoredSymbols;
+
+    private ModuleString modules;
+    private int[] matching = new int[0];
+    private int[] leftContext = new int[0];
+    private int[] rightContext = new int[0];
+    private int[] stack = new int[16];
+
+    /**
+     * Creates an empty index
+     * @param ignoredSymbols Symbols skipped when looking for a context, e.g. "+-F"
+     */
+    public BranchIndex(String ignoredSymbols) {
+        this.ignoredSymbols = ignoredSymbols;
+
+        for (int i = 0; i < ignoredSymbols.length(); i++) {
+            char symbol = ignoredSymbols.charAt(i);
+            if (symbol < ASCII_SYMBOLS) asciiIgnored[symbol] = true;
+        }
+    }
+
+    /**
+     * Indexes a generation, replacing the previous one
+     * @param modules Generation to index
+     * @return this for method chaining
+     */
+    public BranchIndex build(ModuleString modules) {
+        int size = modules.size();
+        this.modules = modules;
+
+        if (matching.length < size) {
+            matching = new int[size];
+            leftContext = new int[size];
+            rightContext = new int[size];
+        }
+        Arrays.fill(matching, 0, size, -1);
+
+        int depth = 0;
+        int last = -1;
+        for (int i = 0; i < size; i++) {
+            char symbol = modules.symbolAt(i);
+            leftContext[i] = last;
+
+            if (symbol == '[') {
+                push(depth++, i);
+                push(depth++, last);
+            } else if (symbol == ']') {
+                if (depth == 0) continue; // unbalanced, nothing to restore
+
+                last = stack[--depth];
+                int open = stack[--depth];
+                matching[open] = i;
+                matching[i] = open;
+            } else if (!isIgnored(symbol)) {
+                last = i;
+            }
+        }
+
+        depth = 0;
+        int next = -1;
+        for (int i = size - 1; i >= 0; i--) {
+            char symbol = modules.symbolAt(i);
+            rightContext[i] = next;
+
+            if (symbol == ']') {
+                push(depth++, next);
+                next = -1;
+            } else if (symbol == '[') {
+                if (depth > 0) next = stack[--depth];
+            } else if (!isIgnored(symbol)) {
+                next = i;
+            }
+        }
+
+        return this;
+    }
+
+    private void push(int depth, int value) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+
+        stack[depth] = value;
+    }
+
+    private boolean isIgnored(char symbol) {
+        return symbol < ASCII_SYMBOLS ? asciiIgnored[symbol] : ignoredSymbols.indexOf(symbol) >= 0;
+    }
+
+    /**
+     * Gets the symbols skipped when looking for a context
+     * @return The ignored symbols
+     */
+    public String getIgnoredSymbols() {
+        return ignoredSymbols;
+    }
+
+    /**
+     * Gets the generation this index was built for
+     * @return The indexed modules
+     */
+    public ModuleString getModules() {
+        return modules;
+    }
+
+    /**
+     * Gets the matching bracket of a '[' or ']' module
+     * @param index Module index
+     * @return Index of the matching bracket, or -1 if the module is not a matched bracket
+     */
+    public int matching(int index) {
+        return matching[checkIndex(index)];
+    }
+
+    /**
+     * Gets the left context of a module
+     * @param index Module index
+     * @return Index of the left context module, or -1 if there is none
+     */
+    public int leftContext(int index) {
+        return leftContext[checkIndex(index)];
+    }
+
+    /**
+     * Gets the right context of a module
+     * @param index Module index
+     * @return Index of the right context module, or -1 if there is none
+     */
+    public int rightContext(int index) {
+        return rightContext[checkIndex(index)];
+    }
+
+    private int checkIndex(int index) {
+        if (modules == null || index < 0 || index >= modules.size()) {
+            throw new IndexOutOfBoundsException("Module " + index + " is not indexed");
+        }
+
+        return index;
+    }
+}
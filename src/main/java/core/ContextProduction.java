@@ -0,0 +1,84 @@
+package core;
+
+import java.util.function.Predicate;
+
+/**
+ * Context-sensitive production, written {@code left < predecessor > right -> successor}. It only
+ * rewrites modules whose left and right contexts (see {@link BranchIndex}) have the given
+ * symbols and, optionally, satisfy a condition.
+ */
+public final class ContextProduction {
+    /** Context symbol matching any context, including none */
+    public static final char ANY = '\0';
+
+    private final char left;
+    private final char predecessor;
+    private final char right;
+    private final Predicate<Module> condition;
+    private final Production production;
+
+    /**
+     * Creates a context-sensitive production
+     * @param left Symbol of the left context, or {@link #ANY}
+     * @param predecessor Symbol of the rewritten module
+     * @param right Symbol of the right context, or {@link #ANY}
+     * @param production Appends the successor
+     */
+    public ContextProduction(char left, char predecessor, char right, Production production) {
+        this(left, predecessor, right, module -> true, production);
+    }
+
+    /**
+     * Creates a context-sensitive production with a condition
+     * @param left Symbol of the left context, or {@link #ANY}
+     * @param predecessor Symbol of the rewritten module
+     * @param right Symbol of the right context, or {@link #ANY}
+     * @param condition Must hold for the module (whose contexts can be read through {@link
+     * Module#getLeftContext()} and {@link Module#getRightContext()}) to be rewritten
+     * @param production Appends the successor
+     */
+    public ContextProduction(
+            char left,
+            char predecessor,
+            char right,
+            Predicate<Module> condition,
+            Production production) {
+        this.left = left;
+        this.predecessor = predecessor;
+        this.right = right;
+        this.condition = condition;
+        this.production = production;
+    }
+
+    /**
+     * Checks if a module is rewritten by this production
+     * @param module Module with a branch index (see {@link Module#getLeftContext()})
+     * @return true if the contexts and condition match
+     */
+    public boolean matches(Module module) {
+        return matchesContext(left, module.getLeftContext(), module)
+                && matchesContext(right, module.getRightContext(), module)
+                && condition.test(module);
+    }
+
+    private static boolean matchesContext(char expected, int context, Module module) {
+        return expected == ANY
+                || (context >= 0 && module.getSource().symbolAt(context) == expected);
+    }
+
+    public char getLeft() {
+        return left;
+    }
+
+    public char getPredecessor() {
+        return predecessor;
+    }
+
+    public char getRight() {
+        return right;
+    }
+
+    public Production getProduction() {
+        return production;
+    }
+}
@@ -0,0 +1,99 @@
+package core;
+
+import java.time.Instant;
+
+/**
+ * State of a single derivation: the seed of its random numbers (see {@link Module#random()}) and
+ * the scratch buffers reused from one iteration to the next.
+ *
+ * <p>An {@link LSystemEngine} holds no per-derivation state, so any number of derivations can run
+ * concurrently on the same engine as long as each one has its own context. What the engine does
+ * share between derivations, its growth prediction and memoised expansions, is thread-safe. A
+ * context must not be shared by concurrent derivations; it can be reused by successive ones.
+ *
+ * <h3>Usage Example:</h3>
+ * <pre>
+ * DerivationContext context = new DerivationContext(12345L);
+ * ModuleString tree = engine.generateModules(8, context);
+ * </pre>
+ */
+public final class DerivationContext {
+    private final long seed;
+    private final Module module = new Module();
+
+    private BranchIndex branchIndex;
+    private ModuleString[] chunks = new ModuleString[0];
+
+    /**
+     * Creates a context with a time-based seed
+     */
+    public DerivationContext() {
+        this(newSeed());
+    }
+
+    /**
+     * Creates a context
+     * @param seed Seed of the random numbers drawn by stochastic productions
+     */
+    public DerivationContext(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Generates a time-based seed, unique even when called several times within the same
+     * millisecond.
+     * @return A new seed
+     */
+    public static long newSeed() {
+        Instant now = Instant.now();
+
+        // mixing milli with nanoseconds gives us a really random number
+        return now.toEpochMilli() ^ (now.getNano() >>> 16);
+    }
+
+    /**
+     * Gets the seed of the random numbers drawn by stochastic productions
+     * @return Derivation seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the module view used by sequential rewrites
+     */
+    Module module() {
+        return module;
+    }
+
+    /**
+     * Gets the branch index of this derivation, creating it on first use
+     * @param ignoredSymbols Symbols skipped when looking for a context
+     */
+    BranchIndex branchIndex(String ignoredSymbols) {
+        if (branchIndex == null || !branchIndex.getIgnoredSymbols().equals(ignoredSymbols)) {
+            branchIndex = new BranchIndex(ignoredSymbols);
+        }
+
+        return branchIndex;
+    }
+
+    /**
+     * Gets at least {@code count} per-chunk output buffers of a parallel rewrite, reusing the
+     * ones of previous iterations
+     * @param capacity Initial capacity of new buffers
+     */
+    ModuleString[] chunkBuffers(int count, int capacity) {
+        if (chunks.length < count) {
+            ModuleString[] grown = new ModuleString[count];
+            System.arraycopy(chunks, 0, grown, 0, chunks.length);
+
+            for (int c = chunks.length; c < count; c++) {
+                grown[c] = new ModuleString(capacity);
+            }
+            chunks = grown;
+        }
+
+        return chunks;
+    }
+}
@@ -0,0 +1,219 @@
+package core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Node of the expansion DAG built by {@link LSystemEngine#expand(int)}.
+ *
+ * <p>A leaf is a single module of the final generation. Any other node is the ordered sequence
+ * of its children, e.g. the expansion of "X" after k iterations is the sequence of the expansions
+ * of its successor's modules after k - 1 iterations. Identical (module, depth) pairs share one
+ * node, so a deep derivation of a deterministic rule is held in a graph that grows with the
+ * number of iterations instead of the length of the output.
+ */
+public final class Expansion {
+    private final char symbol;
+    private final double[] parameters;
+    private final Expansion[] children;
+    private final int depth;
+    private final long length;
+
+    /**
+     * Creates a leaf holding a single module
+     */
+    Expansion(char symbol, double[] parameters) {
+        this.symbol = symbol;
+        this.parameters = parameters;
+        this.children = null;
+        this.depth = 0;
+        this.length = 1;
+    }
+
+    /**
+     * Creates a node that is the sequence of {@code children}
+     */
+    Expansion(int depth, Expansion[] children) {
+        long total = 0;
+        for (Expansion child : children) {
+            total = saturatedAdd(total, child.length);
+        }
+
+        this.symbol = 0;
+        this.parameters = null;
+        this.children = children;
+        this.depth = depth;
+        this.length = total;
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * Checks if this node is a single module of the final generation
+     * @return true for leaves
+     */
+    public boolean isLeaf() {
+        return children == null;
+    }
+
+    /**
+     * Gets the symbol of a leaf
+     * @return The module symbol
+     * @throws IllegalStateException if this node is not a leaf
+     */
+    public char getSymbol() {
+        checkLeaf();
+        return symbol;
+    }
+
+    /**
+     * Gets a copy of the parameters of a leaf
+     * @return The module parameters
+     * @throws IllegalStateException if this node is not a leaf
+     */
+    public double[] getParameters() {
+        checkLeaf();
+        return parameters.clone();
+    }
+
+    private void checkLeaf() {
+        if (children != null) {
+            throw new IllegalStateException("Only leaves hold a module");
+        }
+    }
+
+    /**
+     * Gets how many iterations were applied to obtain this node, 0 for leaves
+     * @return Number of iterations
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Gets the number of children, 0 for leaves
+     * @return Number of children
+     */
+    public int getChildCount() {
+        return children == null ? 0 : children.length;
+    }
+
+    /**
+     * Gets a child of this node
+     * @param index Child index
+     * @return The child node
+     */
+    public Expansion getChild(int index) {
+        if (children == null) {
+            throw new IndexOutOfBoundsException("Leaves have no children");
+        }
+
+        return children[index];
+    }
+
+    /**
+     * Gets the number of modules this node expands to, without expanding it. Saturates at
+     * {@link Long#MAX_VALUE}.
+     * @return Number of final modules
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Counts the final modules with the given symbol, visiting every distinct node once
+     * @param symbol Symbol to count
+     * @return Number of modules with that symbol, saturating at {@link Long#MAX_VALUE}
+     */
+    public long count(char symbol) {
+        return count(symbol, new HashMap<>());
+    }
+
+    private long count(char target, Map<Expansion, Long> counted) {
+        if (children == null) return symbol == target ? 1 : 0;
+
+        Long cached = counted.get(this);
+        if (cached != null) return cached;
+
+        long total = 0;
+        for (Expansion child : children) {
+            total = saturatedAdd(total, child.count(target, counted));
+        }
+
+        counted.put(this, total);
+        return total;
+    }
+
+    /**
+     * Emits every final module, in order, to {@code sink}
+     * @param sink Receiver of the modules
+     */
+    public void emit(ModuleSink sink) {
+        if (children == null) {
+            sink.accept(symbol, parameters, 0, parameters.length);
+            return;
+        }
+
+        for (Expansion child : children) {
+            child.emit(sink);
+        }
+    }
+
+    /**
+     * Expands this node into a module string
+     * @return The final modules
+     * @throws IllegalStateException if the expansion does not fit in a module string
+     */
+    public ModuleString toModuleString() {
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException(
+                    "Expansion of " + length + " modules does not fit in a module string");
+        }
+
+        ModuleString modules = new ModuleString((int) length);
+        emit(modules);
+
+        return modules;
+    }
+
+    /**
+     * Identifies an expansion by the expanded module and the remaining number of iterations
+     */
+    static final class Key {
+        private final char symbol;
+        private final double[] parameters;
+        private final int depth;
+        private final int hash;
+
+        Key(char symbol, double[] parameters, int depth) {
+            this.symbol = symbol;
+            this.parameters = parameters;
+            this.depth = depth;
+
+            int h = 31 * symbol + depth;
+            for (double parameter : parameters) {
+                h = 31 * h + Double.hashCode(parameter);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+
+            Key that = (Key) other;
+            return symbol == that.symbol
+                    && depth == that.depth
+                    && Arrays.equals(parameters, that.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
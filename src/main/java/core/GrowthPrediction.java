@@ -0,0 +1,161 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Predicts how large the generations of an L-System get, see {@link LSystemEngine#predictGrowth()}.
+ *
+ * <p>The prediction is based on the growth matrix of the productions: entry (a, b) is how many
+ * modules with symbol b the successor of a module with symbol a holds. Starting from the symbol
+ * counts of the axiom, the counts of iteration n + 1 are the counts of iteration n multiplied by
+ * the matrix. The matrix is exact for non-parametric rules and an average over sampled modules for
+ * parametric and stochastic ones.
+ *
+ * <p>A prediction is shared by the derivations of an engine, which may run on several threads.
+ * Counts of each iteration are computed on first use under the lock of the prediction, and never
+ * change afterwards.
+ */
+public final class GrowthPrediction {
+    // Footprint of a module in a ModuleString: a char symbol and an int offset
+    private static final int BYTES_PER_MODULE = Character.BYTES + Integer.BYTES;
+
+    private final char[] alphabet;
+    private final double[][] matrix;
+    private final double[] parametersPerModule;
+
+    private double[][] counts;
+    private int computed;
+
+    /**
+     * Creates a prediction
+     * @param alphabet Symbols of the L-System; index i of the vectors below refers to alphabet[i]
+     * @param axiomCounts Number of modules of each symbol in the axiom
+     * @param matrix Growth matrix, matrix[a][b] modules of symbol b per module of symbol a
+     * @param parametersPerModule Average number of parameters of the modules of each symbol
+     */
+    GrowthPrediction(
+            char[] alphabet,
+            double[] axiomCounts,
+            double[][] matrix,
+            double[] parametersPerModule) {
+        this.alphabet = alphabet;
+        this.matrix = matrix;
+        this.parametersPerModule = parametersPerModule;
+
+        counts = new double[8][];
+        counts[0] = axiomCounts;
+    }
+
+    private synchronized double[] countsAt(int iteration) {
+        if (iteration < 0) {
+            throw new IllegalArgumentException("Iterations must be non-negative");
+        }
+
+        if (iteration >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(iteration + 1, counts.length * 2));
+        }
+
+        for (; computed < iteration; computed++) {
+            double[] current = counts[computed];
+            double[] next = new double[alphabet.length];
+
+            for (int a = 0; a < alphabet.length; a++) {
+                if (current[a] == 0) continue;
+
+                for (int b = 0; b < alphabet.length; b++) {
+                    next[b] += current[a] * matrix[a][b];
+                }
+            }
+            counts[computed + 1] = next;
+        }
+
+        return counts[iteration];
+    }
+
+    /**
+     * Predicts the number of modules of an iteration
+     * @param iteration Iteration number, 0 being the axiom
+     * @return Predicted number of modules
+     */
+    public double moduleCount(int iteration) {
+        double total = 0;
+        for (double count : countsAt(iteration)) {
+            total += count;
+        }
+
+        return total;
+    }
+
+    /**
+     * Predicts the number of modules with a given symbol in an iteration
+     * @param iteration Iteration number, 0 being the axiom
+     * @param symbol Symbol to count
+     * @return Predicted number of modules with that symbol, 0 for unknown symbols
+     */
+    public double moduleCount(int iteration, char symbol) {
+        int index = indexOf(symbol);
+        return index < 0 ? 0 : countsAt(iteration)[index];
+    }
+
+    /**
+     * Predicts the number of parameters of an iteration
+     * @param iteration Iteration number, 0 being the axiom
+     * @return Predicted number of parameters
+     */
+    public double parameterCount(int iteration) {
+        double[] current = countsAt(iteration);
+        double total = 0;
+
+        for (int a = 0; a < alphabet.length; a++) {
+            total += current[a] * parametersPerModule[a];
+        }
+
+        return total;
+    }
+
+    /**
+     * Predicts the memory taken by an iteration stored in a {@link ModuleString}
+     * @param iteration Iteration number, 0 being the axiom
+     * @return Predicted size in bytes, saturating at {@link Long#MAX_VALUE}
+     */
+    public long byteSize(int iteration) {
+        double bytes =
+                moduleCount(iteration) * BYTES_PER_MODULE
+                        + parameterCount(iteration) * Double.BYTES;
+
+        return bytes >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) Math.ceil(bytes);
+    }
+
+    /**
+     * Finds the deepest iteration whose predicted number of modules fits in a budget
+     * @param moduleBudget Maximum number of modules
+     * @param limit Largest iteration to consider
+     * @return The deepest iteration within budget, at most {@code limit}, or -1 if even the
+     * axiom exceeds it
+     */
+    public int maxIterations(long moduleBudget, int limit) {
+        int iteration = -1;
+
+        while (iteration < limit && moduleCount(iteration + 1) <= moduleBudget) {
+            iteration++;
+        }
+
+        return iteration;
+    }
+
+    /**
+     * Gets the symbols the prediction knows about
+     * @return A copy of the alphabet
+     */
+    public char[] getAlphabet() {
+        return alphabet.clone();
+    }
+
+    private int indexOf(char symbol) {
+        for (int i = 0; i < alphabet.length; i++) {
+            if (alphabet[i] == symbol) return i;
+        }
+
+        return -1;
+    }
+}
@@ -1,22 +1,70 @@
 package core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * Core engine for L-System generation.
  * Handles the iterative application of production rules to generate L-system strings.
+ *
+ * <p>Generations are kept as {@link ModuleString}s, strings are only produced on demand by
+ * {@link #generate(int)} and {@link #applyRules(String)}. Rules with context-sensitive
+ * productions get a {@link BranchIndex} of every generation before it is rewritten.
+ *
+ * <p>Stochastic productions draw from {@link Module#random()}, keyed by the seed of the
+ * derivation, the iteration and the position of the module. The same seed derives the same
+ * modules whether generations are rewritten sequentially, in parallel or streamed.
+ *
+ * <p>Per-derivation state lives in a {@link DerivationContext}, so concurrent derivations can
+ * share an engine as long as each has its own context and the engine is not reconfigured (e.g.
+ * with {@link #setRule(LSystemRule)}) meanwhile. The state derivations share, the
+ * {@link GrowthPrediction} checked against the module budget and the memoised expansions, is
+ * computed once and safe to read from any thread. Methods without a context use a new one seeded
+ * with {@link #getSeed()}.
  */
 public class LSystemEngine {
+    // Modules rewritten by a single parallel task. Smaller generations are rewritten sequentially.
+    private static final int PARALLEL_CHUNK_SIZE = 1 << 13;
+
+    // Growth prediction samples at most this many modules per iteration, for this many iterations
+    private static final int GROWTH_SAMPLE_MODULES = 1 << 12;
+    private static final int GROWTH_SAMPLE_ITERATIONS = 8;
+
+    // Productions of ASCII symbols are looked up in an array, others in a map
+    private static final int ASCII_SYMBOLS = 128;
+
     private LSystemRule rule;
+    private final Production[] asciiProductions = new Production[ASCII_SYMBOLS];
+    private final Map<Character, Production> otherProductions = new HashMap<>();
+    private final ContextProduction[][] asciiContextProductions =
+            new ContextProduction[ASCII_SYMBOLS][];
+    private final Map<Character, ContextProduction[]> otherContextProductions = new HashMap<>();
+    private String contextIgnoredSymbols; // null for context-free rules
+
+    private ForkJoinPool pool;
+
+    private boolean memoized;
+    private final Map<Expansion.Key, Expansion> expansions = new ConcurrentHashMap<>();
+
+    private volatile GrowthPrediction growthPrediction;
+    private long moduleBudget = Long.MAX_VALUE;
+
+    private long seed;
 
     /**
      * Creates a new L-System engine with the specified rules
      * @param rule The L-System rule set to use
      */
     public LSystemEngine(LSystemRule rule) {
-        this.rule = rule;
+        setRule(rule);
     }
 
     /**
@@ -25,49 +73,568 @@ public class LSystemEngine {
      * @return Generated L-System string
      */
     public String generate(int iterations) {
+        return generate(iterations, new DerivationContext(seed));
+    }
+
+    /**
+     * Generates an L-System string for the specified number of iterations
+     * @param iterations Number of iterations to apply
+     * @param context State of this derivation
+     * @return Generated L-System string
+     */
+    public String generate(int iterations, DerivationContext context) {
+        return generateModules(iterations, context).toString();
+    }
+
+    /**
+     * Generates the modules of the L-System for the specified number of iterations
+     * @param iterations Number of iterations to apply
+     * @return Generated modules
+     */
+    public ModuleString generateModules(int iterations) {
+        return generateModules(iterations, new DerivationContext(seed));
+    }
+
+    /**
+     * Generates the modules of the L-System for the specified number of iterations
+     * @param iterations Number of iterations to apply
+     * @param context State of this derivation
+     * @return Generated modules
+     */
+    public ModuleString generateModules(int iterations, DerivationContext context) {
         if (iterations < 0) {
             throw new IllegalArgumentException("Iterations must be non-negative");
         }
 
-        String current = rule.getAxiom();
+        checkBudget(iterations);
+
+        if (memoized && rule.isDeterministic() && contextIgnoredSymbols == null) {
+            return expand(iterations).toModuleString();
+        }
+
+        ModuleString current = ModuleString.parse(rule.getAxiom());
+        ModuleString next = new ModuleString(current.size());
 
+        GrowthPrediction prediction = growthPrediction;
         for (int i = 0; i < iterations; i++) {
-            current = applyRules(current);
+            if (prediction != null) presize(prediction, next, i + 1);
+            applyRules(current, next, i, context);
+
+            ModuleString swap = current;
+            current = next;
+            next = swap;
         }
 
         return current;
     }
 
+    /**
+     * Streams the modules of the specified iteration to {@code sink} without building any
+     * generation. The axiom is expanded depth-first, so only one successor per depth is kept in
+     * memory: memory grows with the number of iterations, not with the length of the output.
+     *
+     * <p>Modules are emitted in the same order as {@link #generateModules(int)} would hold them.
+     * The position of every module in its generation is tracked with one counter per iteration,
+     * so stochastic rules produce the same modules as well.
+     * @param iterations Number of iterations to apply
+     * @param sink Receives the modules of the final iteration, in order
+     */
+    public void stream(int iterations, ModuleSink sink) {
+        stream(iterations, new DerivationContext(seed), sink);
+    }
+
+    /**
+     * Streams the modules of the specified iteration to {@code sink}, see {@link #stream(int,
+     * ModuleSink)}
+     * @param iterations Number of iterations to apply
+     * @param context State of this derivation
+     * @param sink Receives the modules of the final iteration, in order
+     */
+    public void stream(int iterations, DerivationContext context, ModuleSink sink) {
+        if (iterations < 0) {
+            throw new IllegalArgumentException("Iterations must be non-negative");
+        }
+        checkContextFree("Streaming derivation");
+
+        ModuleString axiom = ModuleString.parse(rule.getAxiom());
+        ModuleString[] successors = new ModuleString[iterations];
+        for (int depth = 0; depth < iterations; depth++) {
+            successors[depth] = new ModuleString();
+        }
+
+        long[] positions = new long[iterations];
+        for (int i = 0; i < axiom.size(); i++) {
+            expand(axiom, i, iterations, successors, positions, context, sink);
+        }
+    }
+
+    /**
+     * Expands a module {@code depth} more times, emitting the final modules. The successor of a
+     * module at a given depth is written into {@code successors[depth - 1]}; deeper expansions
+     * only use lower indices, so the buffer stays valid while its modules are expanded.
+     * {@code positions[g]} counts the modules of generation g visited so far.
+     */
+    private void expand(
+            ModuleString source,
+            int index,
+            int depth,
+            ModuleString[] successors,
+            long[] positions,
+            DerivationContext context,
+            ModuleSink sink) {
+        int generation = positions.length - depth;
+
+        // Modules without a production are copied unchanged by every iteration
+        if (depth == 0 || !hasProduction(source.symbolAt(index))) {
+            for (int g = generation; g < positions.length; g++) {
+                positions[g]++;
+            }
+
+            sink.accept(
+                    source.symbolAt(index),
+                    source.parameterArray(),
+                    source.parameterOffset(index),
+                    source.parameterCount(index));
+            return;
+        }
+
+        ModuleString successor = successors[depth - 1];
+        successor.clear();
+        Module view = context.module().forIteration(context.getSeed(), generation);
+        rewrite(source, index, positions[generation]++, successor, view);
+
+        for (int i = 0; i < successor.size(); i++) {
+            expand(successor, i, depth - 1, successors, positions, context, sink);
+        }
+    }
+
+    /**
+     * Predicts the growth of the current rule (see {@link GrowthPrediction}). The growth matrix
+     * is measured by rewriting the modules of the first few iterations, at most {@value
+     * #GROWTH_SAMPLE_MODULES} of them per iteration. Stochastic rules are sampled with the seed of
+     * the engine. The prediction is cached until the rule changes, and analysed once even when
+     * derivations on several threads ask for it.
+     * @return The growth prediction
+     */
+    public GrowthPrediction predictGrowth() {
+        GrowthPrediction prediction = growthPrediction;
+        if (prediction == null) {
+            synchronized (this) {
+                prediction = growthPrediction;
+                if (prediction == null) {
+                    prediction = analyzeGrowth();
+                    growthPrediction = prediction;
+                }
+            }
+        }
+
+        return prediction;
+    }
+
+    private GrowthPrediction analyzeGrowth() {
+        Map<Character, Integer> alphabet = new LinkedHashMap<>();
+        Map<Character, Map<Character, Integer>> successorCounts = new HashMap<>();
+        Map<Character, Integer> rewrites = new HashMap<>();
+        Map<Character, Integer> observed = new HashMap<>();
+        Map<Character, Integer> observedParameters = new HashMap<>();
+
+        ModuleString generation = ModuleString.parse(rule.getAxiom());
+        ModuleString next = new ModuleString();
+        ModuleString successor = new ModuleString();
+        double[] axiomCounts = new double[0];
+        Module module = new Module();
+        BranchIndex branchIndex =
+                contextIgnoredSymbols == null ? null : new BranchIndex(contextIgnoredSymbols);
+
+        for (int iteration = 0; iteration <= GROWTH_SAMPLE_ITERATIONS; iteration++) {
+            boolean last = iteration == GROWTH_SAMPLE_ITERATIONS;
+            int stride = Math.max(1, generation.size() / GROWTH_SAMPLE_MODULES);
+            next.clear();
+            module.withBranchIndex(branchIndex == null ? null : branchIndex.build(generation));
+            module.forIteration(seed, iteration);
+
+            for (int i = 0; i < generation.size(); i += stride) {
+                char symbol = generation.symbolAt(i);
+                alphabet.putIfAbsent(symbol, alphabet.size());
+                observed.merge(symbol, 1, Integer::sum);
+                observedParameters.merge(symbol, generation.parameterCount(i), Integer::sum);
+
+                // The last pass only fills in symbols that were never rewritten
+                if (!hasProduction(symbol) || (last && rewrites.containsKey(symbol))) continue;
+
+                successor.clear();
+                rewrite(generation, i, i, successor, module);
+                rewrites.merge(symbol, 1, Integer::sum);
+
+                Map<Character, Integer> counts =
+                        successorCounts.computeIfAbsent(symbol, k -> new HashMap<>());
+                for (int j = 0; j < successor.size(); j++) {
+                    counts.merge(successor.symbolAt(j), 1, Integer::sum);
+                }
+
+                if (next.size() < GROWTH_SAMPLE_MODULES) next.appendAll(successor);
+            }
+
+            if (iteration == 0) {
+                // Counts the whole axiom, including symbols only found between sampled modules
+                for (int i = 0; i < generation.size(); i++) {
+                    alphabet.putIfAbsent(generation.symbolAt(i), alphabet.size());
+                }
+                axiomCounts = new double[alphabet.size()];
+                for (int i = 0; i < generation.size(); i++) {
+                    axiomCounts[alphabet.get(generation.symbolAt(i))]++;
+                }
+            }
+
+            ModuleString swap = generation;
+            generation = next;
+            next = swap;
+        }
+
+        for (Map<Character, Integer> counts : successorCounts.values()) {
+            for (Character symbol : counts.keySet()) {
+                alphabet.putIfAbsent(symbol, alphabet.size());
+            }
+        }
+
+        int size = alphabet.size();
+        char[] symbols = new char[size];
+        double[][] matrix = new double[size][size];
+        double[] parametersPerModule = new double[size];
+
+        for (Map.Entry<Character, Integer> entry : alphabet.entrySet()) {
+            char symbol = entry.getKey();
+            int a = entry.getValue();
+            symbols[a] = symbol;
+
+            Integer samples = rewrites.get(symbol);
+            if (samples == null) {
+                matrix[a][a] = 1; // copied unchanged
+            } else {
+                for (Map.Entry<Character, Integer> count : successorCounts.get(symbol).entrySet()) {
+                    matrix[a][alphabet.get(count.getKey())] = count.getValue() / (double) samples;
+                }
+            }
+
+            Integer modules = observed.get(symbol);
+            if (modules != null) {
+                parametersPerModule[a] = observedParameters.get(symbol) / (double) modules;
+            }
+        }
+
+        return new GrowthPrediction(
+                symbols, Arrays.copyOf(axiomCounts, size), matrix, parametersPerModule);
+    }
+
+    /**
+     * Sets the maximum number of modules a generated iteration may hold. {@link
+     * #generateModules(int)} fails fast, before deriving anything, when the predicted size of the
+     * requested iteration exceeds it.
+     * @param moduleBudget Maximum number of modules, or {@link Long#MAX_VALUE} for no limit
+     */
+    public void setModuleBudget(long moduleBudget) {
+        if (moduleBudget < 0) {
+            throw new IllegalArgumentException("Module budget must be non-negative");
+        }
+
+        this.moduleBudget = moduleBudget;
+    }
+
+    /**
+     * Gets the maximum number of modules a generated iteration may hold
+     * @return The module budget, {@link Long#MAX_VALUE} if there is no limit
+     */
+    public long getModuleBudget() {
+        return moduleBudget;
+    }
+
+    /**
+     * Finds the deepest iteration whose predicted size fits in the module budget
+     * @param limit Largest iteration to consider
+     * @return The deepest safe iteration, at most {@code limit}
+     */
+    public int maxIterationsWithinBudget(int limit) {
+        if (moduleBudget == Long.MAX_VALUE) return limit;
+
+        return Math.max(0, predictGrowth().maxIterations(moduleBudget, limit));
+    }
+
+    private void checkBudget(int iterations) {
+        if (moduleBudget == Long.MAX_VALUE) return;
+
+        double predicted = predictGrowth().moduleCount(iterations);
+        if (predicted > moduleBudget) {
+            throw new IllegalStateException(
+                    String.format(
+                            "Iteration %d would hold about %.0f modules, over the budget of %d",
+                            iterations, predicted, moduleBudget));
+        }
+    }
+
+    /**
+     * Grows a generation buffer to the predicted size of an iteration
+     */
+    private void presize(GrowthPrediction prediction, ModuleString generation, int iteration) {
+        double modules = prediction.moduleCount(iteration);
+        double parameters = prediction.parameterCount(iteration);
+
+        if (modules < Integer.MAX_VALUE - 8 && parameters < Integer.MAX_VALUE - 8) {
+            generation.ensureCapacity((int) Math.ceil(modules), (int) Math.ceil(parameters));
+        }
+    }
+
+    /**
+     * Builds the expansion DAG of the specified iteration. Every (module, remaining iterations)
+     * pair is rewritten once and shared by all its occurrences, and the nodes are cached by the
+     * engine, so deriving deep iterations, or the same iteration again, costs time roughly linear
+     * in the number of iterations instead of the length of the output.
+     * @param iterations Number of iterations to apply
+     * @return Root of the DAG, a sequence of the expansions of the axiom's modules
+     * @throws IllegalStateException if the rule is not deterministic
+     */
+    public Expansion expand(int iterations) {
+        if (iterations < 0) {
+            throw new IllegalArgumentException("Iterations must be non-negative");
+        }
+        if (!rule.isDeterministic()) {
+            throw new IllegalStateException("Memoised expansion requires a deterministic rule");
+        }
+        checkContextFree("Memoised expansion");
+
+        ModuleString axiom = ModuleString.parse(rule.getAxiom());
+        Module view = new Module();
+        Expansion[] children = new Expansion[axiom.size()];
+        for (int i = 0; i < axiom.size(); i++) {
+            children[i] = expansionOf(axiom, i, iterations, view);
+        }
+
+        return new Expansion(iterations, children);
+    }
+
+    /**
+     * Gets the cached expansion of a module, building it (and its missing descendants) if needed
+     */
+    private Expansion expansionOf(ModuleString source, int index, int depth, Module view) {
+        char symbol = source.symbolAt(index);
+        int offset = source.parameterOffset(index);
+        double[] parameters =
+                Arrays.copyOfRange(
+                        source.parameterArray(), offset, offset + source.parameterCount(index));
+
+        // Modules without a production expand to themselves whatever the depth
+        if (!hasProduction(symbol)) depth = 0;
+
+        Expansion.Key key = new Expansion.Key(symbol, parameters, depth);
+        Expansion cached = expansions.get(key);
+        if (cached != null) return cached;
+
+        Expansion expansion;
+        if (depth == 0) {
+            expansion = new Expansion(symbol, parameters);
+        } else {
+            ModuleString successor = new ModuleString();
+            rewrite(source, index, index, successor, view);
+
+            Expansion[] children = new Expansion[successor.size()];
+            for (int i = 0; i < successor.size(); i++) {
+                children[i] = expansionOf(successor, i, depth - 1, view);
+            }
+            expansion = new Expansion(depth, children);
+        }
+
+        expansions.put(key, expansion);
+        return expansion;
+    }
+
     /**
      * Applies production rules to transform the current string
      * @param input Current L-System string
      * @return Transformed string after applying rules
      */
     public String applyRules(String input) {
-        StringBuilder result = new StringBuilder();
-        Map<Character, String> productionRules = rule.getProductionRules();
-        Map<Character, Function<String[], String>> paraProductionRules =
-                null; // parametric production rules
-
-        if (rule.hasParametric()) paraProductionRules = rule.getParametricProductionRules();
-
-        for (String symbol : splitSymbols(input)) {
-            if (paraProductionRules != null) {
-                // The map always has a one character symbol in the beginning
-                Function<String[], String> replacementFunction =
-                        paraProductionRules.get(symbol.charAt(0));
-
-                result.append(
-                        replacementFunction != null
-                                ? replacementFunction.apply(splitParameters(symbol))
-                                : symbol);
-            } else {
-                String replacement = productionRules.get(symbol.charAt(0));
-                result.append(replacement != null ? replacement : symbol.charAt(0));
+        return applyRules(ModuleString.parse(input)).toString();
+    }
+
+    /**
+     * Applies production rules to transform the current generation
+     * @param input Current generation
+     * @return New module string holding the next generation
+     */
+    public ModuleString applyRules(ModuleString input) {
+        ModuleString output = new ModuleString(input.size());
+        applyRules(input, output);
+
+        return output;
+    }
+
+    /**
+     * Applies production rules to {@code input}, replacing the contents of {@code output} with
+     * the next generation, as the first iteration. See {@link #applyRules(ModuleString,
+     * ModuleString, int)}.
+     * @param input Current generation
+     * @param output Receives the next generation; must not be {@code input}
+     */
+    public void applyRules(ModuleString input, ModuleString output) {
+        applyRules(input, output, 0);
+    }
+
+    /**
+     * Applies production rules to {@code input}, replacing the contents of {@code output} with
+     * the next generation. Reusing {@code output} between iterations avoids reallocating buffers.
+     * @param input Current generation
+     * @param output Receives the next generation; must not be {@code input}
+     * @param iteration Number of iterations that derived {@code input}, which keys the random
+     * numbers of stochastic productions together with the seed
+     */
+    public void applyRules(ModuleString input, ModuleString output, int iteration) {
+        applyRules(input, output, iteration, new DerivationContext(seed));
+    }
+
+    /**
+     * Applies production rules to {@code input}, replacing the contents of {@code output} with
+     * the next generation. Reusing {@code output} and {@code context} between iterations avoids
+     * reallocating buffers.
+     * @param input Current generation
+     * @param output Receives the next generation; must not be {@code input}
+     * @param iteration Number of iterations that derived {@code input}, which keys the random
+     * numbers of stochastic productions together with the seed of {@code context}
+     * @param context State of this derivation
+     */
+    public void applyRules(
+            ModuleString input, ModuleString output, int iteration, DerivationContext context) {
+        if (input == output) {
+            throw new IllegalArgumentException("Input and output must be different buffers");
+        }
+
+        BranchIndex branchIndex =
+                contextIgnoredSymbols == null
+                        ? null
+                        : context.branchIndex(contextIgnoredSymbols).build(input);
+
+        if (pool != null && input.size() > PARALLEL_CHUNK_SIZE) {
+            applyRulesInParallel(input, output, iteration, context, branchIndex);
+            return;
+        }
+
+        Module view =
+                context.module()
+                        .withBranchIndex(branchIndex)
+                        .forIteration(context.getSeed(), iteration);
+
+        output.clear();
+        for (int i = 0; i < input.size(); i++) {
+            rewrite(input, i, i, output, view);
+        }
+    }
+
+    /**
+     * Rewrites chunks of the generation concurrently, then joins them in order. Each chunk is
+     * rewritten into its own buffer; a prefix sum over the chunk sizes gives where each one starts
+     * in the preallocated output, so the chunks are copied concurrently as well. The result is
+     * identical to the sequential rewrite.
+     */
+    private void applyRulesInParallel(
+            ModuleString input,
+            ModuleString output,
+            int iteration,
+            DerivationContext context,
+            BranchIndex branchIndex) {
+        int chunkCount = (input.size() + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+        ModuleString[] parts = context.chunkBuffers(chunkCount, PARALLEL_CHUNK_SIZE);
+
+        IntConsumer rewriteChunk =
+                c -> {
+                    // Views are positioned per module, so each task needs its own
+                    Module view =
+                            new Module()
+                                    .withBranchIndex(branchIndex)
+                                    .forIteration(context.getSeed(), iteration);
+                    rewriteChunk(input, c, view, parts[c]);
+                };
+        pool.submit(() -> IntStream.range(0, chunkCount).parallel().forEach(rewriteChunk)).join();
+
+        int[] moduleOffsets = new int[chunkCount + 1];
+        int[] parameterOffsets = new int[chunkCount + 1];
+        for (int c = 0; c < chunkCount; c++) {
+            moduleOffsets[c + 1] = moduleOffsets[c] + parts[c].size();
+            parameterOffsets[c + 1] = parameterOffsets[c] + parts[c].totalParameterCount();
+        }
+
+        output.resize(moduleOffsets[chunkCount], parameterOffsets[chunkCount]);
+        pool.submit(
+                        () ->
+                                IntStream.range(0, chunkCount)
+                                        .parallel()
+                                        .forEach(
+                                                c ->
+                                                        output.copyRegion(
+                                                                parts[c],
+                                                                moduleOffsets[c],
+                                                                parameterOffsets[c])))
+                .join();
+    }
+
+    private void rewriteChunk(ModuleString input, int chunk, Module view, ModuleString output) {
+        int start = chunk * PARALLEL_CHUNK_SIZE;
+        int end = Math.min(start + PARALLEL_CHUNK_SIZE, input.size());
+
+        output.clear();
+        for (int i = start; i < end; i++) {
+            rewrite(input, i, i, output, view);
+        }
+    }
+
+    /**
+     * Appends the successor of a single module to {@code output}
+     * @param position Position of the module in its generation
+     * @param view Module view owned by the calling thread, set to the current iteration
+     */
+    private void rewrite(
+            ModuleString input, int index, long position, ModuleString output, Module view) {
+        char symbol = input.symbolAt(index);
+
+        if (contextIgnoredSymbols != null) {
+            ContextProduction[] candidates = contextProductionsFor(symbol);
+
+            if (candidates != null) {
+                view.at(input, index, position);
+
+                for (ContextProduction candidate : candidates) {
+                    if (candidate.matches(view)) {
+                        candidate.getProduction().apply(view, output);
+                        return;
+                    }
+                }
             }
         }
 
-        return result.toString();
+        Production production = productionFor(symbol);
+
+        if (production != null) {
+            production.apply(view.at(input, index, position), output);
+        } else {
+            output.append(input, index);
+        }
+    }
+
+    private Production productionFor(char symbol) {
+        return symbol < ASCII_SYMBOLS ? asciiProductions[symbol] : otherProductions.get(symbol);
+    }
+
+    private ContextProduction[] contextProductionsFor(char symbol) {
+        return symbol < ASCII_SYMBOLS
+                ? asciiContextProductions[symbol]
+                : otherContextProductions.get(symbol);
+    }
+
+    private boolean hasProduction(char symbol) {
+        return productionFor(symbol) != null;
+    }
+
+    private void checkContextFree(String mode) {
+        if (contextIgnoredSymbols != null) {
+            throw new IllegalStateException(mode + " requires a context-free rule");
+        }
     }
 
     public static String[] splitParameters(String symbol) {
@@ -79,6 +646,82 @@ public class LSystemEngine {
         return null;
     }
 
+    /**
+     * Enables or disables parallel rewriting on the common {@link ForkJoinPool}. Stochastic
+     * productions must draw from {@link Module#random()} to derive the same modules as the
+     * sequential rewrite.
+     * @param parallel true to rewrite large generations in parallel
+     */
+    public void setParallel(boolean parallel) {
+        setParallel(parallel ? ForkJoinPool.commonPool() : null);
+    }
+
+    /**
+     * Rewrites large generations in parallel on the given pool
+     * @param pool Pool to run on, or null to rewrite sequentially
+     */
+    public void setParallel(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Checks if large generations are rewritten in parallel
+     * @return true if a pool is set
+     */
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Sets the seed of the derivations that are not given a {@link DerivationContext}. Deriving
+     * twice with the same seed gives the same modules, there is no random state to reset.
+     * @param seed Derivation seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Gets the seed of the derivations that are not given a {@link DerivationContext}
+     * @return Derivation seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Enables or disables memoisation. When enabled, {@link #generateModules(int)} of
+     * deterministic rules is served from the expansion DAG (see {@link #expand(int)}) instead of
+     * rewriting every generation.
+     * @param memoized true to use the expansion DAG
+     */
+    public void setMemoized(boolean memoized) {
+        this.memoized = memoized;
+    }
+
+    /**
+     * Checks if deterministic rules are served from the expansion DAG
+     * @return true if memoisation is enabled
+     */
+    public boolean isMemoized() {
+        return memoized;
+    }
+
+    /**
+     * Gets how many distinct (module, remaining iterations) expansions are cached
+     * @return Number of cached DAG nodes
+     */
+    public int getExpansionCacheSize() {
+        return expansions.size();
+    }
+
+    /**
+     * Drops all cached expansions
+     */
+    public void clearExpansionCache() {
+        expansions.clear();
+    }
+
     /**
      * Gets the current rule set
      * @return Current L-System rule
@@ -88,10 +731,49 @@ public class LSystemEngine {
     }
 
     /**
-     * Sets the current rule set
+     * Sets the current rule set. Its productions are fetched once here (String based productions
+     * are parsed once) and indexed by symbol. Cached expansions and growth predictions of the
+     * previous rule are dropped.
      */
     public void setRule(LSystemRule rule) {
         this.rule = rule;
+        expansions.clear();
+        growthPrediction = null;
+
+        Arrays.fill(asciiProductions, null);
+        otherProductions.clear();
+        for (Map.Entry<Character, Production> entry : rule.getProductions().entrySet()) {
+            char symbol = entry.getKey();
+
+            if (symbol < ASCII_SYMBOLS) {
+                asciiProductions[symbol] = entry.getValue();
+            } else {
+                otherProductions.put(symbol, entry.getValue());
+            }
+        }
+
+        Map<Character, List<ContextProduction>> contextProductions = new HashMap<>();
+        for (ContextProduction production : rule.getContextProductions()) {
+            contextProductions
+                    .computeIfAbsent(production.getPredecessor(), k -> new ArrayList<>())
+                    .add(production);
+        }
+
+        Arrays.fill(asciiContextProductions, null);
+        otherContextProductions.clear();
+        for (Map.Entry<Character, List<ContextProduction>> entry : contextProductions.entrySet()) {
+            char symbol = entry.getKey();
+            ContextProduction[] candidates = entry.getValue().toArray(new ContextProduction[0]);
+
+            if (symbol < ASCII_SYMBOLS) {
+                asciiContextProductions[symbol] = candidates;
+            } else {
+                otherContextProductions.put(symbol, candidates);
+            }
+        }
+
+        contextIgnoredSymbols =
+                contextProductions.isEmpty() ? null : rule.getContextIgnoredSymbols();
     }
 
     /**
@@ -1,5 +1,8 @@
 package core;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -24,9 +27,66 @@ public interface LSystemRule {
     /**
      * Gets the paremetric production rules for symbol transformation. The replacer function
      * receives the list of Strings consisting of each argument then return a replacement String.
+     * Rules implementing {@link #getProductions()} directly do not need these.
      * @return Map of symbol -> replacer function
      */
-    Map<Character, Function<String[], String>> getParametricProductionRules();
+    default Map<Character, Function<String[], String>> getParametricProductionRules() {
+        return new HashMap<>();
+    }
+
+    /**
+     * Gets the typed production rules used by {@link LSystemEngine}. They read the predecessor's
+     * parameters as doubles and append the successor modules directly, with no intermediate
+     * String.
+     *
+     * <p>The default implementation adapts the String based rules: {@link
+     * #getParametricProductionRules()} if {@link #hasParametric()} is true, {@link
+     * #getProductionRules()} otherwise.
+     * @return Map of symbol -> production
+     */
+    default Map<Character, Production> getProductions() {
+        Map<Character, Production> productions = new HashMap<>();
+
+        if (hasParametric()) {
+            for (Map.Entry<Character, Function<String[], String>> entry :
+                    getParametricProductionRules().entrySet()) {
+                Function<String[], String> replacement = entry.getValue();
+
+                productions.put(
+                        entry.getKey(),
+                        (module, successor) ->
+                                successor.appendParsed(
+                                        replacement.apply(module.formatParameters())));
+            }
+        } else {
+            for (Map.Entry<Character, String> entry : getProductionRules().entrySet()) {
+                ModuleString replacement = ModuleString.parse(entry.getValue());
+
+                productions.put(
+                        entry.getKey(), (module, successor) -> successor.appendAll(replacement));
+            }
+        }
+
+        return productions;
+    }
+
+    /**
+     * Gets the context-sensitive productions. For a module, the first matching one is applied;
+     * if none matches, the context-free production of its symbol (if any) is applied instead.
+     * @return Context-sensitive productions, in priority order
+     */
+    default List<ContextProduction> getContextProductions() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Gets the symbols skipped when looking for the context of a module, usually the turtle
+     * commands that do not change the topology (e.g. "+-F")
+     * @return The ignored symbols
+     */
+    default String getContextIgnoredSymbols() {
+        return "";
+    }
 
     /**
      *  Returns true if rule supports parametric L-Systems
@@ -36,6 +96,26 @@ public interface LSystemRule {
         return false;
     }
 
+    /**
+     * Returns true if the productions always rewrite the same module into the same successor and
+     * hold no shared mutable state. Only rules declaring so are memoised, since a production
+     * drawing from its own random source would otherwise have one choice shared by every
+     * occurrence of a module. Stochastic rules are rewritten in parallel too, as long as they draw
+     * from {@link Module#random()}.
+     * @return True if the productions are deterministic, false by default
+     */
+    default boolean isDeterministic() {
+        return false;
+    }
+
+    /**
+     * Gets a short name identifying this rule set
+     * @return The rule name
+     */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+
     /**
      * Gets a human-readable description of this rule set
      * @return Description of the L-System rule
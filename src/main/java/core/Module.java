@@ -0,0 +1,171 @@
+package core;
+
+/**
+ * Reusable view of a single module of a {@link ModuleString}, handed to {@link Production}s.
+ * The engine repositions the same view on every module, so productions must not keep it.
+ */
+public final class Module {
+    private ModuleString source;
+    private int index;
+    private BranchIndex branchIndex;
+
+    private final PositionalRandom random = new PositionalRandom();
+    private long seed;
+    private int iteration;
+    private long position;
+    private boolean randomPositioned;
+
+    /**
+     * Points this view at a module
+     * @param source Module string holding the module
+     * @param index Index of the module in {@code source}
+     * @return this for method chaining
+     */
+    public Module at(ModuleString source, int index) {
+        return at(source, index, index);
+    }
+
+    /**
+     * Points this view at a module whose position in the generation differs from its index in
+     * {@code source}, e.g. when a generation is streamed instead of stored
+     */
+    Module at(ModuleString source, int index, long position) {
+        this.source = source;
+        this.index = index;
+        this.position = position;
+        randomPositioned = false;
+        return this;
+    }
+
+    /**
+     * Sets the derivation seed and the iteration the viewed modules are rewritten for
+     */
+    Module forIteration(long seed, int iteration) {
+        this.seed = seed;
+        this.iteration = iteration;
+        randomPositioned = false;
+        return this;
+    }
+
+    /**
+     * Gets the random source of the module. Its numbers only depend on the derivation seed, the
+     * iteration and the position of the module, so stochastic productions must draw from it
+     * (rather than from a shared generator) to be reproducible in parallel and streamed
+     * derivations. The source is restarted each time the view moves to another module.
+     * @return The random source, shared with this view
+     */
+    public PositionalRandom random() {
+        if (!randomPositioned) {
+            random.reset(seed, iteration, position);
+            randomPositioned = true;
+        }
+
+        return random;
+    }
+
+    /**
+     * Gets the module symbol
+     * @return The symbol (e.g. 'F' for "F(10)")
+     */
+    public char getSymbol() {
+        return source.symbolAt(index);
+    }
+
+    /**
+     * Gets how many parameters the module has
+     * @return Number of parameters
+     */
+    public int getParameterCount() {
+        return source.parameterCount(index);
+    }
+
+    /**
+     * Gets a parameter of the module
+     * @param parameter Parameter index
+     * @return The parameter value
+     */
+    public double getParameter(int parameter) {
+        return source.parameter(index, parameter);
+    }
+
+    /**
+     * Gets a parameter of the module, or a fallback if the module has no such parameter
+     * @param parameter Parameter index
+     * @param fallback Value returned when the parameter is missing
+     * @return The parameter value or {@code fallback}
+     */
+    public double getParameter(int parameter, double fallback) {
+        return parameter < getParameterCount() ? source.parameter(index, parameter) : fallback;
+    }
+
+    /**
+     * Gets the module string the viewed module belongs to
+     * @return The module string
+     */
+    public ModuleString getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the index of the viewed module in its module string
+     * @return The module index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the left context of the module, see {@link BranchIndex}
+     * @return Index of the left context in {@link #getSource()}, or -1 if there is none or the
+     * generation is not indexed (rules without context-sensitive productions)
+     */
+    public int getLeftContext() {
+        return isIndexed() ? branchIndex.leftContext(index) : -1;
+    }
+
+    /**
+     * Gets the right context of the module, see {@link BranchIndex}
+     * @return Index of the right context in {@link #getSource()}, or -1 if there is none or the
+     * generation is not indexed (rules without context-sensitive productions)
+     */
+    public int getRightContext() {
+        return isIndexed() ? branchIndex.rightContext(index) : -1;
+    }
+
+    private boolean isIndexed() {
+        return branchIndex != null && branchIndex.getModules() == source;
+    }
+
+    /**
+     * Sets the branch index contexts are read from
+     */
+    Module withBranchIndex(BranchIndex branchIndex) {
+        this.branchIndex = branchIndex;
+        return this;
+    }
+
+    /**
+     * Converts the parameters to the String[] format of {@link
+     * LSystemRule#getParametricProductionRules()}
+     * @return The formatted parameters, or null if there are none
+     */
+    String[] formatParameters() {
+        int count = getParameterCount();
+        if (count == 0) return null;
+
+        String[] parameters = new String[count];
+        for (int p = 0; p < count; p++) {
+            parameters[p] = ModuleString.formatParameter(source.parameter(index, p));
+        }
+
+        return parameters;
+    }
+
+    @Override
+    public String toString() {
+        ModuleString module = new ModuleString(1);
+        module.append(source, index);
+
+        return module.toString();
+    }
+}
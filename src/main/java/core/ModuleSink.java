@@ -0,0 +1,18 @@
+package core;
+
+/**
+ * Receives modules one at a time, e.g. from a streaming derivation.
+ * The parameter array is only valid during the call and must not be kept.
+ */
+@FunctionalInterface
+public interface ModuleSink {
+
+    /**
+     * Receives a single module
+     * @param symbol Module symbol
+     * @param parameters Array holding the module parameters
+     * @param offset Index of the first parameter in {@code parameters}
+     * @param count Number of parameters
+     */
+    void accept(char symbol, double[] parameters, int offset, int count);
+}
@@ -0,0 +1,540 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Compact representation of an L-System generation.
+ *
+ * <p>Modules are stored in parallel primitive arrays instead of one substring per module: the
+ * symbol of the i-th module is {@code symbols[i]} and its parameters live in {@code
+ * parameters[offsets[i]]} up to (exclusive) {@code parameters[offsets[i + 1]]}. Strings such as
+ * {@code "F(10)[+F(5)0]"} are only an import/export format, see {@link #parse(CharSequence)} and
+ * {@link #toString()}.
+ */
+public class ModuleString implements ModuleSink {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // Decimal numbers with at most this many digits and a small exponent are parsed exactly
+    // without Double.parseDouble: the digits and the power of ten are both exact doubles
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+        1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private char[] symbols;
+    private int[] offsets;
+    private double[] parameters;
+    private int size;
+
+    /**
+     * Creates an empty module string with a default capacity
+     */
+    public ModuleString() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty module string able to hold {@code capacity} modules without growing
+     * @param capacity Initial number of modules
+     */
+    public ModuleString(int capacity) {
+        int modules = Math.max(capacity, 1);
+
+        symbols = new char[modules];
+        offsets = new int[modules + 1];
+        parameters = new double[modules];
+    }
+
+    /**
+     * Parses an L-System string (e.g. {@code "F(19.53)[+F(5)0]"}) into a module string.
+     * @param input L-System string to parse
+     * @return The parsed modules
+     * @throws IllegalArgumentException if a module is not terminated or a parameter is not a number
+     */
+    public static ModuleString parse(CharSequence input) {
+        ModuleString modules = new ModuleString(input.length());
+        modules.appendParsed(input);
+
+        return modules;
+    }
+
+    /**
+     * Parses an L-System string and appends its modules to this module string.
+     * @param input L-System string to parse
+     * @return this for method chaining
+     * @throws IllegalArgumentException if a module is not terminated or a parameter is not a number
+     */
+    public ModuleString appendParsed(CharSequence input) {
+        int length = input.length();
+        int i = 0;
+
+        while (i < length) {
+            char symbol = input.charAt(i);
+
+            if (i + 1 < length && input.charAt(i + 1) == '(') {
+                int end = indexOf(input, ')', i + 2);
+
+                if (end < 0) {
+                    throw new IllegalArgumentException(
+                            "Malformed input: no module termination found! Module started at "
+                                    + i
+                                    + "\n\tInput string: "
+                                    + input);
+                }
+
+                beginModule(symbol);
+                appendParsedParameters(input, i + 2, end);
+                i = end + 1;
+            } else {
+                append(symbol);
+                i++;
+            }
+        }
+
+        return this;
+    }
+
+    private void appendParsedParameters(CharSequence input, int start, int end) {
+        int parameterStart = start;
+
+        for (int j = start; j <= end; j++) {
+            if (j == end || input.charAt(j) == ',') {
+                if (!isBlank(input, parameterStart, j)) {
+                    addParameter(parseParameter(input, parameterStart, j));
+                }
+                parameterStart = j + 1;
+            }
+        }
+    }
+
+    private static boolean isBlank(CharSequence input, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (input.charAt(i) > ' ') return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Parses a parameter in place, without creating a substring. Plain decimal numbers such as
+     * {@code -12.5} or {@code 3e2} are parsed directly; anything else (more digits than a double
+     * holds exactly, large exponents, NaN...) falls back to {@link Double#parseDouble(String)}.
+     * Both give the same, correctly rounded, value.
+     * @param input Text holding the parameter
+     * @param start Index of the first character of the parameter
+     * @param end Index after the last character of the parameter
+     * @return The parameter value
+     * @throws NumberFormatException if the parameter is not a number
+     */
+    public static double parseParameter(CharSequence input, int start, int end) {
+        int i = start;
+        while (i < end && input.charAt(i) <= ' ') i++;
+        while (end > i && input.charAt(end - 1) <= ' ') end--;
+
+        int from = i;
+        boolean negative = false;
+        if (i < end && (input.charAt(i) == '-' || input.charAt(i) == '+')) {
+            negative = input.charAt(i++) == '-';
+        }
+
+        long digits = 0;
+        int digitCount = 0;
+        int scale = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+
+        for (; i < end; i++) {
+            char c = input.charAt(i);
+
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (digits == 0 && c == '0') {
+                    if (seenPoint) scale--;
+                    continue; // leading zeros are not significant
+                }
+                if (++digitCount > MAX_EXACT_DIGITS) break;
+
+                digits = digits * 10 + (c - '0');
+                if (seenPoint) scale--;
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+
+        if (i < end && seenDigit && (input.charAt(i) == 'e' || input.charAt(i) == 'E')) {
+            int exponentStart = ++i;
+            boolean negativeExponent = false;
+            if (i < end && (input.charAt(i) == '-' || input.charAt(i) == '+')) {
+                negativeExponent = input.charAt(i++) == '-';
+            }
+
+            int exponent = 0;
+            for (; i < end && input.charAt(i) >= '0' && input.charAt(i) <= '9'; i++) {
+                exponent = Math.min(exponent * 10 + (input.charAt(i) - '0'), 1000);
+            }
+            if (i == exponentStart || !Character.isDigit(input.charAt(i - 1))) {
+                i = -1; // malformed exponent, let parseDouble report it
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+
+        if (i != end || !seenDigit || Math.abs(scale) >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(input.subSequence(from, end).toString());
+        }
+
+        double value = scale < 0 ? digits / POWERS_OF_TEN[-scale] : digits * POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private static int indexOf(CharSequence input, char c, int from) {
+        for (int i = from; i < input.length(); i++) {
+            if (input.charAt(i) == c) return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Gets the number of modules
+     * @return Number of modules
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if there are no modules
+     * @return true if this module string is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the symbol of a module
+     * @param index Module index
+     * @return The module's symbol (e.g. 'F' for "F(10)")
+     */
+    public char symbolAt(int index) {
+        checkIndex(index);
+        return symbols[index];
+    }
+
+    /**
+     * Gets how many parameters a module has
+     * @param index Module index
+     * @return Number of parameters, 0 for plain symbols
+     */
+    public int parameterCount(int index) {
+        checkIndex(index);
+        return offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * Gets a parameter of a module
+     * @param index Module index
+     * @param parameter Parameter index inside the module
+     * @return The parameter value
+     */
+    public double parameter(int index, int parameter) {
+        if (parameter < 0 || parameter >= parameterCount(index)) {
+            throw new IndexOutOfBoundsException(
+                    "Parameter " + parameter + " out of bounds for module " + index);
+        }
+
+        return parameters[offsets[index] + parameter];
+    }
+
+    /**
+     * Gets where the parameters of a module start inside {@link #parameterArray()}
+     * @param index Module index
+     * @return Offset of the first parameter of the module
+     */
+    public int parameterOffset(int index) {
+        checkIndex(index);
+        return offsets[index];
+    }
+
+    /**
+     * Gets the backing parameter array. It is shared, not copied, and is only valid until the
+     * next modification of this module string.
+     * @return The backing parameter array
+     */
+    public double[] parameterArray() {
+        return parameters;
+    }
+
+    /**
+     * Gets the total number of parameters of all modules
+     * @return Number of parameters
+     */
+    public int totalParameterCount() {
+        return offsets[size];
+    }
+
+    /**
+     * Appends a module without parameters
+     * @param symbol Module symbol
+     * @return this for method chaining
+     */
+    public ModuleString append(char symbol) {
+        beginModule(symbol);
+        return this;
+    }
+
+    /**
+     * Appends a module with a single parameter
+     * @param symbol Module symbol
+     * @param parameter Module parameter
+     * @return this for method chaining
+     */
+    public ModuleString append(char symbol, double parameter) {
+        beginModule(symbol);
+        addParameter(parameter);
+        return this;
+    }
+
+    /**
+     * Adds a parameter to the last appended module
+     * @param parameter Parameter value
+     * @return this for method chaining
+     */
+    public ModuleString addParameter(double parameter) {
+        if (size == 0) {
+            throw new IllegalStateException("No module to add a parameter to");
+        }
+
+        int end = offsets[size];
+
+        ensureParameterCapacity(end + 1);
+        parameters[end] = parameter;
+        offsets[size] = end + 1;
+        return this;
+    }
+
+    /**
+     * Appends a module whose parameters are copied from {@code source}
+     * @param symbol Module symbol
+     * @param source Array holding the parameters
+     * @param offset Index of the first parameter in {@code source}
+     * @param count Number of parameters
+     * @return this for method chaining
+     */
+    public ModuleString append(char symbol, double[] source, int offset, int count) {
+        beginModule(symbol);
+        ensureParameterCapacity(offsets[size] + count);
+        System.arraycopy(source, offset, parameters, offsets[size], count);
+        offsets[size] += count;
+        return this;
+    }
+
+    @Override
+    public void accept(char symbol, double[] source, int offset, int count) {
+        append(symbol, source, offset, count);
+    }
+
+    /**
+     * Sends every module, in order, to {@code sink}
+     * @param sink Receiver of the modules
+     */
+    public void forEach(ModuleSink sink) {
+        for (int i = 0; i < size; i++) {
+            sink.accept(symbols[i], parameters, offsets[i], offsets[i + 1] - offsets[i]);
+        }
+    }
+
+    /**
+     * Appends a copy of a module of another module string
+     * @param source Module string holding the module
+     * @param index Index of the module in {@code source}
+     * @return this for method chaining
+     */
+    public ModuleString append(ModuleString source, int index) {
+        return append(
+                source.symbolAt(index),
+                source.parameters,
+                source.offsets[index],
+                source.parameterCount(index));
+    }
+
+    /**
+     * Appends copies of all modules of another module string
+     * @param source Module string to copy
+     * @return this for method chaining
+     */
+    public ModuleString appendAll(ModuleString source) {
+        int sourceSize = source.size;
+        int sourceParameters = source.offsets[sourceSize];
+        int parameterBase = offsets[size];
+
+        ensureCapacity(size + sourceSize, parameterBase + sourceParameters);
+
+        System.arraycopy(source.symbols, 0, symbols, size, sourceSize);
+        System.arraycopy(source.parameters, 0, parameters, parameterBase, sourceParameters);
+        for (int i = 1; i <= sourceSize; i++) {
+            offsets[size + i] = parameterBase + source.offsets[i];
+        }
+
+        size += sourceSize;
+        return this;
+    }
+
+    /**
+     * Resizes this module string to exactly {@code modules} modules and {@code parameterCount}
+     * parameters so regions can be filled independently with {@link #copyRegion}.
+     */
+    void resize(int modules, int parameterCount) {
+        ensureCapacity(modules, parameterCount);
+        size = modules;
+        offsets[0] = 0;
+        offsets[modules] = parameterCount;
+    }
+
+    /**
+     * Copies all modules of {@code source} to the given position. Regions written by different
+     * threads do not overlap, so chunks of a generation can be joined concurrently.
+     * @param source Modules to copy
+     * @param moduleOffset Index of the first module to overwrite
+     * @param parameterOffset Index of the first parameter to overwrite
+     */
+    void copyRegion(ModuleString source, int moduleOffset, int parameterOffset) {
+        System.arraycopy(source.symbols, 0, symbols, moduleOffset, source.size);
+        System.arraycopy(
+                source.parameters, 0, parameters, parameterOffset, source.offsets[source.size]);
+        for (int i = 1; i <= source.size; i++) {
+            offsets[moduleOffset + i] = parameterOffset + source.offsets[i];
+        }
+    }
+
+    /**
+     * Removes all modules, keeping the allocated buffers for reuse
+     */
+    public void clear() {
+        size = 0;
+        offsets[0] = 0;
+    }
+
+    /**
+     * Grows the buffers, if needed, so they can hold the given number of modules and parameters
+     * @param modules Number of modules
+     * @param parameterCount Number of parameters
+     */
+    public void ensureCapacity(int modules, int parameterCount) {
+        if (modules > symbols.length) {
+            int capacity = Math.max(modules, grow(symbols.length));
+
+            symbols = Arrays.copyOf(symbols, capacity);
+            offsets = Arrays.copyOf(offsets, capacity + 1);
+        }
+
+        ensureParameterCapacity(parameterCount);
+    }
+
+    private void ensureParameterCapacity(int parameterCount) {
+        if (parameterCount > parameters.length) {
+            parameters =
+                    Arrays.copyOf(parameters, Math.max(parameterCount, grow(parameters.length)));
+        }
+    }
+
+    private static int grow(int capacity) {
+        return capacity + (capacity >> 1) + 1;
+    }
+
+    private void beginModule(char symbol) {
+        if (size == symbols.length) {
+            ensureCapacity(size + 1, 0);
+        }
+
+        symbols[size] = symbol;
+        offsets[size + 1] = offsets[size];
+        size++;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Module " + index + " out of bounds for " + size);
+        }
+    }
+
+    /**
+     * Writes the modules in the L-System string format (e.g. {@code "F(10)[+F(5)0]"})
+     * @param target Builder to append to
+     * @return {@code target} for method chaining
+     */
+    public StringBuilder appendTo(StringBuilder target) {
+        for (int i = 0; i < size; i++) {
+            target.append(symbols[i]);
+
+            int start = offsets[i];
+            int end = offsets[i + 1];
+            if (start == end) continue;
+
+            target.append('(');
+            for (int p = start; p < end; p++) {
+                if (p > start) target.append(',');
+                target.append(formatParameter(parameters[p]));
+            }
+            target.append(')');
+        }
+
+        return target;
+    }
+
+    /**
+     * Formats a parameter for the string format. Integral values have no decimal part (10 instead
+     * of 10.0), other values keep their full precision.
+     * @param value Parameter value
+     * @return The formatted parameter
+     */
+    public static String formatParameter(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+
+        return Double.toString(value);
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(size * 2)).toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof ModuleString)) return false;
+
+        ModuleString that = (ModuleString) other;
+        if (size != that.size) return false;
+
+        for (int i = 0; i < size; i++) {
+            if (symbols[i] != that.symbols[i] || offsets[i + 1] != that.offsets[i + 1]) {
+                return false;
+            }
+        }
+
+        for (int p = 0; p < offsets[size]; p++) {
+            if (Double.compare(parameters[p], that.parameters[p]) != 0) return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = size;
+
+        for (int i = 0; i < size; i++) {
+            hash = 31 * hash + symbols[i];
+        }
+        for (int p = 0; p < offsets[size]; p++) {
+            hash = 31 * hash + Double.hashCode(parameters[p]);
+        }
+
+        return hash;
+    }
+}
@@ -0,0 +1,98 @@
+package core;
+
+/**
+ * Counter-based random source of a stochastic production, obtained through {@link
+ * Module#random()}.
+ *
+ * <p>Unlike a sequential generator, whose numbers depend on how many were drawn before, the
+ * numbers drawn for a module only depend on the derivation seed, the iteration and the position
+ * of the module in its generation. Rewriting a generation in any order, on any number of threads,
+ * or streaming it depth-first therefore draws exactly the same numbers. The i-th number is the
+ * SplitMix64 finaliser applied to the module key plus i times the golden gamma.
+ */
+public final class PositionalRandom {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long key;
+    private long counter;
+
+    /**
+     * Positions this random source on a module, restarting its sequence
+     * @param seed Derivation seed
+     * @param iteration Iteration being derived, 0 when rewriting the axiom
+     * @param position Index of the module in the generation being rewritten
+     * @return this for method chaining
+     */
+    public PositionalRandom reset(long seed, int iteration, long position) {
+        key = mix(mix(mix(seed) + iteration * GOLDEN_GAMMA) + position);
+        counter = 0;
+        return this;
+    }
+
+    /**
+     * SplitMix64 finaliser: a bijective mix of all the bits of {@code z}
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Draws the next number of the sequence
+     * @return A uniformly distributed long
+     */
+    public long nextLong() {
+        return mix(key + ++counter * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Draws a number between 0 (inclusive) and 1 (exclusive)
+     * @return A uniformly distributed double
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Draws a number between {@code origin} (inclusive) and {@code bound} (exclusive)
+     * @param origin Smallest value
+     * @param bound Upper bound, greater than {@code origin}
+     * @return A uniformly distributed double
+     */
+    public double nextDouble(double origin, double bound) {
+        checkRange(origin < bound);
+        return origin + nextDouble() * (bound - origin);
+    }
+
+    /**
+     * Draws an int between {@code origin} (inclusive) and {@code bound} (exclusive), like {@link
+     * java.util.SplittableRandom#nextInt(int, int)}
+     * @param origin Smallest value
+     * @param bound Upper bound, greater than {@code origin}
+     * @return A uniformly distributed int
+     */
+    public int nextInt(int origin, int bound) {
+        checkRange(origin < bound);
+
+        // Maps the top 32 bits to the range with a multiplication instead of a division
+        long range = (long) bound - origin;
+        return (int) (origin + (((nextLong() >>> 32) * range) >>> 32));
+    }
+
+    /**
+     * Draws a boolean that is true with the given probability
+     * @param probability Probability of true, between 0 and 1
+     * @return The drawn boolean
+     */
+    public boolean nextBoolean(double probability) {
+        return nextDouble() < probability;
+    }
+
+    private static void checkRange(boolean valid) {
+        if (!valid) {
+            throw new IllegalArgumentException("Bound must be greater than origin");
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package core;
+
+/**
+ * Typed production rule: rewrites a module by appending its successor modules straight to the
+ * next generation, without going through strings.
+ *
+ * <p>Example, F(x) -> F(2x)[+F(x)]:
+ * <pre>
+ * (module, successor) -> {
+ *     double x = module.getParameter(0);
+ *     successor.append('F', 2 * x).append('[').append('+').append('F', x).append(']');
+ * }
+ * </pre>
+ */
+@FunctionalInterface
+public interface Production {
+
+    /**
+     * Appends the successor of {@code predecessor}
+     * @param predecessor View of the module to rewrite; only valid during the call
+     * @param successor Next generation, the successor modules are appended to it
+     */
+    void apply(Module predecessor, ModuleString successor);
+}
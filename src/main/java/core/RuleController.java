@@ -1,10 +1,13 @@
 package core;
 
+import core.grammar.RuleParser;
 import core.impl.BinaryTree;
 import core.impl.KochSnowflake;
 import core.impl.SimplePlant;
 import core.impl.StochasticBinaryTree;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class RuleController {
     private ArrayList<LSystemRule> rules;
@@ -12,7 +15,8 @@ public class RuleController {
 
     /**
      * Constructs a new RuleController and initializes it with default L-System rules.
-     * The controller is pre-loaded with Binary Tree, Simple Plant, and Koch Snowflake rules.
+     * The controller is pre-loaded with Binary Tree, Simple Plant, Koch Snowflake and Stochastic
+     * Binary Tree rules, followed by the declarative rules bundled in the resources.
      * The current index is set to 0 (BinaryTree) by default.
      */
     public RuleController() {
@@ -22,6 +26,7 @@ public class RuleController {
         registerRule(new SimplePlant());
         registerRule(new KochSnowflake());
         registerRule(new StochasticBinaryTree());
+        registerRule(RuleParser.parseResource("/rules/declining-tree.lsys"));
     }
 
     /**
@@ -58,13 +63,22 @@ public class RuleController {
         return rules.get(currentIndex);
     }
 
+    /**
+     * Retrieves every registered rule, in registration order.
+     *
+     * @return unmodifiable view of the rules
+     */
+    public List<LSystemRule> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+
     /**
      * Registers a new L-System rule with the controller by adding it to the
      * internal rules collection.
      *
      * @param rule the L-System rule to be registered; must not be null
      */
-    private void registerRule(LSystemRule rule) {
+    public void registerRule(LSystemRule rule) {
         if (rule != null) rules.add(rule);
     }
 }
@@ -0,0 +1,164 @@
+package core.grammar;
+
+import core.ContextProduction;
+import core.Module;
+import core.ModuleString;
+
+/**
+ * One alternative of a declarative production, e.g. {@code X(l) : l > 2 -> F(l)[+X(l / 2)]} or
+ * {@code A(a) < B(b) > C -> B(a + b)}. The successor is a template: a fixed list of symbols whose
+ * parameters are compiled expressions. When no parameter depends on the predecessor or its
+ * contexts, the whole successor is built once.
+ */
+final class CompiledProduction {
+    private final char left;
+    private final int leftParameterCount;
+    private final char right;
+    private final int rightParameterCount;
+    private final int parameterCount;
+    private final Expression condition;
+    private final char[] symbols;
+    private final Expression[][] parameters;
+    private final ModuleString constantSuccessor;
+
+    /**
+     * @param left Symbol of the left context, or {@link ContextProduction#ANY}
+     * @param leftParameterCount Number of parameters the left context must have
+     * @param right Symbol of the right context, or {@link ContextProduction#ANY}
+     * @param rightParameterCount Number of parameters the right context must have
+     * @param parameterCount Number of parameters the predecessor must have
+     * @param condition Condition the predecessor must satisfy, or null
+     * @param symbols Symbols of the successor
+     * @param parameters Parameter expressions of each successor symbol
+     */
+    CompiledProduction(
+            char left,
+            int leftParameterCount,
+            char right,
+            int rightParameterCount,
+            int parameterCount,
+            Expression condition,
+            char[] symbols,
+            Expression[][] parameters) {
+        this.left = left;
+        this.leftParameterCount = leftParameterCount;
+        this.right = right;
+        this.rightParameterCount = rightParameterCount;
+        this.parameterCount = parameterCount;
+        this.condition = condition;
+        this.symbols = symbols;
+        this.parameters = parameters;
+        this.constantSuccessor = buildConstantSuccessor();
+    }
+
+    private ModuleString buildConstantSuccessor() {
+        ModuleString successor = new ModuleString(symbols.length);
+
+        for (int i = 0; i < symbols.length; i++) {
+            successor.append(symbols[i]);
+
+            for (Expression parameter : parameters[i]) {
+                if (!parameter.isConstant()) return null;
+                successor.addParameter(parameter.evaluate(null, 0));
+            }
+        }
+
+        return successor;
+    }
+
+    /**
+     * Checks if this alternative has a left or right context
+     */
+    boolean isContextSensitive() {
+        return left != ContextProduction.ANY || right != ContextProduction.ANY;
+    }
+
+    char getLeft() {
+        return left;
+    }
+
+    char getRight() {
+        return right;
+    }
+
+    /**
+     * Checks the parameter counts, the contexts and the condition of a predecessor
+     * @return true if this alternative rewrites the predecessor
+     */
+    boolean matches(Module predecessor) {
+        ModuleString source = predecessor.getSource();
+        int index = predecessor.getIndex();
+
+        if (source.parameterCount(index) != parameterCount) return false;
+
+        int leftIndex = left == ContextProduction.ANY ? -1 : predecessor.getLeftContext();
+        int rightIndex = right == ContextProduction.ANY ? -1 : predecessor.getRightContext();
+        if (!matchesContext(source, left, leftParameterCount, leftIndex)
+                || !matchesContext(source, right, rightParameterCount, rightIndex)) {
+            return false;
+        }
+
+        return condition == null
+                || condition.evaluate(
+                                source.parameterArray(),
+                                source.parameterOffset(index),
+                                contextOffset(source, left, leftIndex),
+                                contextOffset(source, right, rightIndex))
+                        != 0;
+    }
+
+    private static boolean matchesContext(
+            ModuleString source, char symbol, int parameterCount, int context) {
+        if (symbol == ContextProduction.ANY) return true;
+
+        return context >= 0
+                && source.symbolAt(context) == symbol
+                && source.parameterCount(context) == parameterCount;
+    }
+
+    private static int contextOffset(ModuleString source, char symbol, int context) {
+        return symbol == ContextProduction.ANY ? 0 : source.parameterOffset(context);
+    }
+
+    /**
+     * Appends the successor of a predecessor accepted by {@link #matches(Module)}
+     */
+    void write(Module predecessor, ModuleString successor) {
+        if (constantSuccessor != null) {
+            successor.appendAll(constantSuccessor);
+            return;
+        }
+
+        ModuleString source = predecessor.getSource();
+        double[] values = source.parameterArray();
+        int offset = source.parameterOffset(predecessor.getIndex());
+        int leftOffset =
+                left == ContextProduction.ANY
+                        ? 0
+                        : source.parameterOffset(predecessor.getLeftContext());
+        int rightOffset =
+                right == ContextProduction.ANY
+                        ? 0
+                        : source.parameterOffset(predecessor.getRightContext());
+
+        for (int i = 0; i < symbols.length; i++) {
+            successor.append(symbols[i]);
+
+            for (Expression parameter : parameters[i]) {
+                successor.addParameter(
+                        parameter.evaluate(values, offset, leftOffset, rightOffset));
+            }
+        }
+    }
+
+    /**
+     * Appends the successor if the predecessor matches this alternative
+     * @return true if the predecessor matched and was rewritten
+     */
+    boolean apply(Module predecessor, ModuleString successor) {
+        if (!matches(predecessor)) return false;
+
+        write(predecessor, successor);
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+package core.grammar;
+
+import core.ContextProduction;
+import core.LSystemRule;
+import core.Production;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * L-System rule compiled from the declarative format read by {@link RuleParser}.
+ */
+public final class CompiledRule implements LSystemRule {
+    private final String name;
+    private final String description;
+    private final String axiom;
+    private final boolean parametric;
+    private final String ignoredSymbols;
+    private final Map<Character, Production> productions = new HashMap<>();
+    private final List<ContextProduction> contextProductions = new ArrayList<>();
+
+    /**
+     * @param ignoredSymbols Symbols skipped when looking for a context
+     * @param alternatives Alternatives of each predecessor symbol, tried in order. The
+     * context-sensitive ones are tried before the context-free ones.
+     */
+    CompiledRule(
+            String name,
+            String description,
+            String axiom,
+            boolean parametric,
+            String ignoredSymbols,
+            Map<Character, List<CompiledProduction>> alternatives) {
+        this.name = name;
+        this.description = description;
+        this.axiom = axiom;
+        this.parametric = parametric;
+        this.ignoredSymbols = ignoredSymbols;
+
+        for (Map.Entry<Character, List<CompiledProduction>> entry : alternatives.entrySet()) {
+            List<CompiledProduction> contextFree = new ArrayList<>();
+
+            for (CompiledProduction alternative : entry.getValue()) {
+                if (alternative.isContextSensitive()) {
+                    contextProductions.add(
+                            new ContextProduction(
+                                    alternative.getLeft(),
+                                    entry.getKey(),
+                                    alternative.getRight(),
+                                    alternative::matches,
+                                    alternative::write));
+                } else {
+                    contextFree.add(alternative);
+                }
+            }
+
+            if (!contextFree.isEmpty()) {
+                productions.put(entry.getKey(), toProduction(contextFree));
+            }
+        }
+    }
+
+    /**
+     * Combines the alternatives of a symbol: the first matching one rewrites the module, which
+     * is copied unchanged when none matches
+     */
+    private static Production toProduction(List<CompiledProduction> alternatives) {
+        CompiledProduction[] candidates = alternatives.toArray(new CompiledProduction[0]);
+
+        if (candidates.length == 1) {
+            CompiledProduction only = candidates[0];
+
+            return (module, successor) -> {
+                if (!only.apply(module, successor)) {
+                    successor.append(module.getSource(), module.getIndex());
+                }
+            };
+        }
+
+        return (module, successor) -> {
+            for (CompiledProduction candidate : candidates) {
+                if (candidate.apply(module, successor)) return;
+            }
+
+            successor.append(module.getSource(), module.getIndex());
+        };
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getAxiom() {
+        return axiom;
+    }
+
+    @Override
+    public Map<Character, String> getProductionRules() {
+        return new HashMap<>(); // compiled rules only provide typed productions
+    }
+
+    @Override
+    public Map<Character, Production> getProductions() {
+        return new HashMap<>(productions);
+    }
+
+    @Override
+    public List<ContextProduction> getContextProductions() {
+        return new ArrayList<>(contextProductions);
+    }
+
+    @Override
+    public String getContextIgnoredSymbols() {
+        return ignoredSymbols;
+    }
+
+    @Override
+    public boolean hasParametric() {
+        return parametric;
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+}
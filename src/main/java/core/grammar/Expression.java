@@ -0,0 +1,136 @@
+package core.grammar;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Compiled arithmetic expression of a declarative rule. Parameters of the predecessor and of its
+ * contexts are read by slot from the parameter array of the generation being rewritten. Booleans
+ * are 1 (true) and 0 (false). Operations on constants are folded when the expression is compiled.
+ */
+abstract class Expression {
+    // Owners of a parameter, see parameter(int, int)
+    static final int PREDECESSOR = 0;
+    static final int LEFT_CONTEXT = 1;
+    static final int RIGHT_CONTEXT = 2;
+
+    /**
+     * Evaluates the expression
+     * @param parameters Array holding the parameters of the generation
+     * @param offset Index of the first predecessor parameter
+     * @param leftOffset Index of the first parameter of the left context
+     * @param rightOffset Index of the first parameter of the right context
+     * @return The value of the expression
+     */
+    abstract double evaluate(double[] parameters, int offset, int leftOffset, int rightOffset);
+
+    /**
+     * Evaluates an expression that only reads predecessor parameters
+     */
+    final double evaluate(double[] parameters, int offset) {
+        return evaluate(parameters, offset, 0, 0);
+    }
+
+    boolean isConstant() {
+        return false;
+    }
+
+    static Expression constant(double value) {
+        return new Constant(value);
+    }
+
+    static Expression parameter(int owner, int slot) {
+        return new Parameter(owner, slot);
+    }
+
+    static Expression unary(DoubleUnaryOperator operator, Expression operand) {
+        Expression expression = new Unary(operator, operand);
+        return operand.isConstant() ? constant(expression.evaluate(null, 0)) : expression;
+    }
+
+    static Expression binary(DoubleBinaryOperator operator, Expression left, Expression right) {
+        Expression expression = new Binary(operator, left, right);
+        return left.isConstant() && right.isConstant()
+                ? constant(expression.evaluate(null, 0))
+                : expression;
+    }
+
+    static double truth(boolean value) {
+        return value ? 1 : 0;
+    }
+
+    private static final class Constant extends Expression {
+        private final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        double evaluate(double[] parameters, int offset, int leftOffset, int rightOffset) {
+            return value;
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+    }
+
+    private static final class Parameter extends Expression {
+        private final int owner;
+        private final int slot;
+
+        Parameter(int owner, int slot) {
+            this.owner = owner;
+            this.slot = slot;
+        }
+
+        @Override
+        double evaluate(double[] parameters, int offset, int leftOffset, int rightOffset) {
+            switch (owner) {
+                case LEFT_CONTEXT:
+                    return parameters[leftOffset + slot];
+                case RIGHT_CONTEXT:
+                    return parameters[rightOffset + slot];
+                default:
+                    return parameters[offset + slot];
+            }
+        }
+    }
+
+    private static final class Unary extends Expression {
+        private final DoubleUnaryOperator operator;
+        private final Expression operand;
+
+        Unary(DoubleUnaryOperator operator, Expression operand) {
+            this.operator = operator;
+            this.operand = operand;
+        }
+
+        @Override
+        double evaluate(double[] parameters, int offset, int leftOffset, int rightOffset) {
+            return operator.applyAsDouble(
+                    operand.evaluate(parameters, offset, leftOffset, rightOffset));
+        }
+    }
+
+    private static final class Binary extends Expression {
+        private final DoubleBinaryOperator operator;
+        private final Expression left;
+        private final Expression right;
+
+        Binary(DoubleBinaryOperator operator, Expression left, Expression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double evaluate(double[] parameters, int offset, int leftOffset, int rightOffset) {
+            return operator.applyAsDouble(
+                    left.evaluate(parameters, offset, leftOffset, rightOffset),
+                    right.evaluate(parameters, offset, leftOffset, rightOffset));
+        }
+    }
+}
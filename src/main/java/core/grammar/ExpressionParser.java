@@ -0,0 +1,314 @@
+package core.grammar;
+
+import java.util.Map;
+
+/**
+ * Recursive descent parser of rule expressions, from the lowest to the highest precedence:
+ * {@code ||}, {@code &&}, comparisons, {@code + -}, {@code * / %}, unary {@code - !}, {@code ^}.
+ * Names are either parameters of the predecessor and its contexts or the constants {@code pi} and
+ * {@code e}; calls support the usual functions of {@link Math} (sin, cos, tan, sqrt, exp, log,
+ * abs, floor, ceil, min, max, pow). Trigonometric functions take degrees, like the A(x) module.
+ */
+class ExpressionParser {
+    private final String input;
+    private final Map<String, Expression> parameters;
+    private int position;
+
+    /**
+     * @param input Text to parse
+     * @param parameters Parameter expressions by name
+     */
+    ExpressionParser(String input, Map<String, Expression> parameters) {
+        this.input = input;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Parses the whole input as a single expression
+     */
+    Expression parseAll() {
+        Expression expression = parseExpression();
+
+        skipWhitespace();
+        if (position < input.length()) {
+            throw error("Unexpected '" + input.charAt(position) + "'");
+        }
+
+        return expression;
+    }
+
+    /**
+     * Parses an expression starting at the current position
+     */
+    Expression parseExpression() {
+        Expression left = parseAnd();
+
+        while (accept("||")) {
+            left =
+                    Expression.binary(
+                            (a, b) -> Expression.truth(a != 0 || b != 0), left, parseAnd());
+        }
+
+        return left;
+    }
+
+    private Expression parseAnd() {
+        Expression left = parseComparison();
+
+        while (accept("&&")) {
+            left =
+                    Expression.binary(
+                            (a, b) -> Expression.truth(a != 0 && b != 0), left, parseComparison());
+        }
+
+        return left;
+    }
+
+    private Expression parseComparison() {
+        Expression left = parseSum();
+
+        if (accept("<=")) {
+            return Expression.binary((a, b) -> Expression.truth(a <= b), left, parseSum());
+        } else if (accept(">=")) {
+            return Expression.binary((a, b) -> Expression.truth(a >= b), left, parseSum());
+        } else if (accept("==")) {
+            return Expression.binary((a, b) -> Expression.truth(a == b), left, parseSum());
+        } else if (accept("!=")) {
+            return Expression.binary((a, b) -> Expression.truth(a != b), left, parseSum());
+        } else if (accept("<")) {
+            return Expression.binary((a, b) -> Expression.truth(a < b), left, parseSum());
+        } else if (accept(">")) {
+            return Expression.binary((a, b) -> Expression.truth(a > b), left, parseSum());
+        }
+
+        return left;
+    }
+
+    private Expression parseSum() {
+        Expression left = parseProduct();
+
+        while (true) {
+            if (accept("+")) {
+                left = Expression.binary((a, b) -> a + b, left, parseProduct());
+            } else if (accept("-")) {
+                left = Expression.binary((a, b) -> a - b, left, parseProduct());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Expression parseProduct() {
+        Expression left = parseUnary();
+
+        while (true) {
+            if (accept("*")) {
+                left = Expression.binary((a, b) -> a * b, left, parseUnary());
+            } else if (accept("/")) {
+                left = Expression.binary((a, b) -> a / b, left, parseUnary());
+            } else if (accept("%")) {
+                left = Expression.binary((a, b) -> a % b, left, parseUnary());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Expression parseUnary() {
+        if (accept("-")) {
+            return Expression.unary(a -> -a, parseUnary());
+        } else if (accept("!")) {
+            return Expression.unary(a -> Expression.truth(a == 0), parseUnary());
+        } else if (accept("+")) {
+            return parseUnary();
+        }
+
+        return parsePower();
+    }
+
+    private Expression parsePower() {
+        Expression base = parsePrimary();
+
+        if (accept("^")) {
+            return Expression.binary(Math::pow, base, parseUnary());
+        }
+
+        return base;
+    }
+
+    private Expression parsePrimary() {
+        skipWhitespace();
+        if (position >= input.length()) {
+            throw error("Unexpected end of expression");
+        }
+
+        char c = input.charAt(position);
+        if (accept("(")) {
+            Expression expression = parseExpression();
+            expect(")");
+            return expression;
+        } else if (Character.isDigit(c) || c == '.') {
+            return parseNumber();
+        } else if (Character.isLetter(c) || c == '_') {
+            return parseName();
+        }
+
+        throw error("Unexpected '" + c + "'");
+    }
+
+    private Expression parseNumber() {
+        int start = position;
+
+        while (position < input.length()
+                && (Character.isDigit(input.charAt(position)) || input.charAt(position) == '.')) {
+            position++;
+        }
+
+        try {
+            return Expression.constant(Double.parseDouble(input.substring(start, position)));
+        } catch (NumberFormatException e) {
+            throw error("Malformed number '" + input.substring(start, position) + "'");
+        }
+    }
+
+    private Expression parseName() {
+        String name = parseIdentifier();
+
+        if (accept("(")) {
+            Expression first = parseExpression();
+            Expression second = accept(",") ? parseExpression() : null;
+            expect(")");
+
+            return call(name, first, second);
+        }
+
+        Expression parameter = parameters.get(name);
+        if (parameter != null) return parameter;
+
+        switch (name) {
+            case "pi":
+                return Expression.constant(Math.PI);
+            case "e":
+                return Expression.constant(Math.E);
+            default:
+                throw error("Unknown parameter '" + name + "'");
+        }
+    }
+
+    private Expression call(String function, Expression first, Expression second) {
+        if (second != null) {
+            switch (function) {
+                case "min":
+                    return Expression.binary(Math::min, first, second);
+                case "max":
+                    return Expression.binary(Math::max, first, second);
+                case "pow":
+                    return Expression.binary(Math::pow, first, second);
+                default:
+                    throw error("Unknown function '" + function + "' with two arguments");
+            }
+        }
+
+        switch (function) {
+            case "sin":
+                return Expression.unary(a -> Math.sin(Math.toRadians(a)), first);
+            case "cos":
+                return Expression.unary(a -> Math.cos(Math.toRadians(a)), first);
+            case "tan":
+                return Expression.unary(a -> Math.tan(Math.toRadians(a)), first);
+            case "sqrt":
+                return Expression.unary(Math::sqrt, first);
+            case "exp":
+                return Expression.unary(Math::exp, first);
+            case "log":
+                return Expression.unary(Math::log, first);
+            case "abs":
+                return Expression.unary(Math::abs, first);
+            case "floor":
+                return Expression.unary(Math::floor, first);
+            case "ceil":
+                return Expression.unary(Math::ceil, first);
+            default:
+                throw error("Unknown function '" + function + "'");
+        }
+    }
+
+    /**
+     * Parses a name made of letters, digits and underscores
+     */
+    String parseIdentifier() {
+        skipWhitespace();
+        int start = position;
+
+        while (position < input.length()
+                && (Character.isLetterOrDigit(input.charAt(position))
+                        || input.charAt(position) == '_')) {
+            position++;
+        }
+
+        if (start == position) {
+            throw error("Expected a name");
+        }
+
+        return input.substring(start, position);
+    }
+
+    /**
+     * Consumes {@code token} if it is next, ignoring whitespace
+     */
+    boolean accept(String token) {
+        skipWhitespace();
+
+        if (input.startsWith(token, position)) {
+            position += token.length();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Consumes {@code c} only if it is the very next character, without skipping whitespace
+     */
+    boolean acceptImmediately(char c) {
+        if (position < input.length() && input.charAt(position) == c) {
+            position++;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Consumes the next non-whitespace character
+     */
+    char nextCharacter() {
+        if (atEnd()) {
+            throw error("Unexpected end of input");
+        }
+
+        return input.charAt(position++);
+    }
+
+    void expect(String token) {
+        if (!accept(token)) {
+            throw error("Expected '" + token + "'");
+        }
+    }
+
+    boolean atEnd() {
+        skipWhitespace();
+        return position >= input.length();
+    }
+
+    private void skipWhitespace() {
+        while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+            position++;
+        }
+    }
+
+    IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(
+                message + " at column " + (position + 1) + " of \"" + input + "\"");
+    }
+}
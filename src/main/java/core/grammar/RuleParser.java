@@ -0,0 +1,284 @@
+package core.grammar;
+
+import core.ContextProduction;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parses L-Systems written in a declarative format and compiles them to {@link CompiledRule}s.
+ *
+ * <h3>Format:</h3>
+ * <pre>
+ * # Comments start with '#'
+ * name: Declining Tree
+ * description: Branches shrink at every iteration
+ * axiom: F(40)X(40)
+ * ignore: +-
+ * X(l) : l &gt; 2 -&gt; [A(30)F(l * 0.7)X(l * 0.7)][A(-20)F(l * 0.65)X(l * 0.65)]
+ * F(l) -&gt; F(l * 1.1)
+ * S(s) &lt; F(l) -&gt; F(l + s)
+ * </pre>
+ *
+ * <p>A production is {@code [left <] predecessor [> right] [: condition] -> successor}. The
+ * predecessor and its optional contexts are single symbols, optionally naming their parameters.
+ * Conditions and successor parameters are arithmetic expressions over those names (see {@link
+ * ExpressionParser} for the supported operators and functions). A symbol may have several
+ * productions; context-sensitive ones are tried first, then the first whose parameter counts and
+ * condition match is applied, and modules matching none are copied unchanged. The {@code ignore}
+ * key lists the symbols skipped when looking for a context (see {@link core.BranchIndex}).
+ */
+public final class RuleParser {
+    private static final Set<String> KEYS =
+            new HashSet<>(Arrays.asList("name", "description", "axiom", "ignore"));
+
+    private RuleParser() {}
+
+    /**
+     * Parses a rule from its text
+     * @param source Rule text
+     * @return The compiled rule
+     * @throws IllegalArgumentException if the text is malformed
+     */
+    public static CompiledRule parse(String source) {
+        try {
+            return parse(new StringReader(source));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // never thrown by a StringReader
+        }
+    }
+
+    /**
+     * Parses a rule from a classpath resource, e.g. {@code "/rules/declining-tree.lsys"}
+     * @param resource Resource path
+     * @return The compiled rule
+     * @throws IllegalArgumentException if the resource is missing or malformed
+     */
+    public static CompiledRule parseResource(String resource) {
+        InputStream stream = RuleParser.class.getResourceAsStream(resource);
+        if (stream == null) {
+            throw new IllegalArgumentException("Rule resource not found: " + resource);
+        }
+
+        try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read rule resource " + resource, e);
+        }
+    }
+
+    /**
+     * Parses a rule from a reader
+     * @param reader Reader of the rule text
+     * @return The compiled rule
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if the text is malformed
+     */
+    public static CompiledRule parse(Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+
+        String name = "Unnamed";
+        String description = "";
+        String axiom = null;
+        String ignoredSymbols = "";
+        boolean parametric = false;
+        Map<Character, List<CompiledProduction>> productions = new LinkedHashMap<>();
+
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            line = line.trim();
+            if (line.isEmpty()) continue;
+
+            try {
+                // Keys come first, so their values may hold arrows
+                int colon = line.indexOf(':');
+                String key = colon >= 0 ? line.substring(0, colon).trim() : "";
+                int arrow = KEYS.contains(key) ? -1 : line.indexOf("->");
+
+                if (arrow >= 0) {
+                    Map<String, Expression> parameters = new HashMap<>();
+                    String left = line.substring(0, arrow);
+
+                    Predecessor predecessor =
+                            new Predecessor(
+                                    colon >= 0 ? left.substring(0, colon) : left, parameters);
+                    Expression condition =
+                            colon >= 0
+                                    ? new ExpressionParser(left.substring(colon + 1), parameters)
+                                            .parseAll()
+                                    : null;
+                    CompiledProduction production =
+                            parseSuccessor(
+                                    line.substring(arrow + 2), predecessor, parameters, condition);
+
+                    parametric |= !parameters.isEmpty();
+                    productions
+                            .computeIfAbsent(predecessor.symbol, k -> new ArrayList<>())
+                            .add(production);
+                    continue;
+                }
+
+                if (colon < 0) {
+                    throw new IllegalArgumentException("Expected 'key: value' or a production");
+                }
+
+                String value = line.substring(colon + 1).trim();
+                switch (key) {
+                    case "name":
+                        name = value;
+                        break;
+                    case "description":
+                        description = value;
+                        break;
+                    case "axiom":
+                        axiom = value;
+                        break;
+                    case "ignore":
+                        ignoredSymbols = value.replace(" ", "");
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown key '" + key + "'");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                        "Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+
+        if (axiom == null) {
+            throw new IllegalArgumentException("Missing 'axiom: ...' line");
+        }
+
+        return new CompiledRule(
+                name, description, axiom, parametric, ignoredSymbols, productions);
+    }
+
+    /**
+     * Predecessor of a production: {@code X(a, b)} with an optional left context {@code L(c) <}
+     * and right context {@code > R(d)}. The parameter names of all three modules are collected.
+     */
+    private static final class Predecessor {
+        char left = ContextProduction.ANY;
+        int leftParameterCount;
+        char symbol;
+        int parameterCount;
+        char right = ContextProduction.ANY;
+        int rightParameterCount;
+
+        Predecessor(String text, Map<String, Expression> parameters) {
+            // Parameter lists hold names only, so '<' and '>' always separate the contexts
+            int less = text.indexOf('<');
+            int greater = text.indexOf('>');
+            if (greater >= 0 && greater < less) {
+                throw new IllegalArgumentException("The right context must follow '<'");
+            }
+
+            int start = less >= 0 ? less + 1 : 0;
+            int end = greater >= 0 ? greater : text.length();
+
+            ExpressionParser parser = new ExpressionParser(text.substring(start, end), parameters);
+            symbol = parser.nextCharacter();
+            parameterCount = parseParameters(parser, parameters, Expression.PREDECESSOR);
+
+            if (less >= 0) {
+                parser = new ExpressionParser(text.substring(0, less), parameters);
+                left = parser.nextCharacter();
+                leftParameterCount = parseParameters(parser, parameters, Expression.LEFT_CONTEXT);
+            }
+
+            if (greater >= 0) {
+                parser = new ExpressionParser(text.substring(greater + 1), parameters);
+                right = parser.nextCharacter();
+                rightParameterCount =
+                        parseParameters(parser, parameters, Expression.RIGHT_CONTEXT);
+            }
+        }
+
+        /**
+         * Parses the optional {@code (a, b)} after a symbol, naming its parameters
+         * @return Number of parameters
+         */
+        private static int parseParameters(
+                ExpressionParser parser, Map<String, Expression> parameters, int owner) {
+            int count = 0;
+
+            if (parser.acceptImmediately('(') && !parser.accept(")")) {
+                do {
+                    String parameter = parser.parseIdentifier();
+                    if (parameters.containsKey(parameter)) {
+                        throw parser.error("Duplicate parameter '" + parameter + "'");
+                    }
+                    parameters.put(parameter, Expression.parameter(owner, count++));
+                } while (parser.accept(","));
+
+                parser.expect(")");
+            }
+
+            if (!parser.atEnd()) {
+                throw parser.error("Contexts and predecessors must be single modules");
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * Parses the successor template, e.g. {@code F(l * 0.7)[+X(l / 2)]}
+     */
+    private static CompiledProduction parseSuccessor(
+            String text,
+            Predecessor predecessor,
+            Map<String, Expression> variables,
+            Expression condition) {
+        ExpressionParser parser = new ExpressionParser(text, variables);
+        List<Character> symbols = new ArrayList<>();
+        List<Expression[]> parameters = new ArrayList<>();
+
+        while (!parser.atEnd()) {
+            symbols.add(parser.nextCharacter());
+            List<Expression> arguments = new ArrayList<>();
+
+            if (parser.acceptImmediately('(') && !parser.accept(")")) {
+                do {
+                    arguments.add(parser.parseExpression());
+                } while (parser.accept(","));
+
+                parser.expect(")");
+            }
+            parameters.add(arguments.toArray(new Expression[0]));
+        }
+
+        char[] symbolArray = new char[symbols.size()];
+        for (int i = 0; i < symbolArray.length; i++) {
+            symbolArray[i] = symbols.get(i);
+        }
+
+        return new CompiledProduction(
+                predecessor.left,
+                predecessor.leftParameterCount,
+                predecessor.right,
+                predecessor.rightParameterCount,
+                predecessor.parameterCount,
+                condition,
+                symbolArray,
+                parameters.toArray(new Expression[0][]));
+    }
+}
@@ -1,9 +1,10 @@
 package core.impl;
 
 import core.LSystemRule;
+import core.ModuleString;
+import core.Production;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
 import utils.LStringBuilder;
 
 /**
@@ -11,55 +12,53 @@ import utils.LStringBuilder;
  * Creates branching structures that resemble a binary tree.
  */
 public class BinaryTree implements LSystemRule {
-    private final LStringBuilder builder = new LStringBuilder();
+    private static final double DEFAULT_STEP = 10;
+
     private final double initialQuantity = 25;
     private final double constDecay = 0.1;
 
     private static final String AXIOM = new LStringBuilder().forward("12").leaf().build();
-    private final Map<Character, Function<String[], String>> parametricProductionRules;
+
+    // 0 -> F(10)[+F(5)0]-F(5)0
+    private static final ModuleString LEAF_SUCCESSOR =
+            ModuleString.parse(
+                    new LStringBuilder()
+                            .forward("10")
+                            .openBranch()
+                            .turnLeft()
+                            .forward("5")
+                            .leaf()
+                            .closeBranch()
+                            .turnRight()
+                            .forward("5")
+                            .leaf()
+                            .build());
+
+    private final Map<Character, Production> productions;
 
     public BinaryTree() {
-        parametricProductionRules = createParametricProductionRules();
+        productions = createProductions();
     }
 
     /**
      * Creates the parametric production rules
-     * @return The map linking a symbol -> replacement function
+     * @return The map linking a symbol -> production
      */
-    private Map<Character, Function<String[], String>> createParametricProductionRules() {
-        Map<Character, Function<String[], String>> rules = new HashMap<>();
+    private Map<Character, Production> createProductions() {
+        Map<Character, Production> rules = new HashMap<>();
 
         // F(step: how much units forward) -> F(x + exponentialDecayFunctionStep)
         rules.put(
                 'F',
-                (args) -> {
-                    if (args != null && args.length >= 1) {
-                        try {
-                            double lastStep = Double.parseDouble(args[0]);
-                            double currentStep = lastStep + expDecay(lastStep);
-                            String formattedStep = String.format("%.2f", currentStep);
-
-                            return builder.forward(formattedStep).build();
-                        } catch (Exception e) {
-                            return builder.forward("10").build();
-                        }
+                (module, successor) -> {
+                    if (module.getParameterCount() >= 1) {
+                        double lastStep = module.getParameter(0);
+                        successor.append('F', lastStep + expDecay(lastStep));
+                    } else {
+                        successor.append('F', DEFAULT_STEP);
                     }
-
-                    return builder.forward("10").build();
                 });
-        rules.put(
-                '0',
-                (args) ->
-                        builder.forward("10")
-                                .openBranch()
-                                .turnLeft()
-                                .forward("5")
-                                .leaf()
-                                .closeBranch()
-                                .turnRight()
-                                .forward("5")
-                                .leaf()
-                                .build());
+        rules.put('0', (module, successor) -> successor.appendAll(LEAF_SUCCESSOR));
 
         return rules;
     }
@@ -78,6 +77,11 @@ public class BinaryTree implements LSystemRule {
         return true;
     }
 
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
     @Override
     public String getAxiom() {
         return AXIOM;
@@ -85,10 +89,9 @@ public class BinaryTree implements LSystemRule {
 
     @Override
     public Map<Character, String> getProductionRules() {
-        return new HashMap<>(); // empty because the LSystemEngine automatically
-        // chooses between parametric and normal production
-        // rules. Meaning that method is a dead code that
-        // should not ever run.
+        return new HashMap<>(); // empty because the LSystemEngine uses the typed productions
+        // returned by getProductions. Meaning that method is a dead code that should not
+        // ever run.
     }
 
     @Override
@@ -99,7 +102,7 @@ public class BinaryTree implements LSystemRule {
     }
 
     @Override
-    public Map<Character, Function<String[], String>> getParametricProductionRules() {
-        return new HashMap<>(parametricProductionRules);
+    public Map<Character, Production> getProductions() {
+        return new HashMap<>(productions);
     }
 }
@@ -1,9 +1,10 @@
 package core.impl;
 
 import core.LSystemRule;
+import core.ModuleString;
+import core.Production;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
 import utils.LStringBuilder;
 
 // 1. Do not renders correctly, since the interpreter uses the constant 25 degree angle instead
@@ -21,7 +22,6 @@ import utils.LStringBuilder;
  * Creates a snow flake.
  */
 public class KochSnowflake implements LSystemRule {
-    private final LStringBuilder builder = new LStringBuilder();
 
     private static final String AXIOM =
             new LStringBuilder()
@@ -32,26 +32,28 @@ public class KochSnowflake implements LSystemRule {
                     .forward("100")
                     .build();
 
-    private final Map<Character, Function<String[], String>> parametricProductionRules;
+    private static final ModuleString FORWARD_SUCCESSOR =
+            ModuleString.parse(
+                    new LStringBuilder()
+                            .forward("100")
+                            .symbol('A', "60")
+                            .forward("100")
+                            .symbol('A', "-120")
+                            .forward("100")
+                            .symbol('A', "60")
+                            .forward("100")
+                            .build());
+
+    private final Map<Character, Production> productions;
 
     public KochSnowflake() {
-        parametricProductionRules = createParametricProductionRules();
+        productions = createProductions();
     }
 
-    private Map<Character, Function<String[], String>> createParametricProductionRules() {
-        Map<Character, Function<String[], String>> rules = new HashMap<>();
-
-        rules.put(
-                'F',
-                (args) ->
-                        builder.forward("100")
-                                .symbol('A', "60")
-                                .forward("100")
-                                .symbol('A', "-120")
-                                .forward("100")
-                                .symbol('A', "60")
-                                .forward("100")
-                                .build());
+    private Map<Character, Production> createProductions() {
+        Map<Character, Production> rules = new HashMap<>();
+
+        rules.put('F', (module, successor) -> successor.appendAll(FORWARD_SUCCESSOR));
         return rules;
     }
 
@@ -60,6 +62,11 @@ public class KochSnowflake implements LSystemRule {
         return true;
     }
 
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
     @Override
     public String getAxiom() {
         return AXIOM;
@@ -78,7 +85,7 @@ public class KochSnowflake implements LSystemRule {
     }
 
     @Override
-    public Map<Character, Function<String[], String>> getParametricProductionRules() {
-        return new HashMap<>(parametricProductionRules);
+    public Map<Character, Production> getProductions() {
+        return new HashMap<>(productions);
     }
 }
@@ -11,8 +11,6 @@ import utils.LStringBuilder;
  * Creates branching structures that resemble plant growth patterns.
  */
 public class SimplePlant implements LSystemRule {
-    private final LStringBuilder builder = new LStringBuilder();
-
     private static final String AXIOM = "X";
     private final Map<Character, String> productionRules;
 
@@ -22,6 +20,7 @@ public class SimplePlant implements LSystemRule {
 
     private Map<Character, String> createProductionRules() {
         Map<Character, String> rules = new HashMap<>();
+        LStringBuilder builder = new LStringBuilder();
         rules.put(
                 'X',
                 builder.forward()
@@ -47,6 +46,11 @@ public class SimplePlant implements LSystemRule {
         return rules;
     }
 
+    @Override
+    public boolean isDeterministic() {
+        return true;
+    }
+
     @Override
     public String getAxiom() {
         return AXIOM;
@@ -1,11 +1,12 @@
 package core.impl;
 
 import core.LSystemRule;
-import core.RandomSingleton;
+import core.Module;
+import core.ModuleString;
+import core.PositionalRandom;
+import core.Production;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.SplittableRandom;
-import java.util.function.Function;
 import utils.LStringBuilder;
 
 /**
@@ -16,6 +17,9 @@ import utils.LStringBuilder;
  *
  * Being x, y, z the trunk and right and left branches' random lengths, theta and gamma the random angle
  *
+ * The random numbers come from {@link Module#random()}, so the tree only depends on the seed of the
+ * engine, not on the order in which leaves are rewritten.
+ *
  * Creates branching structures that resemble a binary tree with varying angles and distances.
  */
 public class StochasticBinaryTree implements LSystemRule {
@@ -29,28 +33,21 @@ public class StochasticBinaryTree implements LSystemRule {
     private static final double INITIAL_QUANTITY = 25;
     private static final double DECAY_CONSTANT = 0.1;
 
-    private static final String DEFAULT_STEP = "10";
-
-    // Instead of getting the SplittableRandom instance we get the singleton to ensure
-    // that if the application resets the SplittableRandom's state
-    // we are going to use the updated state or seed
-    private final RandomSingleton randomSingleton = RandomSingleton.getInstance();
-
-    private final LStringBuilder builder = new LStringBuilder();
+    private static final double DEFAULT_STEP = 10;
 
     private static final String AXIOM = new LStringBuilder().leaf().build();
-    private final Map<Character, Function<String[], String>> parametricProductionRules;
+    private final Map<Character, Production> productions;
 
     public StochasticBinaryTree() {
-        parametricProductionRules = createParametricProductionRules();
+        productions = createProductions();
     }
 
     /**
      * Creates the stochastic parametric production rules
-     * @return The map linking a symbol -> replacement function
+     * @return The map linking a symbol -> production
      */
-    private Map<Character, Function<String[], String>> createParametricProductionRules() {
-        Map<Character, Function<String[], String>> rules = new HashMap<>();
+    private Map<Character, Production> createProductions() {
+        Map<Character, Production> rules = new HashMap<>();
 
         // Forward movement rule with exponential decay
         rules.put('F', this::createForwardRule);
@@ -62,35 +59,29 @@ public class StochasticBinaryTree implements LSystemRule {
     }
 
     /**
-     * Creates a forward movement rule with exponential decay.
+     * Forward movement rule with exponential decay.
      *
-     * @param args the arguments from the F(x) symbol
-     * @return the replacement string for forward movement
+     * @param module the F(x) module
+     * @param successor receives the forward movement
      */
-    private String createForwardRule(String[] args) {
-        if (args != null && args.length >= 1) {
-            try {
-                double lastStep = Double.parseDouble(args[0]);
-                double currentStep = lastStep + expDecay(lastStep);
-                String formattedStep = String.format("%.2f", currentStep);
-
-                return builder.forward(formattedStep).build();
-            } catch (NumberFormatException e) {
-                // Fall through to default case
-            }
+    private void createForwardRule(Module module, ModuleString successor) {
+        if (module.getParameterCount() >= 1) {
+            double lastStep = module.getParameter(0);
+            successor.append('F', lastStep + expDecay(lastStep));
+        } else {
+            successor.append('F', DEFAULT_STEP);
         }
-        return builder.forward(DEFAULT_STEP).build();
     }
 
     /**
-     * Creates a leaf expansion rule with random branches.
+     * Leaf expansion rule with random branches.
      * Generates two branches at random angles and lengths.
      *
-     * @param args the arguments (unused for leaf expansion)
-     * @return the replacement string for leaf expansion
+     * @param module the leaf module (its parameters are unused), provides the random source
+     * @param successor receives the trunk and the two branches
      */
-    private String createLeafExpansionRule(String[] args) {
-        SplittableRandom rand = randomSingleton.getRandom();
+    private void createLeafExpansionRule(Module module, ModuleString successor) {
+        PositionalRandom rand = module.random();
 
         // Generate random dimensions
         int trunkLength = rand.nextInt(MIN_TRUNK_LENGTH, MAX_TRUNK_LENGTH);
@@ -101,16 +92,16 @@ public class StochasticBinaryTree implements LSystemRule {
         int leftBranchAngle = rand.nextInt(MIN_BRANCH_ANGLE, MAX_BRANCH_ANGLE);
         int rightBranchAngle = rand.nextInt(MIN_BRANCH_ANGLE, MAX_BRANCH_ANGLE);
 
-        return builder.forward(String.valueOf(trunkLength))
-                .openBranch()
-                .symbol('A', String.valueOf(leftBranchAngle))
-                .forward(String.valueOf(leftBranchLength))
-                .leaf()
-                .closeBranch()
-                .symbol('A', "-" + rightBranchAngle)
-                .forward(String.valueOf(rightBranchLength))
-                .leaf()
-                .build();
+        successor
+                .append('F', trunkLength)
+                .append('[')
+                .append('A', leftBranchAngle)
+                .append('F', leftBranchLength)
+                .append('0')
+                .append(']')
+                .append('A', -rightBranchAngle)
+                .append('F', rightBranchLength)
+                .append('0');
     }
 
     /**
@@ -127,6 +118,11 @@ public class StochasticBinaryTree implements LSystemRule {
         return true;
     }
 
+    @Override
+    public boolean isDeterministic() {
+        return false;
+    }
+
     @Override
     public String getAxiom() {
         return AXIOM;
@@ -134,10 +130,9 @@ public class StochasticBinaryTree implements LSystemRule {
 
     @Override
     public Map<Character, String> getProductionRules() {
-        return new HashMap<>(); // empty because the LSystemEngine automatically
-        // chooses between parametric and normal production
-        // rules. Meaning that method is a dead code that
-        // should not ever run.
+        return new HashMap<>(); // empty because the LSystemEngine uses the typed productions
+        // returned by getProductions. Meaning that method is a dead code that should not
+        // ever run.
     }
 
     @Override
@@ -148,7 +143,7 @@ public class StochasticBinaryTree implements LSystemRule {
     }
 
     @Override
-    public Map<Character, Function<String[], String>> getParametricProductionRules() {
-        return new HashMap<>(parametricProductionRules);
+    public Map<Character, Production> getProductions() {
+        return new HashMap<>(productions);
     }
 }
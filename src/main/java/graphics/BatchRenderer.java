@@ -0,0 +1,712 @@
+package graphics;
+
+import core.DerivationContext;
+import core.LSystemEngine;
+import core.LSystemRule;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.imageio.ImageIO;
+
+/**
+ * Renders many derivations to PNG or SVG files without a window, e.g. on headless render nodes.
+ *
+ * <p>Every combination of rule, seed and iteration is a job. Jobs run on a bounded pool of render
+ * threads, one per core by default, and each thread keeps its own interpreter, path and
+ * {@link TileRasterizer} across jobs. Finished files go through a bounded queue to as many
+ * writer threads, since PNG encoding costs as much as rendering small trees: when the writers
+ * fall behind, render threads block on the queue, and PNG images are recycled from a bounded pool
+ * once written. Submitting jobs blocks in turn while a few per thread are pending, so memory stays
+ * bounded whatever the number of jobs.
+ *
+ * <p>Iterations over the module budget of a rule are skipped and reported.
+ */
+public class BatchRenderer {
+    /** Module budget used unless set */
+    public static final long DEFAULT_MODULE_BUDGET = 5_000_000;
+
+    /** Image size used unless set, in pixels */
+    public static final int DEFAULT_SIZE = 1024;
+
+    private static final Point2D ORIGIN = new Point2D.Double();
+    private static final int MARGIN = 16;
+    private static final int BACKGROUND = 0xffffffff;
+    private static final int FOREGROUND = 0xff1b5e20;
+
+    private final List<LSystemRule> rules;
+    private long firstSeed;
+    private long lastSeed;
+    private int[] iterations = {5};
+    private int width = DEFAULT_SIZE;
+    private int height = DEFAULT_SIZE;
+    private Format format = Format.PNG;
+    private Path outputDirectory = Paths.get("renders");
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long moduleBudget = DEFAULT_MODULE_BUDGET;
+    private float lineWidth = 1;
+
+    /**
+     * Output file formats
+     */
+    public enum Format {
+        /** Raster image, drawn with a {@link TileRasterizer} */
+        PNG,
+        /** Vector image, one path per tree */
+        SVG;
+
+        String extension() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Counts of a finished batch
+     */
+    public static final class Report {
+        private final long trees;
+        private final long segments;
+        private final long skipped;
+        private final long failed;
+        private final long elapsedNanos;
+
+        Report(long trees, long segments, long skipped, long failed, long elapsedNanos) {
+            this.trees = trees;
+            this.segments = segments;
+            this.skipped = skipped;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Gets the number of files written
+         * @return Tree count
+         */
+        public long getTrees() {
+            return trees;
+        }
+
+        /**
+         * Gets the number of segments drawn in the files written
+         * @return Segment count
+         */
+        public long getSegments() {
+            return segments;
+        }
+
+        /**
+         * Gets the number of jobs skipped for being over the module budget
+         * @return Skipped job count
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * Gets the number of jobs that failed to render or write
+         * @return Failed job count
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * Gets the wall-clock duration of the batch
+         * @return Duration in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = Math.max(elapsedNanos, 1) / 1e9;
+            return String.format(
+                    Locale.ROOT,
+                    "%d trees, %d segments in %.2f s: %.1f trees/s, %.0f segments/s"
+                            + " (%d skipped over budget, %d failed)",
+                    trees,
+                    segments,
+                    seconds,
+                    trees / seconds,
+                    segments / seconds,
+                    skipped,
+                    failed);
+        }
+    }
+
+    /**
+     * Buffers reused by a render thread across its jobs
+     */
+    private final class Worker {
+        private final TurtleGraphics interpreter = new TurtleGraphics();
+        private final TurtlePath path = new TurtlePath();
+        private final TileRasterizer rasterizer = new TileRasterizer();
+        private final StringBuilder svg = new StringBuilder();
+
+        Worker() {
+            rasterizer.setLineWidth(lineWidth);
+            rasterizer.setColor(FOREGROUND);
+        }
+    }
+
+    /**
+     * File handed to the writer thread: an image from the pool or the bytes of an SVG, and the
+     * number of segments drawn in it
+     */
+    private static final class Output {
+        private final Path file;
+        private final BufferedImage image;
+        private final byte[] bytes;
+        private final int segments;
+
+        Output(Path file, BufferedImage image, byte[] bytes, int segments) {
+            this.file = file;
+            this.image = image;
+            this.bytes = bytes;
+            this.segments = segments;
+        }
+    }
+
+    private static final Output END = new Output(null, null, null, 0);
+
+    /**
+     * Creates a batch over rules, rendering seed 0 at iteration 5 by default
+     * @param rules Rules to render
+     */
+    public BatchRenderer(List<LSystemRule> rules) {
+        if (rules.isEmpty()) {
+            throw new IllegalArgumentException("No rule to render");
+        }
+
+        this.rules = new ArrayList<>(rules);
+    }
+
+    /**
+     * Creates a batch from command line arguments:
+     *
+     * <pre>
+     * --rules NAME[,NAME...]    rules by name, or "all" (default)
+     * --seeds FROM[..TO]        inclusive seed range (default 0)
+     * --iterations N[,N...]     iterations, or an inclusive range FROM..TO (default 5)
+     * --size WIDTHxHEIGHT       image size (default 1024x1024)
+     * --format png|svg          output format (default png)
+     * --out DIRECTORY           output directory (default renders)
+     * --threads N               render threads (default: one per core)
+     * --budget N                module budget per derivation (default 5000000)
+     * --line-width W            line width in pixels (default 1)
+     * </pre>
+     *
+     * @param args Arguments
+     * @param available Rules that can be selected by name
+     * @return The configured batch
+     * @throws IllegalArgumentException if an argument is invalid
+     */
+    public static BatchRenderer fromArguments(String[] args, List<LSystemRule> available) {
+        List<LSystemRule> rules = available;
+        String[] values = new String[args.length];
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected an option and its value: " + args[i]);
+            }
+            values[i] = args[++i];
+        }
+
+        for (int i = 0; i < args.length; i += 2) {
+            if (args[i].equals("--rules")) rules = selectRules(values[i], available);
+        }
+
+        BatchRenderer batch = new BatchRenderer(rules);
+        for (int i = 0; i < args.length; i += 2) {
+            String value = values[i];
+            try {
+                switch (args[i]) {
+                    case "--rules":
+                        break;
+                    case "--seeds":
+                        long[] seeds = parseRange(value);
+                        batch.setSeeds(seeds[0], seeds[1]);
+                        break;
+                    case "--iterations":
+                        batch.setIterations(parseIterations(value));
+                        break;
+                    case "--size":
+                        String[] size = value.toLowerCase(Locale.ROOT).split("x");
+                        if (size.length != 2) {
+                            throw new IllegalArgumentException("Size must be WIDTHxHEIGHT");
+                        }
+                        batch.setSize(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+                        break;
+                    case "--format":
+                        batch.setFormat(Format.valueOf(value.toUpperCase(Locale.ROOT)));
+                        break;
+                    case "--out":
+                        batch.setOutputDirectory(Paths.get(value));
+                        break;
+                    case "--threads":
+                        batch.setThreads(Integer.parseInt(value));
+                        break;
+                    case "--budget":
+                        batch.setModuleBudget(Long.parseLong(value));
+                        break;
+                    case "--line-width":
+                        batch.setLineWidth(Float.parseFloat(value));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for " + args[i] + ": " + value);
+            }
+        }
+
+        return batch;
+    }
+
+    /**
+     * Renders every job and waits for the files to be written
+     * @param log Receives progress messages, e.g. skipped jobs
+     * @return Counts and duration of the batch
+     * @throws IOException if the output directory cannot be created
+     * @throws InterruptedException if interrupted while waiting for the jobs
+     */
+    public Report run(PrintStream log) throws IOException, InterruptedException {
+        Files.createDirectories(outputDirectory);
+
+        long started = System.nanoTime();
+        Run run = new Run(log);
+        Thread[] writers = new Thread[threads];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = new Thread(run::write, "lsystem-batch-writer-" + i);
+            writers[i].start();
+        }
+
+        // A full queue blocks submission, so no more than one renderer per thread ever runs
+        ThreadPoolExecutor pool =
+                new ThreadPoolExecutor(
+                        threads,
+                        threads,
+                        0,
+                        TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(2 * threads),
+                        (job, executor) -> {
+                            try {
+                                executor.getQueue().put(job);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new RejectedExecutionException(e);
+                            }
+                        });
+
+        boolean interrupted;
+        try {
+            for (LSystemRule rule : rules) {
+                // Shared by the jobs of the rule, so its growth is only analysed once
+                LSystemEngine engine = new LSystemEngine(rule);
+                engine.setModuleBudget(moduleBudget);
+                for (long seed = firstSeed; seed <= lastSeed; seed++) {
+                    for (int iteration : iterations) {
+                        long jobSeed = seed;
+                        pool.execute(() -> run.render(engine, jobSeed, iteration));
+                    }
+                }
+            }
+        } catch (RejectedExecutionException e) {
+            // Only rejected when interrupted while waiting for room, with the interrupt restored
+        } finally {
+            interrupted = finish(pool, run, writers);
+        }
+        if (interrupted) {
+            throw new InterruptedException("Interrupted while rendering the batch");
+        }
+
+        return new Report(
+                run.trees.sum(),
+                run.segments.sum(),
+                run.skipped.sum(),
+                run.failed.sum(),
+                System.nanoTime() - started);
+    }
+
+    /**
+     * Waits for the jobs, then stops the writers once every file is written. An interrupt cancels
+     * the jobs not started yet but the waiting goes on, so no thread outlives the batch.
+     * @return True if the calling thread was interrupted
+     */
+    private static boolean finish(ThreadPoolExecutor pool, Run run, Thread[] writers) {
+        boolean interrupted = Thread.interrupted();
+        if (interrupted) {
+            pool.shutdownNow();
+        } else {
+            pool.shutdown();
+        }
+
+        int ended = 0;
+        int joined = 0;
+        while (joined < writers.length) {
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                for (; ended < writers.length; ended++) {
+                    run.written.put(END);
+                }
+                for (; joined < writers.length; joined++) {
+                    writers[joined].join();
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+                pool.shutdownNow();
+            }
+        }
+
+        return interrupted;
+    }
+
+    /**
+     * Queues, image pool and counters of a running batch
+     */
+    private final class Run {
+        private final PrintStream log;
+        private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+        // Room for every render thread to hand over a file while the writers are busy
+        private final BlockingQueue<Output> written = new ArrayBlockingQueue<>(threads);
+        private final int imageLimit = 3 * threads; // rendered, queued and written
+        private final BlockingQueue<BufferedImage> images = new ArrayBlockingQueue<>(imageLimit);
+        private final AtomicInteger allocated = new AtomicInteger();
+        private final LongAdder trees = new LongAdder();
+        private final LongAdder segments = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+
+        Run(PrintStream log) {
+            this.log = log;
+        }
+
+        /**
+         * Derives, interprets and draws a job with the engine of its rule, then queues its file for
+         * the writer
+         */
+        void render(LSystemEngine engine, long seed, int iteration) {
+            LSystemRule rule = engine.getRule();
+            try {
+                if (engine.maxIterationsWithinBudget(iteration) < iteration) {
+                    skipped.increment();
+                    log.printf(
+                            "Skipped %s at iteration %d: over the module budget%n",
+                            rule.getName(),
+                            iteration);
+                    return;
+                }
+
+                Worker worker = workers.get();
+                TurtlePath path = worker.path;
+                path.clear();
+                worker.interpreter.interpret(
+                        engine, iteration, new DerivationContext(seed), ORIGIN, path);
+
+                Path file =
+                        outputDirectory.resolve(
+                                String.format(
+                                        "%s-s%d-i%d.%s",
+                                        fileName(rule.getName()),
+                                        seed,
+                                        iteration,
+                                        format.extension()));
+                written.put(draw(worker, path, file));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.increment();
+            } catch (RuntimeException e) {
+                failed.increment();
+                log.printf(
+                        "Failed %s, seed %d, iteration %d: %s%n",
+                        rule.getName(),
+                        seed,
+                        iteration,
+                        e.getMessage());
+            }
+        }
+
+        /**
+         * Draws a path, fitted to the image size, into an image from the pool or an SVG
+         */
+        private Output draw(Worker worker, TurtlePath path, Path file)
+                throws InterruptedException {
+            Rectangle2D bounds = path.getBounds();
+            double scale =
+                    Math.min(
+                            (width - 2 * MARGIN) / Math.max(bounds.getWidth(), 1e-9),
+                            (height - 2 * MARGIN) / Math.max(bounds.getHeight(), 1e-9));
+            if (path.isEmpty() || Double.isInfinite(scale)) scale = 1;
+            double offsetX = width / 2.0 - bounds.getCenterX() * scale;
+            double offsetY = height / 2.0 - bounds.getCenterY() * scale;
+
+            if (format == Format.SVG) {
+                byte[] svg = toSvg(worker.svg, path, scale, offsetX, offsetY);
+                return new Output(file, null, svg, path.getLineCount());
+            }
+
+            BufferedImage image = images.poll();
+            if (image == null) {
+                image =
+                        allocated.getAndIncrement() < imageLimit
+                                ? new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)
+                                : images.take(); // all in flight, waits for a writer
+            }
+
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            Arrays.fill(pixels, BACKGROUND);
+            worker.rasterizer.draw(path, scale, offsetX, offsetY, image);
+
+            return new Output(file, image, null, path.getLineCount());
+        }
+
+        /**
+         * Writes queued files until {@link #END}, returning images to the pool. Runs on every
+         * writer thread.
+         */
+        void write() {
+            try {
+                for (Output output = written.take(); output != END; output = written.take()) {
+                    try {
+                        if (output.image != null) {
+                            if (!ImageIO.write(output.image, "png", output.file.toFile())) {
+                                throw new IOException("No PNG writer available");
+                            }
+                        } else {
+                            Files.write(output.file, output.bytes);
+                        }
+                        trees.increment();
+                        segments.add(output.segments);
+                    } catch (IOException | RuntimeException e) {
+                        failed.increment();
+                        log.printf("Failed to write %s: %s%n", output.file, e.getMessage());
+                    } finally {
+                        if (output.image != null) images.offer(output.image);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private byte[] toSvg(
+            StringBuilder svg, TurtlePath path, double scale, double offsetX, double offsetY) {
+        svg.setLength(0);
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"")
+                .append(width)
+                .append("\" height=\"")
+                .append(height)
+                .append("\">\n<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n")
+                .append("<path fill=\"none\" stroke=\"#1b5e20\" stroke-linecap=\"square\"")
+                .append(" stroke-linejoin=\"round\" stroke-width=\"")
+                .append(lineWidth)
+                .append("\" d=\"");
+
+        // Connected segments continue the current subpath
+        float lastX = Float.NaN;
+        float lastY = Float.NaN;
+        for (int i = 0; i < path.getLineCount(); i++) {
+            float x1 = (float) (path.getX1(i) * scale + offsetX);
+            float y1 = (float) (path.getY1(i) * scale + offsetY);
+            float x2 = (float) (path.getX2(i) * scale + offsetX);
+            float y2 = (float) (path.getY2(i) * scale + offsetY);
+
+            if (x1 != lastX || y1 != lastY) {
+                svg.append('M');
+                appendCoordinate(svg, x1);
+                svg.append(' ');
+                appendCoordinate(svg, y1);
+            }
+            svg.append('L');
+            appendCoordinate(svg, x2);
+            svg.append(' ');
+            appendCoordinate(svg, y2);
+            lastX = x2;
+            lastY = y2;
+        }
+        svg.append("\"/>\n</svg>\n");
+
+        return svg.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Appends a coordinate rounded to hundredths, without the cost of formatting
+     */
+    private static void appendCoordinate(StringBuilder svg, float value) {
+        long hundredths = Math.round(value * 100.0);
+        if (hundredths < 0) {
+            svg.append('-');
+            hundredths = -hundredths;
+        }
+
+        svg.append(hundredths / 100);
+        long fraction = hundredths % 100;
+        if (fraction != 0) {
+            svg.append('.').append(fraction / 10);
+            if (fraction % 10 != 0) svg.append(fraction % 10);
+        }
+    }
+
+    private static String fileName(String ruleName) {
+        return ruleName.replaceAll("[^A-Za-z0-9_-]+", "-");
+    }
+
+    private static List<LSystemRule> selectRules(String names, List<LSystemRule> available) {
+        if (names.equalsIgnoreCase("all")) return available;
+
+        List<LSystemRule> selected = new ArrayList<>();
+        for (String name : names.split(",")) {
+            LSystemRule match = null;
+            for (LSystemRule rule : available) {
+                if (rule.getName().equalsIgnoreCase(name.trim())) match = rule;
+            }
+            if (match == null) {
+                throw new IllegalArgumentException("Unknown rule: " + name);
+            }
+            selected.add(match);
+        }
+
+        return selected;
+    }
+
+    private static long[] parseRange(String value) {
+        int separator = value.indexOf("..");
+        if (separator < 0) {
+            long single = Long.parseLong(value.trim());
+            return new long[] {single, single};
+        }
+
+        return new long[] {
+            Long.parseLong(value.substring(0, separator).trim()),
+            Long.parseLong(value.substring(separator + 2).trim())
+        };
+    }
+
+    private static int[] parseIterations(String value) {
+        if (value.contains("..")) {
+            long[] range = parseRange(value);
+            if (range[1] < range[0]) {
+                throw new IllegalArgumentException("Empty iteration range: " + value);
+            }
+
+            int[] iterations = new int[(int) (range[1] - range[0] + 1)];
+            for (int i = 0; i < iterations.length; i++) {
+                iterations[i] = (int) range[0] + i;
+            }
+            return iterations;
+        }
+
+        return Arrays.stream(value.split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+    }
+
+    /**
+     * Sets the inclusive range of derivation seeds
+     * @param firstSeed First seed
+     * @param lastSeed Last seed, at least {@code firstSeed}
+     */
+    public void setSeeds(long firstSeed, long lastSeed) {
+        if (lastSeed < firstSeed) {
+            throw new IllegalArgumentException("Empty seed range");
+        }
+
+        this.firstSeed = firstSeed;
+        this.lastSeed = lastSeed;
+    }
+
+    /**
+     * Sets the iterations rendered for every rule and seed
+     * @param iterations Non-negative iterations
+     */
+    public void setIterations(int... iterations) {
+        if (iterations.length == 0 || Arrays.stream(iterations).anyMatch(i -> i < 0)) {
+            throw new IllegalArgumentException("Iterations must be non-negative");
+        }
+
+        this.iterations = iterations.clone();
+    }
+
+    /**
+     * Sets the size of the images
+     * @param width Width in pixels
+     * @param height Height in pixels
+     */
+    public void setSize(int width, int height) {
+        if (width <= 2 * MARGIN || height <= 2 * MARGIN) {
+            throw new IllegalArgumentException("Size must exceed " + 2 * MARGIN + " pixels");
+        }
+
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Sets the format of the files
+     * @param format Output format
+     */
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Sets the directory receiving the files, created if needed
+     * @param outputDirectory Output directory
+     */
+    public void setOutputDirectory(Path outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Sets the number of render threads
+     * @param threads Positive thread count
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the largest number of modules a derivation may hold, see
+     * {@link LSystemEngine#setModuleBudget(long)}
+     * @param moduleBudget Maximum number of modules
+     */
+    public void setModuleBudget(long moduleBudget) {
+        if (moduleBudget < 0) {
+            throw new IllegalArgumentException("Module budget must be non-negative");
+        }
+
+        this.moduleBudget = moduleBudget;
+    }
+
+    /**
+     * Sets the width of the lines
+     * @param lineWidth Width in pixels
+     */
+    public void setLineWidth(float lineWidth) {
+        if (!(lineWidth > 0)) {
+            throw new IllegalArgumentException("Line width must be positive");
+        }
+
+        this.lineWidth = lineWidth;
+    }
+}
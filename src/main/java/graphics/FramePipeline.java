@@ -0,0 +1,306 @@
+package graphics;
+
+import core.DerivationContext;
+import core.LSystemEngine;
+import core.LSystemRule;
+import core.ModuleString;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Derives, interprets and draws L-System frames on a background thread, so the Swing Event
+ * Dispatch Thread only blits finished images.
+ *
+ * <p>All derivation state, the {@link Renderer} and the {@link SceneCache} belong to the worker
+ * thread. Every iteration of an animation cycle is retained: once it has been drawn, showing it
+ * again only republishes its image, and a new viewport size only draws its geometry again,
+ * translated to the new start point. Neither derives nor interprets, so a looping animation or a
+ * resized window costs next to no CPU. Retained images are never drawn into again, so the worker
+ * hands them to the EDT through an atomic reference without copying.
+ *
+ * <p>{@link #restart(LSystemRule, DerivationContext)} starts a new epoch: work queued or running
+ * for an older epoch is dropped at its next check, between iterations and before drawing.
+ */
+public class FramePipeline implements AutoCloseable {
+    private static final Point2D ORIGIN = new Point2D.Double();
+
+    private final Renderer renderer;
+    private final long moduleBudget;
+    private final int maxIterations;
+    private final Runnable onFrame;
+    private final ExecutorService worker;
+    private final SceneCache scenes;
+    private final TurtleGraphics interpreter = new TurtleGraphics();
+
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicBoolean advancing = new AtomicBoolean();
+    private final AtomicReference<Frame> ready = new AtomicReference<>();
+    private volatile int width = 1;
+    private volatile int height = 1;
+
+    // Only used on the EDT
+    private Frame current;
+
+    // Only used on the worker thread
+    private LSystemEngine engine;
+    private DerivationContext context;
+    private int iterationLimit;
+    private int iteration; // drawn
+    private int derivedIteration; // held by instructions
+    private ModuleString instructions = new ModuleString();
+    private ModuleString nextInstructions = new ModuleString();
+
+    /**
+     * Frame drawn by the worker: the image and what it shows
+     */
+    public static final class Frame {
+        private final BufferedImage image;
+        private final int iteration;
+        private final long seed;
+
+        Frame(BufferedImage image, int iteration, long seed) {
+            this.image = image;
+            this.iteration = iteration;
+            this.seed = seed;
+        }
+
+        /**
+         * Gets the drawn image, which must not be modified
+         * @return The image, with a transparent background
+         */
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        /**
+         * Gets the iteration drawn
+         * @return Iteration, 0 for the axiom
+         */
+        public int getIteration() {
+            return iteration;
+        }
+
+        /**
+         * Gets the seed of the derivation drawn
+         * @return Derivation seed
+         */
+        public long getSeed() {
+            return seed;
+        }
+    }
+
+    /**
+     * Creates a pipeline with its worker thread
+     * @param renderer Renderer used by the worker thread only
+     * @param moduleBudget Largest number of modules of a generation
+     * @param maxIterations Iteration after which the animation restarts from the axiom, lowered
+     * to fit the module budget
+     * @param onFrame Called on the worker thread when a frame is ready, e.g. to repaint
+     */
+    public FramePipeline(
+            Renderer renderer, long moduleBudget, int maxIterations, Runnable onFrame) {
+        this.renderer = renderer;
+        this.moduleBudget = moduleBudget;
+        this.maxIterations = maxIterations;
+        this.onFrame = onFrame;
+        this.scenes = new SceneCache(maxIterations + 1);
+        this.worker =
+                Executors.newSingleThreadExecutor(
+                        task -> {
+                            Thread thread = new Thread(task, "lsystem-frame-pipeline");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    /**
+     * Restarts the animation from the axiom of a rule, dropping any older work
+     * @param rule Rule to derive
+     * @param context State of the derivation, e.g. with a new seed
+     */
+    public void restart(LSystemRule rule, DerivationContext context) {
+        long started = epoch.incrementAndGet();
+
+        worker.execute(
+                () -> {
+                    if (!isCurrent(started)) return; // restarted again meanwhile
+
+                    engine = new LSystemEngine(rule);
+                    engine.setModuleBudget(moduleBudget);
+                    iterationLimit = engine.maxIterationsWithinBudget(maxIterations);
+                    this.context = context;
+                    reset();
+                    draw(started);
+                });
+    }
+
+    /**
+     * Shows the next iteration, or goes back to the axiom after the last one. Ignored while the
+     * previous step is still queued, so steps do not pile up behind a slow derivation; once that
+     * step starts, one more may be queued to follow it.
+     */
+    public void advance() {
+        if (!advancing.compareAndSet(false, true)) return;
+        long started = epoch.get();
+
+        worker.execute(
+                () -> {
+                    // The next step may be queued once this one is chosen
+                    advancing.set(false);
+                    if (!isCurrent(started) || engine == null) return;
+
+                    iteration = iteration >= iterationLimit ? 0 : iteration + 1;
+                    draw(started);
+                });
+    }
+
+    /**
+     * Sets the size of the drawn images, drawing the current iteration again if it changed
+     * @param width Image width
+     * @param height Image height
+     */
+    public void setViewport(int width, int height) {
+        int newWidth = Math.max(width, 1);
+        int newHeight = Math.max(height, 1);
+        if (newWidth == this.width && newHeight == this.height) return;
+
+        this.width = newWidth;
+        this.height = newHeight;
+        long started = epoch.get();
+        worker.execute(
+                () -> {
+                    if (engine != null) draw(started);
+                });
+    }
+
+    /**
+     * Drops the retained scenes and draws the current iteration again, e.g. after the renderer
+     * settings changed
+     */
+    public void invalidate() {
+        long started = epoch.get();
+        worker.execute(
+                () -> {
+                    scenes.invalidate();
+                    if (engine != null) draw(started);
+                });
+    }
+
+    /**
+     * Takes the most recent finished frame. Must be called on the EDT.
+     * @return The frame to display, or null if none was drawn yet
+     */
+    public Frame latestFrame() {
+        Frame next = ready.getAndSet(null);
+
+        if (next != null) current = next;
+
+        return current;
+    }
+
+    /**
+     * Stops the worker thread, dropping queued work
+     */
+    @Override
+    public void close() {
+        epoch.incrementAndGet();
+        worker.shutdownNow();
+    }
+
+    private boolean isCurrent(long started) {
+        return started == epoch.get();
+    }
+
+    private void reset() {
+        iteration = 0;
+        derivedIteration = 0;
+        instructions = ModuleString.parse(engine.getRule().getAxiom());
+    }
+
+    /**
+     * Brings the instructions to the iteration drawn, from the axiom if they are past it
+     * @return false if the epoch changed meanwhile
+     */
+    private boolean derive(long started) {
+        if (derivedIteration > iteration) {
+            derivedIteration = 0;
+            instructions = ModuleString.parse(engine.getRule().getAxiom());
+        }
+
+        while (derivedIteration < iteration) {
+            if (!isCurrent(started)) return false;
+
+            engine.applyRules(instructions, nextInstructions, derivedIteration, context);
+            derivedIteration++;
+
+            ModuleString previous = instructions;
+            instructions = nextInstructions;
+            nextInstructions = previous;
+        }
+
+        return true;
+    }
+
+    /**
+     * Publishes the image of the current iteration, drawing it first if it is not retained at the
+     * viewport size
+     */
+    private void draw(long started) {
+        if (!isCurrent(started)) return;
+
+        LSystemRule rule = engine.getRule();
+        SceneCache.Scene scene = scenes.get(rule, context.getSeed(), iteration);
+        if (scene == null) {
+            if (!derive(started)) return;
+
+            TurtlePath geometry = interpreter.interpret(instructions, ORIGIN, new TurtlePath());
+            scene = scenes.put(rule, context.getSeed(), iteration, geometry);
+        }
+
+        int imageWidth = width;
+        int imageHeight = height;
+        BufferedImage image = scene.getImage(imageWidth, imageHeight);
+        if (image == null) {
+            if (!isCurrent(started)) return;
+
+            image = rasterise(scene, imageWidth, imageHeight);
+            scene.setImage(image);
+        }
+
+        if (!isCurrent(started)) return; // stale, though its scene is kept
+
+        ready.set(new Frame(image, iteration, context.getSeed()));
+        onFrame.run();
+    }
+
+    /**
+     * Draws the geometry of a scene, interpreted from the origin, into a new image, starting at the
+     * bottom center
+     */
+    private BufferedImage rasterise(SceneCache.Scene scene, int imageWidth, int imageHeight) {
+        BufferedImage image =
+                new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
+
+        Graphics2D g2d = image.createGraphics();
+        try {
+            g2d.setRenderingHint(
+                    RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setRenderingHint(
+                    RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+
+            g2d.translate(imageWidth / 2, imageHeight);
+            renderer.render(g2d, scene, iteration);
+        } finally {
+            g2d.dispose();
+        }
+
+        return image;
+    }
+}
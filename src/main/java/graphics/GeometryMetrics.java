@@ -0,0 +1,226 @@
+package graphics;
+
+import core.DerivationContext;
+import core.LSystemEngine;
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+
+/**
+ * Measures the segments drawn by a turtle as they are received, without keeping them: bounding
+ * box, total length, segment count, deepest branch, leaf count and number of branches per order.
+ * Memory only grows with the deepest branch, so plants of any size can be measured by driving
+ * the turtle straight from a derivation.
+ *
+ * <p>A leaf is a segment where drawing does not continue: the next segment does not start at its
+ * end point, or it is the last one. Branches are counted once they draw their first segment;
+ * the order of a branch is its depth, 0 for the trunk.
+ *
+ * <h3>Usage Example:</h3>
+ * <pre>
+ * LSystemEngine engine = new LSystemEngine(new StochasticBinaryTree());
+ * for (long seed = 0; seed &lt; 1000; seed++) {
+ *     GeometryMetrics metrics = GeometryMetrics.measure(engine, 10, new DerivationContext(seed));
+ *     System.out.println(seed + ": " + metrics.getHeight());
+ * }
+ * </pre>
+ */
+public class GeometryMetrics implements PathSink {
+    private static final Point2D ORIGIN = new Point2D.Double(0, 0);
+
+    private int segmentCount;
+    private double totalLength;
+    private double minX;
+    private double minY;
+    private double maxX;
+    private double maxY;
+    private int maxDepth;
+    private int leafCount;
+
+    // End of the previous segment, to find out if drawing continues from it
+    private double lastX;
+    private double lastY;
+
+    // Branch id last seen at each depth and number of branches seen at each depth
+    private int[] openBranches = new int[16];
+    private int[] branchCounts = new int[16];
+
+    /**
+     * Creates empty metrics
+     */
+    public GeometryMetrics() {
+        reset();
+    }
+
+    /**
+     * Measures the final generation of a derivation, interpreted with the default turtle from the
+     * origin
+     * @param engine Engine deriving the modules
+     * @param iterations Number of iterations to apply
+     * @param context State of the derivation
+     * @return The metrics of the drawn segments
+     */
+    public static GeometryMetrics measure(
+            LSystemEngine engine, int iterations, DerivationContext context) {
+        return new TurtleGraphics().interpret(
+                engine, iterations, context, ORIGIN, new GeometryMetrics());
+    }
+
+    /**
+     * Forgets all measured segments, so this object can measure another path
+     * @return this for method chaining
+     */
+    public GeometryMetrics reset() {
+        segmentCount = 0;
+        totalLength = 0;
+        minX = minY = Double.POSITIVE_INFINITY;
+        maxX = maxY = Double.NEGATIVE_INFINITY;
+        maxDepth = 0;
+        leafCount = 0;
+        Arrays.fill(branchCounts, 0);
+        return this;
+    }
+
+    @Override
+    public void addSegment(
+            double x1, double y1, double x2, double y2, int depth, int branchId, float width) {
+        if (segmentCount > 0 && (x1 != lastX || y1 != lastY)) {
+            leafCount++;
+        }
+
+        if (depth >= openBranches.length) {
+            int capacity = Math.max(depth + 1, openBranches.length * 2);
+            openBranches = Arrays.copyOf(openBranches, capacity);
+            branchCounts = Arrays.copyOf(branchCounts, capacity);
+        }
+
+        // Siblings at the same depth have distinct ids, and a branch keeps its id around the
+        // branches nested in it
+        if (branchCounts[depth] == 0 || openBranches[depth] != branchId) {
+            openBranches[depth] = branchId;
+            branchCounts[depth]++;
+        }
+
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        totalLength += Math.sqrt(dx * dx + dy * dy);
+        minX = Math.min(minX, Math.min(x1, x2));
+        minY = Math.min(minY, Math.min(y1, y2));
+        maxX = Math.max(maxX, Math.max(x1, x2));
+        maxY = Math.max(maxY, Math.max(y1, y2));
+        maxDepth = Math.max(maxDepth, depth);
+        lastX = x2;
+        lastY = y2;
+        segmentCount++;
+    }
+
+    /**
+     * Gets the number of measured segments
+     * @return Segment count
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Gets the total length of the segments
+     * @return Sum of all segment lengths
+     */
+    public double getTotalLength() {
+        return totalLength;
+    }
+
+    /**
+     * Gets the width of the bounding box
+     * @return Width, 0 when no segment was measured
+     */
+    public double getWidth() {
+        return segmentCount == 0 ? 0 : maxX - minX;
+    }
+
+    /**
+     * Gets the height of the bounding box
+     * @return Height, 0 when no segment was measured
+     */
+    public double getHeight() {
+        return segmentCount == 0 ? 0 : maxY - minY;
+    }
+
+    /**
+     * Gets the smallest X coordinate of the segments
+     * @return The coordinate, positive infinity when no segment was measured
+     */
+    public double getMinX() {
+        return minX;
+    }
+
+    /**
+     * Gets the smallest Y coordinate of the segments
+     * @return The coordinate, positive infinity when no segment was measured
+     */
+    public double getMinY() {
+        return minY;
+    }
+
+    /**
+     * Gets the largest X coordinate of the segments
+     * @return The coordinate, negative infinity when no segment was measured
+     */
+    public double getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * Gets the largest Y coordinate of the segments
+     * @return The coordinate, negative infinity when no segment was measured
+     */
+    public double getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * Gets the deepest branch nesting holding a segment
+     * @return Maximum depth, 0 for the trunk only
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Gets the number of segments where drawing does not continue
+     * @return Leaf count
+     */
+    public int getLeafCount() {
+        return segmentCount == 0 ? 0 : leafCount + 1; // the last segment is always a leaf
+    }
+
+    /**
+     * Gets the number of branches of an order that drew at least one segment
+     * @param order Branch depth, 0 for the trunk
+     * @return Branch count
+     */
+    public int getBranchCount(int order) {
+        return order >= 0 && order < branchCounts.length ? branchCounts[order] : 0;
+    }
+
+    /**
+     * Gets the number of branches per order, from the trunk to {@link #getMaxDepth()}
+     * @return A new array whose i-th element is the number of branches of order i
+     */
+    public int[] getBranchOrderHistogram() {
+        return segmentCount == 0 ? new int[0] : Arrays.copyOf(branchCounts, maxDepth + 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "GeometryMetrics{segments=%d, length=%.2f, width=%.2f, height=%.2f, depth=%d,"
+                        + " leaves=%d, branches=%s}",
+                segmentCount,
+                totalLength,
+                getWidth(),
+                getHeight(),
+                maxDepth,
+                getLeafCount(),
+                Arrays.toString(getBranchOrderHistogram()));
+    }
+}
@@ -0,0 +1,389 @@
+package graphics;
+
+import core.Expansion;
+import core.LSystemEngine;
+import core.ModuleString;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drawing of a deterministic derivation as instances of a few prototype shapes, built from its
+ * expansion DAG (see {@link LSystemEngine#expand(int)}).
+ *
+ * <p>A subtree of the DAG, i.e. a (module, remaining iterations) pair, draws the same segments
+ * wherever it appears, only turned and moved by the turtle state it starts in, as long as its
+ * branches are balanced. Each such subtree of at most {@code maxPrototypeLength} modules is
+ * interpreted once from the origin, heading up, into a prototype shape; the scene is the list of
+ * (prototype, rigid transform) instances covering the derivation. The geometry therefore grows
+ * with the number of distinct subtrees instead of the number of segments.
+ *
+ * <p>Prototypes only keep the segment geometry: depths, branch ids and widths are not kept.
+ */
+public class InstancedScene {
+    /** Largest number of modules of a prototype by default */
+    public static final int DEFAULT_PROTOTYPE_LENGTH = 4096;
+
+    private static final Point2D ORIGIN = new Point2D.Double(0, 0);
+
+    // Doubles per instance and per saved walker state: x, y, heading X and heading Y
+    private static final int STATE_SIZE = 4;
+
+    private final List<Prototype> prototypes = new ArrayList<>();
+    private int[] instancePrototypes = new int[64];
+    private double[] instanceStates = new double[64 * STATE_SIZE];
+    private int instanceCount;
+    private long segmentCount;
+
+    /**
+     * Shape of a subtree drawn from the origin, heading up, and the state it ends in
+     */
+    private static final class Prototype {
+        final Path2D.Float shape;
+        final int segmentCount;
+        final double radius; // largest distance of a point of the shape from the origin
+        final double[] end; // x, y, heading X, heading Y
+
+        Prototype(Path2D.Float shape, int segmentCount, double radius, double[] end) {
+            this.shape = shape;
+            this.segmentCount = segmentCount;
+            this.radius = radius;
+            this.end = end;
+        }
+    }
+
+    private InstancedScene() {}
+
+    /**
+     * Builds the scene of a derivation with prototypes of at most {@value
+     * #DEFAULT_PROTOTYPE_LENGTH} modules
+     * @param engine Engine with a deterministic, context-free rule
+     * @param iterations Number of iterations to apply
+     * @param interpreter Turtle interpreting the prototypes
+     * @param startPosition Starting position for turtle
+     * @return The scene
+     */
+    public static InstancedScene build(
+            LSystemEngine engine,
+            int iterations,
+            TurtleGraphics interpreter,
+            Point2D startPosition) {
+        return build(engine, iterations, interpreter, startPosition, DEFAULT_PROTOTYPE_LENGTH);
+    }
+
+    /**
+     * Builds the scene of a derivation
+     * @param engine Engine with a deterministic, context-free rule
+     * @param iterations Number of iterations to apply
+     * @param interpreter Turtle interpreting the prototypes
+     * @param startPosition Starting position for turtle
+     * @param maxPrototypeLength Largest number of modules of a prototype. Larger prototypes mean
+     * fewer instances but more geometry.
+     * @return The scene
+     * @throws IllegalStateException if the rule is not deterministic and context-free
+     */
+    public static InstancedScene build(
+            LSystemEngine engine,
+            int iterations,
+            TurtleGraphics interpreter,
+            Point2D startPosition,
+            int maxPrototypeLength) {
+        if (maxPrototypeLength < 1) {
+            throw new IllegalArgumentException("Prototypes must hold at least one module");
+        }
+
+        InstancedScene scene = new InstancedScene();
+        Builder builder = scene.new Builder(interpreter, maxPrototypeLength);
+        builder.walk(engine.expand(iterations), startPosition.getX(), startPosition.getY());
+
+        return scene;
+    }
+
+    /**
+     * Walks the expansion DAG with the turtle state, emitting an instance for every prototype
+     */
+    private final class Builder {
+        private final TurtleGraphics interpreter;
+        private final int maxPrototypeLength;
+        private final Map<Expansion, Integer> prototypeIds = new IdentityHashMap<>();
+        private final TurtlePath scratch = new TurtlePath();
+
+        private double x;
+        private double y;
+        private double headingX;
+        private double headingY = 1;
+        private double[] stack = new double[STATE_SIZE * 64];
+        private int stackSize;
+
+        Builder(TurtleGraphics interpreter, int maxPrototypeLength) {
+            this.interpreter = interpreter;
+            this.maxPrototypeLength = maxPrototypeLength;
+        }
+
+        void walk(Expansion root, double startX, double startY) {
+            x = startX;
+            y = startY;
+            walk(root);
+        }
+
+        private void walk(Expansion node) {
+            int id = prototypeOf(node);
+
+            if (id >= 0) {
+                Prototype prototype = prototypes.get(id);
+                if (prototype.segmentCount > 0) addInstance(id, x, y, headingX, headingY);
+                advance(prototype.end);
+            } else if (node.isLeaf()) {
+                // Only unbalanced brackets are not prototypes
+                if (node.getSymbol() == '[') push();
+                else pop();
+            } else {
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    walk(node.getChild(i));
+                }
+            }
+        }
+
+        /**
+         * Gets the prototype of a subtree, creating it on first use
+         * @return The prototype id, or -1 if the subtree is too long or unbalanced
+         */
+        private int prototypeOf(Expansion node) {
+            Integer cached = prototypeIds.get(node);
+            if (cached != null) return cached;
+
+            int id = -1;
+            if (node.length() <= maxPrototypeLength) {
+                ModuleString modules = node.toModuleString();
+
+                if (TurtleGraphics.isBalanced(modules)) {
+                    interpreter.interpret(modules, ORIGIN, scratch);
+                    prototypes.add(createPrototype(scratch, interpreter.saveState()));
+                    id = prototypes.size() - 1;
+                }
+            }
+
+            prototypeIds.put(node, id);
+            return id;
+        }
+
+        /**
+         * Moves the turtle to the end state of a prototype drawn from its current state
+         */
+        private void advance(double[] end) {
+            double newX = x + headingY * end[0] - headingX * end[1];
+            double newY = y + headingX * end[0] + headingY * end[1];
+            double newHeadingX = headingY * end[2] + headingX * end[3];
+            double newHeadingY = headingY * end[3] - headingX * end[2];
+
+            x = newX;
+            y = newY;
+            headingX = newHeadingX;
+            headingY = newHeadingY;
+        }
+
+        private void push() {
+            if (stackSize + STATE_SIZE > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+
+            stack[stackSize] = x;
+            stack[stackSize + 1] = y;
+            stack[stackSize + 2] = headingX;
+            stack[stackSize + 3] = headingY;
+            stackSize += STATE_SIZE;
+        }
+
+        private void pop() {
+            if (stackSize == 0) return; // unbalanced ']', keep the current state
+
+            stackSize -= STATE_SIZE;
+            x = stack[stackSize];
+            y = stack[stackSize + 1];
+            headingX = stack[stackSize + 2];
+            headingY = stack[stackSize + 3];
+        }
+    }
+
+    private static Prototype createPrototype(TurtlePath path, double[] state) {
+        Path2D.Float shape = new Path2D.Float(Path2D.WIND_NON_ZERO, path.getLineCount() + 1);
+        float[] coordinates = path.coordinateArray();
+        double radius = 0;
+
+        for (int i = 0, offset = 0; i < path.getLineCount(); i++, offset += 4) {
+            // Connected segments continue the current subpath
+            if (i == 0
+                    || coordinates[offset] != coordinates[offset - 2]
+                    || coordinates[offset + 1] != coordinates[offset - 1]) {
+                shape.moveTo(coordinates[offset], coordinates[offset + 1]);
+                radius = Math.max(radius, Math.hypot(coordinates[offset], coordinates[offset + 1]));
+            }
+            shape.lineTo(coordinates[offset + 2], coordinates[offset + 3]);
+            radius = Math.max(radius, Math.hypot(coordinates[offset + 2], coordinates[offset + 3]));
+        }
+
+        double[] end = {state[0], state[1], state[2], state[3]};
+        return new Prototype(shape, path.getLineCount(), radius, end);
+    }
+
+    private void addInstance(int prototype, double x, double y, double headingX, double headingY) {
+        if (instanceCount == instancePrototypes.length) {
+            instancePrototypes = Arrays.copyOf(instancePrototypes, instanceCount * 2);
+            instanceStates = Arrays.copyOf(instanceStates, instanceCount * 2 * STATE_SIZE);
+        }
+
+        int offset = instanceCount * STATE_SIZE;
+        instancePrototypes[instanceCount] = prototype;
+        instanceStates[offset] = x;
+        instanceStates[offset + 1] = y;
+        instanceStates[offset + 2] = headingX;
+        instanceStates[offset + 3] = headingY;
+        instanceCount++;
+        segmentCount += prototypes.get(prototype).segmentCount;
+    }
+
+    /**
+     * Gets the number of distinct prototypes
+     * @return Prototype count
+     */
+    public int getPrototypeCount() {
+        return prototypes.size();
+    }
+
+    /**
+     * Gets the shape of a prototype, drawn from the origin heading up. It must not be modified.
+     * @param id Prototype id
+     * @return The shape
+     */
+    public Path2D.Float getPrototype(int id) {
+        return prototypes.get(id).shape;
+    }
+
+    /**
+     * Gets the number of segments held by the prototypes, i.e. the geometry kept in memory
+     * @return Segment count of all prototypes
+     */
+    public long getPrototypeSegmentCount() {
+        long total = 0;
+        for (Prototype prototype : prototypes) {
+            total += prototype.segmentCount;
+        }
+
+        return total;
+    }
+
+    /**
+     * Gets the number of instances
+     * @return Instance count
+     */
+    public int getInstanceCount() {
+        return instanceCount;
+    }
+
+    /**
+     * Gets the prototype drawn by an instance
+     * @param instance Instance index
+     * @return Prototype id
+     */
+    public int getInstancePrototype(int instance) {
+        return instancePrototypes[checkInstance(instance)];
+    }
+
+    /**
+     * Gets the transform placing the prototype of an instance, a rotation and a translation
+     * @param instance Instance index
+     * @param target Transform to set, so drawing many instances allocates nothing
+     * @return {@code target}
+     */
+    public AffineTransform getInstanceTransform(int instance, AffineTransform target) {
+        int offset = checkInstance(instance) * STATE_SIZE;
+        double headingX = instanceStates[offset + 2];
+        double headingY = instanceStates[offset + 3];
+
+        // Turns the prototype heading (0, 1) into the instance heading, in screen coordinates
+        target.setTransform(
+                headingY,
+                headingX,
+                -headingX,
+                headingY,
+                instanceStates[offset],
+                instanceStates[offset + 1]);
+        return target;
+    }
+
+    /**
+     * Checks if an instance may intersect a rectangle, from the bounding circle of its prototype
+     * @param instance Instance index
+     * @param minX Left edge of the rectangle
+     * @param minY Top edge of the rectangle
+     * @param maxX Right edge of the rectangle
+     * @param maxY Bottom edge of the rectangle
+     * @return false if the instance is certainly outside the rectangle
+     */
+    public boolean mayIntersect(int instance, double minX, double minY, double maxX, double maxY) {
+        int offset = checkInstance(instance) * STATE_SIZE;
+        double radius = prototypes.get(instancePrototypes[instance]).radius;
+        double x = instanceStates[offset];
+        double y = instanceStates[offset + 1];
+
+        return x + radius >= minX && x - radius <= maxX && y + radius >= minY && y - radius <= maxY;
+    }
+
+    /**
+     * Gets the number of segments drawn by the scene
+     * @return Segment count of all instances
+     */
+    public long getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Writes every instanced segment, in drawing order, into a path
+     * @param target Receives the segments, cleared first
+     * @return {@code target}
+     */
+    public TurtlePath toPath(TurtlePath target) {
+        target.clear();
+        AffineTransform transform = new AffineTransform();
+        float[] coordinates = new float[6];
+
+        for (int i = 0; i < instanceCount; i++) {
+            Path2D.Float shape = prototypes.get(instancePrototypes[i]).shape;
+            PathIterator iterator = shape.getPathIterator(getInstanceTransform(i, transform));
+
+            float lastX = 0;
+            float lastY = 0;
+            for (; !iterator.isDone(); iterator.next()) {
+                if (iterator.currentSegment(coordinates) == PathIterator.SEG_LINETO) {
+                    target.addLine(lastX, lastY, coordinates[0], coordinates[1]);
+                }
+                lastX = coordinates[0];
+                lastY = coordinates[1];
+            }
+        }
+
+        return target;
+    }
+
+    private int checkInstance(int instance) {
+        if (instance < 0 || instance >= instanceCount) {
+            throw new IndexOutOfBoundsException(
+                    "Instance " + instance + " out of bounds for " + instanceCount);
+        }
+
+        return instance;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "InstancedScene{prototypes=%d, instances=%d, segments=%d}",
+                prototypes.size(), instanceCount, segmentCount);
+    }
+}
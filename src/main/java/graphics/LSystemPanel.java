@@ -1,7 +1,6 @@
 package graphics;
 
-import core.LSystemEngine;
-import core.RandomSingleton;
+import core.DerivationContext;
 import core.RuleController;
 import java.awt.Color;
 import java.awt.Graphics;
@@ -9,7 +8,6 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
-import java.awt.geom.Point2D;
 import javax.swing.AbstractAction;
 import javax.swing.ActionMap;
 import javax.swing.InputMap;
@@ -20,28 +18,30 @@ import javax.swing.Timer;
 /**
  * Panel that displays animated L-System turtle graphics.
  * Cycles through iterations automatically using a timer.
+ *
+ * <p>Derivation and drawing run in a {@link FramePipeline}; the Event Dispatch Thread only asks
+ * for the next iteration and paints the latest finished frame, so it never blocks on deep
+ * generations.
  */
 public class LSystemPanel extends JPanel {
     private static final Color BACKGROUND_COLOR = Color.WHITE;
     private static final int TIMER_DELAY_MS = 1000;
     private static final int MAX_ITERATIONS = 8;
+    private static final long MODULE_BUDGET = 1_000_000;
 
-    private LSystemEngine lsystemEngine;
-    private int currentIteration = 0;
-    private String instructions;
+    private DerivationContext context = new DerivationContext();
     private final Timer animationTimer;
-    private final Renderer renderer;
+    private final FramePipeline pipeline;
     private final RuleController controller;
 
     private boolean paused = false;
 
     public LSystemPanel(RuleController controller, Renderer renderer) {
         this.controller = controller;
-        this.renderer = renderer;
+        this.pipeline = new FramePipeline(renderer, MODULE_BUDGET, MAX_ITERATIONS, this::repaint);
 
         animationTimer = createAnimationTimer();
-        this.lsystemEngine = new LSystemEngine(controller.getRule());
-        instructions = lsystemEngine.getRule().getAxiom();
+        pipeline.restart(controller.getRule(), context);
 
         setBackground(BACKGROUND_COLOR);
         setFocusable(true);
@@ -50,56 +50,22 @@ public class LSystemPanel extends JPanel {
     }
 
     private Timer createAnimationTimer() {
-        return new Timer(TIMER_DELAY_MS, e -> updateLSystem());
+        return new Timer(TIMER_DELAY_MS, e -> pipeline.advance());
     }
 
     private void startAnimation() {
         animationTimer.start();
     }
 
-    private void restartAnimation() {
-        currentIteration = 0;
-        instructions = lsystemEngine.getRule().getAxiom();
-        // In order to recreate the same tree as the first iteration
-        // we need to reset the states of the SplittableRandom, otherwise
-        // it will continue giving the next pseudo-random numbers in the sequence
-        // instead of coming to the first number in the sequence.
-        RandomSingleton.getInstance().reset();
-    }
-
-    /**
-     * Update the L-System string and repaint. Changes
-     */
-    private void updateLSystem() {
-        if (currentIteration >= MAX_ITERATIONS) {
-            restartAnimation();
-        } else {
-            currentIteration++;
-            instructions = lsystemEngine.applyRules(instructions);
-        }
-
-        repaint();
-    }
-
     /**
      * Draws UI's info.
      * @param g2d the graphics2d instance to draw the info
+     * @param frame the displayed frame
      */
-    private void drawUIInfo(Graphics2D g2d) {
-        long seed = RandomSingleton.getInstance().getSeed();
+    private void drawUIInfo(Graphics2D g2d, FramePipeline.Frame frame) {
         g2d.setColor(Color.BLACK);
-        g2d.drawString("Iteration: " + currentIteration, 10, 25);
-        g2d.drawString("Seed: " + seed, 10, 50);
-    }
-
-    /**
-     * Renders the L-system at starting point.
-     * @param g2d the graphics2d instance to render the system
-     */
-    private void drawLSystem(Graphics2D g2d) {
-        Point2D startPoint = new Point2D.Double(getWidth() / 2, getHeight());
-
-        renderer.render(g2d, instructions, startPoint, currentIteration);
+        g2d.drawString("Iteration: " + frame.getIteration(), 10, 25);
+        g2d.drawString("Seed: " + frame.getSeed(), 10, 50);
     }
 
     /**
@@ -113,12 +79,14 @@ public class LSystemPanel extends JPanel {
     }
 
     /**
-     * Updates the RandomSingleton instance's seed and restarts the animation, updating
+     * Starts a derivation context with a new seed and restarts the animation, updating
      * the tree and UI's info.
      */
     private void regenerateSeed() {
-        RandomSingleton.getInstance().generateSeed();
-        restartAnimation();
+        // Random numbers are keyed by seed, iteration and position, so deriving again
+        // from the axiom with the same context would recreate the same tree
+        context = new DerivationContext();
+        pipeline.restart(controller.getRule(), context);
     }
 
     /**
@@ -176,10 +144,7 @@ public class LSystemPanel extends JPanel {
      * @param updatedController the rule controller after shifting operation
      */
     private void switchRule(RuleController updatedController) {
-        lsystemEngine.setRule(updatedController.getRule());
-        currentIteration = 0;
-        instructions = lsystemEngine.getRule().getAxiom();
-        repaint();
+        pipeline.restart(updatedController.getRule(), context);
     }
 
     /**
@@ -199,7 +164,11 @@ public class LSystemPanel extends JPanel {
         
         setAntialiasing(g2d);
 
-        drawUIInfo(g2d);
-        drawLSystem(g2d);
+        pipeline.setViewport(getWidth(), getHeight());
+        FramePipeline.Frame frame = pipeline.latestFrame();
+        if (frame == null) return; // the first frame is still being drawn
+
+        g2d.drawImage(frame.getImage(), 0, 0, null);
+        drawUIInfo(g2d, frame);
     }
 }
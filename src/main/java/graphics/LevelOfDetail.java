@@ -0,0 +1,136 @@
+package graphics;
+
+/**
+ * Precomputed levels of detail of a {@link TurtlePath}, from which a renderer picks the coarsest
+ * one that still looks the same at its scale.
+ *
+ * <p>Level 0 is lossless: runs of collinear segments are merged and duplicate segments removed
+ * (see {@link PathSimplifier}). Each following level also aggregates connected segments into
+ * segments at least {@code minLength} screen pixels long at a scale twice smaller than the
+ * previous level, starting at a scale of 1 for level 1. Levels are computed on first use and
+ * their buffers reused when the object is rebuilt.
+ *
+ * <h3>Usage Example:</h3>
+ * <pre>
+ * LevelOfDetail lod = new LevelOfDetail().build(path);
+ * draw(lod.select(0.25)); // a quarter of a pixel per path unit
+ * </pre>
+ */
+public class LevelOfDetail {
+    /** Number of levels created by default */
+    public static final int DEFAULT_LEVELS = 6;
+
+    /** Length in screen pixels of the shortest segment drawn by default */
+    public static final double DEFAULT_MIN_LENGTH = 1;
+
+    private final double minLength;
+    private final TurtlePath merged = new TurtlePath();
+    private final TurtlePath scratch = new TurtlePath();
+    private final TurtlePath[] levels;
+    private final boolean[] built;
+
+    /**
+     * Creates the default levels of detail
+     */
+    public LevelOfDetail() {
+        this(DEFAULT_LEVELS, DEFAULT_MIN_LENGTH);
+    }
+
+    /**
+     * Creates levels of detail
+     * @param levels Number of levels, including the lossless level 0
+     * @param minLength Length in screen pixels of the shortest segment to draw
+     */
+    public LevelOfDetail(int levels, double minLength) {
+        if (levels < 1) {
+            throw new IllegalArgumentException("At least one level is required");
+        }
+        if (!(minLength > 0)) {
+            throw new IllegalArgumentException("Minimum length must be positive");
+        }
+
+        this.minLength = minLength;
+        this.levels = new TurtlePath[levels];
+        this.built = new boolean[levels];
+        for (int level = 0; level < levels; level++) {
+            this.levels[level] = new TurtlePath();
+        }
+    }
+
+    /**
+     * Simplifies a path, replacing the previous levels. The path is not kept.
+     * @param source Path to simplify
+     * @return this for method chaining
+     */
+    public LevelOfDetail build(TurtlePath source) {
+        PathSimplifier.mergeCollinear(source, merged);
+        PathSimplifier.removeDuplicates(merged, levels[0]);
+
+        built[0] = true;
+        for (int level = 1; level < levels.length; level++) {
+            built[level] = false;
+        }
+
+        return this;
+    }
+
+    /**
+     * Gets the number of levels
+     * @return Level count
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * Gets a level of detail, computing it on first use
+     * @param level Level, 0 for the lossless one
+     * @return The simplified path, valid until the next {@link #build(TurtlePath)}
+     */
+    public TurtlePath getLevel(int level) {
+        if (level < 0 || level >= levels.length) {
+            throw new IndexOutOfBoundsException(
+                    "Level " + level + " out of bounds for " + levels.length);
+        }
+
+        if (!built[level]) {
+            PathSimplifier.aggregate(merged, getMinLength(level), scratch);
+            PathSimplifier.removeDuplicates(scratch, levels[level]);
+            built[level] = true;
+        }
+
+        return levels[level];
+    }
+
+    /**
+     * Gets the length of the shortest segments of a level
+     * @param level Level
+     * @return Length in path units, 0 for the lossless level
+     */
+    public double getMinLength(int level) {
+        return level == 0 ? 0 : Math.scalb(minLength, level - 1);
+    }
+
+    /**
+     * Selects the coarsest level whose shortest segments are still {@code minLength} pixels long
+     * at a scale
+     * @param scale Screen pixels per path unit
+     * @return The level to draw at that scale
+     */
+    public TurtlePath select(double scale) {
+        return getLevel(levelFor(scale));
+    }
+
+    /**
+     * Finds the level drawn at a scale, see {@link #select(double)}
+     * @param scale Screen pixels per path unit
+     * @return The level index
+     */
+    public int levelFor(double scale) {
+        if (!(scale > 0)) return levels.length - 1;
+
+        // Level k aggregates to minLength * 2^(k - 1) path units, at most minLength pixels
+        double level = Math.floor(1 - Math.log(scale) / Math.log(2));
+        return (int) Math.max(0, Math.min(levels.length - 1, level));
+    }
+}
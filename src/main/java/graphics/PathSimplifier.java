@@ -0,0 +1,224 @@
+package graphics;
+
+/**
+ * Simplifications of a {@link TurtlePath} that reduce the number of segments to draw. Each one
+ * reads a path and writes the simplified segments, with their attributes, into another one,
+ * which is cleared first. Segments are only combined when they have the same depth and width,
+ * so the output can still be styled per segment.
+ */
+public final class PathSimplifier {
+    // Largest sine of the angle between two segments considered collinear. Coordinates are
+    // floats, so a run drawn along a single heading is not exactly straight.
+    private static final double COLLINEAR_TOLERANCE = 1e-4;
+
+    private PathSimplifier() {}
+
+    /**
+     * Merges each run of consecutive, connected and collinear segments pointing the same way
+     * (e.g. drawn by {@code FFFF}) into a single segment. The result matches the source to within
+     * the collinearity tolerance: joints of a run may lie about 1e-4 times its length off the
+     * merged segment, a fraction of a pixel unless runs are thousands of pixels long.
+     * @param source Path to simplify
+     * @param target Receives the merged segments
+     * @return {@code target}
+     */
+    public static TurtlePath mergeCollinear(TurtlePath source, TurtlePath target) {
+        target.clear();
+        if (source.isEmpty()) return target;
+
+        float[] coordinates = source.coordinateArray();
+        int run = 0; // first segment of the current run
+        double endX = coordinates[2];
+        double endY = coordinates[3];
+
+        for (int i = 1; i < source.getLineCount(); i++) {
+            int offset = 4 * i;
+            double x1 = coordinates[offset];
+            double y1 = coordinates[offset + 1];
+            double x2 = coordinates[offset + 2];
+            double y2 = coordinates[offset + 3];
+
+            boolean continues =
+                    x1 == endX
+                            && y1 == endY
+                            && sameAttributes(source, run, i)
+                            && isCollinear(
+                                    endX - coordinates[4 * run],
+                                    endY - coordinates[4 * run + 1],
+                                    x2 - x1,
+                                    y2 - y1);
+            if (!continues) {
+                addSegment(target, source, run, endX, endY);
+                run = i;
+            }
+            endX = x2;
+            endY = y2;
+        }
+        addSegment(target, source, run, endX, endY);
+
+        return target;
+    }
+
+    /**
+     * Removes segments identical to a previous one, in either direction, found by hashing their
+     * end points. The first occurrence is kept, with its attributes.
+     * @param source Path to simplify
+     * @param target Receives the distinct segments, in their original order
+     * @return {@code target}
+     */
+    public static TurtlePath removeDuplicates(TurtlePath source, TurtlePath target) {
+        target.clear();
+        int count = source.getLineCount();
+        target.ensureCapacity(count);
+
+        // Open addressing over indices of target segments, plus one so 0 marks a free slot
+        int capacity = Integer.highestOneBit(Math.max(count, 1)) * 4;
+        int[] slots = new int[capacity];
+        float[] coordinates = source.coordinateArray();
+
+        for (int i = 0; i < count; i++) {
+            int offset = 4 * i;
+            float x1 = coordinates[offset];
+            float y1 = coordinates[offset + 1];
+            float x2 = coordinates[offset + 2];
+            float y2 = coordinates[offset + 3];
+
+            int slot = hash(x1, y1, x2, y2) & (capacity - 1);
+            boolean duplicate = false;
+            while (slots[slot] != 0 && !duplicate) {
+                duplicate = isSame(target.coordinateArray(), 4 * (slots[slot] - 1), x1, y1, x2, y2);
+                slot = (slot + 1) & (capacity - 1);
+            }
+
+            if (!duplicate) {
+                slots[slot] = target.getLineCount() + 1;
+                target.addSegment(
+                        x1,
+                        y1,
+                        x2,
+                        y2,
+                        source.getDepth(i),
+                        source.getBranchId(i),
+                        source.getWidth(i));
+            }
+        }
+
+        return target;
+    }
+
+    /**
+     * Replaces each chain of consecutive, connected segments by segments at least {@code
+     * minLength} long between points of the chain, like drawing the chain at a lower resolution.
+     * What remains of a chain once it breaks is kept if it is at least half that long, so chains
+     * shorter than that, e.g. sub-pixel twigs, are skipped.
+     * @param source Path to simplify
+     * @param minLength Smallest length of the output segments, in path units
+     * @param target Receives the aggregated segments
+     * @return {@code target}
+     */
+    public static TurtlePath aggregate(TurtlePath source, double minLength, TurtlePath target) {
+        target.clear();
+        if (source.isEmpty()) return target;
+
+        float[] coordinates = source.coordinateArray();
+        int chain = 0; // segment whose attributes the pending segment takes
+        double startX = coordinates[0];
+        double startY = coordinates[1];
+        double endX = startX;
+        double endY = startY;
+
+        for (int i = 0; i < source.getLineCount(); i++) {
+            int offset = 4 * i;
+            double x1 = coordinates[offset];
+            double y1 = coordinates[offset + 1];
+
+            if (x1 != endX || y1 != endY || !sameAttributes(source, chain, i)) {
+                if (Math.hypot(endX - startX, endY - startY) >= minLength / 2) {
+                    addSegment(target, source, chain, startX, startY, endX, endY);
+                }
+                chain = i;
+                startX = x1;
+                startY = y1;
+            }
+
+            endX = coordinates[offset + 2];
+            endY = coordinates[offset + 3];
+            if (Math.hypot(endX - startX, endY - startY) >= minLength) {
+                addSegment(target, source, chain, startX, startY, endX, endY);
+                startX = endX;
+                startY = endY;
+            }
+        }
+
+        if (Math.hypot(endX - startX, endY - startY) >= minLength / 2) {
+            addSegment(target, source, chain, startX, startY, endX, endY);
+        }
+
+        return target;
+    }
+
+    private static boolean isCollinear(double dx1, double dy1, double dx2, double dy2) {
+        double cross = dx1 * dy2 - dy1 * dx2;
+        double dot = dx1 * dx2 + dy1 * dy2;
+        double lengths = Math.sqrt((dx1 * dx1 + dy1 * dy1) * (dx2 * dx2 + dy2 * dy2));
+
+        return dot > 0 && Math.abs(cross) <= COLLINEAR_TOLERANCE * lengths;
+    }
+
+    private static boolean sameAttributes(TurtlePath path, int a, int b) {
+        return path.getDepth(a) == path.getDepth(b) && path.getWidth(a) == path.getWidth(b);
+    }
+
+    private static boolean isSame(
+            float[] coordinates, int offset, float x1, float y1, float x2, float y2) {
+        float a1 = coordinates[offset];
+        float b1 = coordinates[offset + 1];
+        float a2 = coordinates[offset + 2];
+        float b2 = coordinates[offset + 3];
+
+        return (a1 == x1 && b1 == y1 && a2 == x2 && b2 == y2)
+                || (a1 == x2 && b1 == y2 && a2 == x1 && b2 == y1);
+    }
+
+    /**
+     * Hashes a segment alike in both directions
+     */
+    private static int hash(float x1, float y1, float x2, float y2) {
+        int h1 = hash(x1, y1);
+        int h2 = hash(x2, y2);
+        int h = (h1 + h2) * 31 + (h1 ^ h2);
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(float x, float y) {
+        // Adding 0 turns -0 into 0, which compares equal
+        int h = Float.floatToIntBits(x + 0f) * 0x9e3779b9 + Float.floatToIntBits(y + 0f);
+        return h * 0x9e3779b9;
+    }
+
+    private static void addSegment(
+            TurtlePath target, TurtlePath source, int index, double endX, double endY) {
+        float[] coordinates = source.coordinateArray();
+        int offset = 4 * index;
+        addSegment(
+                target, source, index, coordinates[offset], coordinates[offset + 1], endX, endY);
+    }
+
+    private static void addSegment(
+            TurtlePath target,
+            TurtlePath source,
+            int index,
+            double x1,
+            double y1,
+            double x2,
+            double y2) {
+        target.addSegment(
+                x1,
+                y1,
+                x2,
+                y2,
+                source.getDepth(index),
+                source.getBranchId(index),
+                source.getWidth(index));
+    }
+}
@@ -0,0 +1,23 @@
+package graphics;
+
+/**
+ * Receives the segments drawn by a turtle one at a time, e.g. to render or measure them without
+ * keeping a whole {@link TurtlePath} in memory.
+ */
+@FunctionalInterface
+public interface PathSink {
+
+    /**
+     * Receives a line segment with its attributes
+     * @param x1 Starting X coordinate
+     * @param y1 Starting Y coordinate
+     * @param x2 Ending X coordinate
+     * @param y2 Ending Y coordinate
+     * @param depth Number of branches the segment is nested in, 0 for the trunk
+     * @param branchId Identifies the innermost branch holding the segment, {@link
+     * TurtlePath#TRUNK} for none
+     * @param width Line width
+     */
+    void addSegment(
+            double x1, double y1, double x2, double y2, int depth, int branchId, float width);
+}
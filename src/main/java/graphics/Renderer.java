@@ -1,21 +1,49 @@
 package graphics;
 
+import core.ModuleString;
 import java.awt.*;
-import java.awt.geom.Line2D;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
-import java.util.List;
 
 /**
  * Renders L-System strings as graphics using turtle graphics interpretation.
  * Handles color schemes, stroke settings, and coordinate transformations.
+ *
+ * <p>When the path does not fit in the clip of the graphics context, only the segments
+ * intersecting the clip are drawn, found with a {@link SegmentIndex} over the rendered path. The
+ * same index answers {@link #segmentAt(double, double, double)} for hit-testing. Indexes are kept
+ * with a retained {@link SceneCache.Scene}, so a zoomed-in render of it only costs a query.
+ *
+ * <p>Paths are drawn at the coarsest {@link LevelOfDetail} that looks the same at the scale of
+ * the graphics context, unless disabled with {@link #setLevelOfDetail(boolean)}. Levels are kept
+ * with a retained {@link SceneCache.Scene}, so rendering it again only selects one; paths
+ * rendered directly are simplified on every render.
+ *
+ * <p>Segments are not drawn one by one: they are grouped by style into {@link StrokeBuckets},
+ * one {@code Path2D} per style, and each bucket is drawn with a single call. The style of a
+ * segment comes from its depth, which shifts the hue and tapers the stroke, and its line width.
+ * The buckets of a whole path are kept with its scene as well, until the stroke width changes;
+ * clipped renders only bucket the segments they draw.
  */
 public class Renderer {
 
     private static final float BASE_STROKE_WIDTH = 2.0f;
     private static final float SATURATION = 0.8f;
     private static final float BRIGHTNESS = 0.9f;
+    private static final float DEPTH_HUE_SHIFT = 10f / 360f;
+    private static final float DEPTH_TAPER = 0.85f;
 
     private final TurtleGraphics interpreter;
+    private final TurtlePath path = new TurtlePath(); // reused by every render
+    private final StrokeBuckets clipped = new StrokeBuckets(); // segments of clipped renders
+    private final float[] depthWidths = new float[StrokeBuckets.DEPTH_STYLES];
+    private float strokeWidth = BASE_STROKE_WIDTH;
+    private final SceneCache.Scene transientScene = new SceneCache.Scene(path); // not retained
+    private boolean simplified = true;
+    private TurtlePath drawn = path; // path or one of its levels of detail
+    private SceneCache.Scene drawnScene;
+    private int drawnLevel; // level of detail drawn, -1 for the geometry
+    private final AffineTransform instanceTransform = new AffineTransform();
 
     public Renderer() {
         this.interpreter = new TurtleGraphics();
@@ -33,11 +61,84 @@ public class Renderer {
             return;
         }
 
+        renderPath(g2d, interpreter.interpret(lSystemString, startPosition, path), iteration);
+    }
+
+    /**
+     * Renders L-System modules to the graphics context
+     * @param g2d Graphics context to render to
+     * @param modules L-System modules to render
+     * @param startPosition Starting position for rendering
+     * @param iteration Current iteration (used for coloring)
+     */
+    public void render(Graphics2D g2d, ModuleString modules, Point2D startPosition, int iteration) {
+        if (modules == null || modules.isEmpty()) {
+            return;
+        }
+
+        renderPath(g2d, interpreter.interpret(modules, startPosition, path), iteration);
+    }
+
+    /**
+     * Renders an interpreted path, e.g. a projected {@link TurtlePath3D}, to the graphics context
+     * @param g2d Graphics context to render to
+     * @param path Segments to render
+     * @param iteration Current iteration (used for coloring)
+     */
+    public void render(Graphics2D g2d, TurtlePath path, int iteration) {
+        if (path == null || path.isEmpty()) {
+            return;
+        }
+
+        renderPath(g2d, path, iteration);
+    }
+
+    /**
+     * Renders a retained scene, reusing what was derived from its geometry by previous renders
+     * @param g2d Graphics context to render to
+     * @param scene Scene to render
+     * @param iteration Current iteration (used for coloring)
+     */
+    public void render(Graphics2D g2d, SceneCache.Scene scene, int iteration) {
+        if (scene == null || scene.getGeometry().isEmpty()) {
+            return;
+        }
+
+        renderScene(g2d, scene, iteration);
+    }
+
+    /**
+     * Renders an instanced scene to the graphics context, drawing each instance as its
+     * prototype shape transformed by the graphics context. Instances outside the clip are
+     * skipped.
+     * @param g2d Graphics context to render to
+     * @param scene Scene to render
+     * @param iteration Current iteration (used for coloring)
+     */
+    public void render(Graphics2D g2d, InstancedScene scene, int iteration) {
+        if (scene == null || scene.getInstanceCount() == 0) {
+            return;
+        }
+
         setupGraphicsContext(g2d, iteration);
 
-        TurtlePath path = interpreter.interpret(lSystemString, startPosition);
+        AffineTransform saved = g2d.getTransform();
+        Rectangle clip = g2d.getClipBounds();
+        for (int i = 0; i < scene.getInstanceCount(); i++) {
+            if (clip != null
+                    && !scene.mayIntersect(
+                            i,
+                            clip.getMinX() - strokeWidth,
+                            clip.getMinY() - strokeWidth,
+                            clip.getMaxX() + strokeWidth,
+                            clip.getMaxY() + strokeWidth)) {
+                continue;
+            }
 
-        renderPath(g2d, path);
+            g2d.transform(scene.getInstanceTransform(i, instanceTransform));
+            g2d.draw(scene.getPrototype(scene.getInstancePrototype(i)));
+            g2d.setTransform(saved);
+        }
     }
 
     /**
@@ -49,35 +150,140 @@ public class Renderer {
         g2d.setColor(color);
 
         // Set stroke
-        g2d.setStroke(
-                new BasicStroke(BASE_STROKE_WIDTH, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        g2d.setStroke(createStroke(strokeWidth));
+    }
+
+    private static BasicStroke createStroke(float width) {
+        return new BasicStroke(width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
     }
 
     /**
      * Calculates color based on iteration number using HSB color space
      */
     private Color calculateIterationColor(int iteration) {
-        float hue = (iteration * 60f) % 360f / 360f; // Cycle through hues
-        return Color.getHSBColor(hue, SATURATION, BRIGHTNESS);
+        return Color.getHSBColor(calculateIterationHue(iteration), SATURATION, BRIGHTNESS);
+    }
+
+    private static float calculateIterationHue(int iteration) {
+        return (iteration * 60f) % 360f / 360f; // Cycle through hues
+    }
+
+    /**
+     * Renders a path that is not retained, deriving everything again
+     */
+    private void renderPath(Graphics2D g2d, TurtlePath source, int iteration) {
+        transientScene.reset(source);
+        renderScene(g2d, transientScene, iteration);
     }
 
     /**
-     * Renders the turtle path as line segments
+     * Renders the geometry of a scene bucketed by style, skipping the segments outside the clip
      */
-    private void renderPath(Graphics2D g2d, TurtlePath path) {
-        List<Line2D.Double> lines = path.getLines();
+    private void renderScene(Graphics2D g2d, SceneCache.Scene scene, int iteration) {
+        double scale = Math.sqrt(Math.abs(g2d.getTransform().getDeterminant()));
+        int level = simplified ? scene.getLevelOfDetail().levelFor(scale) : -1;
+        TurtlePath path =
+                level < 0 ? scene.getGeometry() : scene.getLevelOfDetail().getLevel(level);
 
-        for (Line2D.Double line : lines) {
-            g2d.draw(line);
+        drawn = path;
+        drawnScene = scene;
+        drawnLevel = level;
+        for (int depth = 0; depth < depthWidths.length; depth++) {
+            depthWidths[depth] = strokeWidth * (float) Math.pow(DEPTH_TAPER, depth);
         }
+        Rectangle clip = g2d.getClipBounds();
+
+        // Building the index only pays off when part of the path is clipped away
+        StrokeBuckets buckets;
+        if (clip == null || clip.contains(path.getBounds())) {
+            buckets =
+                    scene.getBuckets(
+                            level,
+                            strokeWidth,
+                            whole -> {
+                                for (int i = 0; i < path.getLineCount(); i++) {
+                                    addSegment(whole, path, i);
+                                }
+                            });
+        } else {
+            // Segments just outside the clip may still cover it with their stroke
+            double margin = strokeWidth;
+            buckets = clipped;
+            buckets.clear();
+            drawnIndex().query(
+                    clip.getMinX() - margin,
+                    clip.getMinY() - margin,
+                    clip.getMaxX() + margin,
+                    clip.getMaxY() + margin,
+                    i -> addSegment(clipped, path, i));
+        }
+
+        float hue = calculateIterationHue(iteration);
+        for (int bucket : buckets.drawingOrder()) {
+            int depth = buckets.getDepth(bucket);
+            g2d.setColor(
+                    Color.getHSBColor(hue + depth * DEPTH_HUE_SHIFT, SATURATION, BRIGHTNESS));
+            g2d.setStroke(createStroke(buckets.getStrokeWidth(bucket)));
+            g2d.draw(buckets.getPath(bucket));
+        }
+    }
+
+    private void addSegment(StrokeBuckets buckets, TurtlePath path, int index) {
+        float[] coordinates = path.coordinateArray();
+        int offset = index * 4;
+        int depth = Math.min(path.getDepth(index), StrokeBuckets.DEPTH_STYLES - 1);
+
+        buckets.add(
+                depth,
+                depthWidths[depth] * path.getWidth(index),
+                coordinates[offset],
+                coordinates[offset + 1],
+                coordinates[offset + 2],
+                coordinates[offset + 3]);
     }
 
     /**
-     * Sets custom rendering parameters
-     * @param strokeWidth Custom stroke width
+     * Finds the segment of the last drawn path under a point, e.g. the cursor
+     * @param x X coordinate of the point, in the coordinates of the path
+     * @param y Y coordinate of the point, in the coordinates of the path
+     * @param tolerance Largest distance from the point to the segment
+     * @return Index of the closest segment in {@link #getDrawnPath()}, or -1 if there is none
+     */
+    public int segmentAt(double x, double y, double tolerance) {
+        if (drawnScene == null) return -1;
+
+        return drawnIndex().nearest(x, y, tolerance);
+    }
+
+    private SegmentIndex drawnIndex() {
+        return drawnLevel < 0 ? drawnScene.getIndex() : drawnScene.getIndex(drawnLevel);
+    }
+
+    /**
+     * Gets the segments drawn by the last render: the interpreted path or its level of detail
+     * @return The drawn path, valid until the next render
+     */
+    public TurtlePath getDrawnPath() {
+        return drawn;
+    }
+
+    /**
+     * Enables drawing paths at their level of detail
+     * @param enabled true to draw simplified paths, false to draw every segment
+     */
+    public void setLevelOfDetail(boolean enabled) {
+        this.simplified = enabled;
+    }
+
+    /**
+     * Sets the stroke width of trunk segments with the default line width
+     * @param strokeWidth Stroke width, in pixels
      */
     public void setStrokeWidth(float strokeWidth) {
-        // This could be extended to allow customization
-        // For now, keeping the renderer simple
+        if (!(strokeWidth > 0)) {
+            throw new IllegalArgumentException("Stroke width must be positive");
+        }
+
+        this.strokeWidth = strokeWidth;
     }
 }
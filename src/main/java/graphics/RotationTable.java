@@ -0,0 +1,68 @@
+package graphics;
+
+import java.util.Arrays;
+
+/**
+ * Cache of the cosine and sine of turn angles, so turning the turtle heading is a 2x2 rotation
+ * instead of two trigonometric calls. Angles are looked up by their exact value in degrees with
+ * open addressing; when the table fills up (e.g. with continuously varying angles) it is cleared,
+ * which keeps its memory bounded.
+ */
+class RotationTable {
+    private static final int BITS = 8;
+    private static final int CAPACITY = 1 << BITS;
+    private static final int MAX_ENTRIES = CAPACITY / 2;
+
+    private final long[] keys = new long[CAPACITY];
+    private final double[] cosines = new double[CAPACITY];
+    private final double[] sines = new double[CAPACITY];
+    private final boolean[] used = new boolean[CAPACITY];
+    private int entries;
+
+    /**
+     * Finds the slot of an angle, computing its cosine and sine on first use
+     * @param degrees Turn angle in degrees
+     * @return Slot to read with {@link #cos(int)} and {@link #sin(int)}
+     */
+    int lookup(double degrees) {
+        long key = Double.doubleToLongBits(degrees);
+        int slot = hash(key);
+
+        while (used[slot]) {
+            if (keys[slot] == key) return slot;
+            slot = (slot + 1) & (CAPACITY - 1); // CAPACITY is a power of two
+        }
+
+        if (entries == MAX_ENTRIES) {
+            clear();
+            slot = hash(key);
+        }
+
+        double radians = Math.toRadians(degrees);
+        keys[slot] = key;
+        cosines[slot] = Math.cos(radians);
+        sines[slot] = Math.sin(radians);
+        used[slot] = true;
+        entries++;
+
+        return slot;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h >>> (Long.SIZE - BITS)); // top bits mix all bits of the key
+    }
+
+    double cos(int slot) {
+        return cosines[slot];
+    }
+
+    double sin(int slot) {
+        return sines[slot];
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        entries = 0;
+    }
+}
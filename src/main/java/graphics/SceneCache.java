@@ -0,0 +1,255 @@
+package graphics;
+
+import core.LSystemRule;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Retained scenes, so drawing an iteration again neither derives nor interprets it.
+ *
+ * <p>Scenes are keyed by rule (by identity), derivation seed and iteration. A scene holds the
+ * interpreted geometry, drawn from the origin, and optionally the image it was last rasterised
+ * into, for one viewport size. The geometry does not depend on the viewport: a new start point
+ * only translates it. What renderers derive from the geometry, its {@link LevelOfDetail}, and the
+ * {@link SegmentIndex} and {@link StrokeBuckets} of each drawn level, is built on first use and
+ * kept with the scene. The least recently used scenes are evicted beyond the capacity.
+ *
+ * <p>A cache is not thread-safe; it is meant to be used by the thread that draws.
+ */
+public class SceneCache {
+    /** Number of scenes kept by default, enough for a whole animation cycle */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private final Map<Key, Scene> scenes;
+
+    /**
+     * Interpreted geometry of an iteration, what is derived from it and its latest raster
+     */
+    public static final class Scene {
+        private TurtlePath geometry;
+        private BufferedImage image;
+        private final LevelOfDetail levelOfDetail = new LevelOfDetail();
+        private boolean simplified; // whether levelOfDetail was built from the geometry
+        // Index of the geometry, then of each level of detail, built when first needed
+        private final SegmentIndex[] indexes = new SegmentIndex[levelOfDetail.getLevelCount() + 1];
+        private final boolean[] indexed = new boolean[indexes.length];
+        // Segments of the same paths bucketed by style, for the stroke width they were filled with
+        private final StrokeBuckets[] buckets = new StrokeBuckets[indexes.length];
+        private final float[] bucketedWidths = new float[indexes.length]; // NaN until filled
+
+        Scene(TurtlePath geometry) {
+            this.geometry = geometry;
+            Arrays.fill(bucketedWidths, Float.NaN);
+        }
+
+        /**
+         * Replaces the geometry, e.g. of a scene reused for paths that are not retained, dropping
+         * what was derived from the previous one but keeping its buffers
+         * @param geometry New geometry
+         */
+        void reset(TurtlePath geometry) {
+            this.geometry = geometry;
+            this.image = null;
+            this.simplified = false;
+            Arrays.fill(indexed, false);
+            Arrays.fill(bucketedWidths, Float.NaN);
+        }
+
+        /**
+         * Gets the interpreted geometry, drawn from the origin. It must not be modified.
+         * @return The geometry
+         */
+        public TurtlePath getGeometry() {
+            return geometry;
+        }
+
+        /**
+         * Gets the levels of detail of the geometry, simplifying it on first use. Levels are then
+         * only computed once, when first selected.
+         * @return The levels of detail
+         */
+        public LevelOfDetail getLevelOfDetail() {
+            if (!simplified) {
+                levelOfDetail.build(geometry);
+                simplified = true;
+            }
+
+            return levelOfDetail;
+        }
+
+        /**
+         * Gets the segment index of the geometry, building it on first use
+         * @return The index
+         */
+        public SegmentIndex getIndex() {
+            return index(0, geometry);
+        }
+
+        /**
+         * Gets the segment index of a level of detail, building it on first use
+         * @param level Level, 0 for the lossless one
+         * @return The index of {@code getLevelOfDetail().getLevel(level)}
+         */
+        public SegmentIndex getIndex(int level) {
+            return index(level + 1, getLevelOfDetail().getLevel(level));
+        }
+
+        private SegmentIndex index(int slot, TurtlePath path) {
+            if (!indexed[slot]) {
+                if (indexes[slot] == null) indexes[slot] = new SegmentIndex();
+                indexes[slot].build(path);
+                indexed[slot] = true;
+            }
+
+            return indexes[slot];
+        }
+
+        /**
+         * Gets every segment of the geometry or of a level of detail bucketed by style, filling
+         * the buckets on first use and again when the stroke width changes
+         * @param level Level of detail, -1 for the geometry
+         * @param strokeWidth Stroke width of trunk segments the styles are computed for
+         * @param fill Adds every segment of the path to empty buckets
+         * @return The buckets
+         */
+        StrokeBuckets getBuckets(int level, float strokeWidth, Consumer<StrokeBuckets> fill) {
+            int slot = level + 1;
+            if (buckets[slot] == null) buckets[slot] = new StrokeBuckets();
+            if (bucketedWidths[slot] != strokeWidth) {
+                buckets[slot].clear();
+                fill.accept(buckets[slot]);
+                bucketedWidths[slot] = strokeWidth;
+            }
+
+            return buckets[slot];
+        }
+
+        /**
+         * Gets the raster of the scene for a viewport size
+         * @param width Viewport width
+         * @param height Viewport height
+         * @return The image, or null if the scene was not rasterised at that size
+         */
+        public BufferedImage getImage(int width, int height) {
+            if (image == null || image.getWidth() != width || image.getHeight() != height) {
+                return null;
+            }
+
+            return image;
+        }
+
+        /**
+         * Keeps the raster of the scene, replacing the one of another size. The image must not
+         * be modified afterwards.
+         * @param image Rasterised scene
+         */
+        public void setImage(BufferedImage image) {
+            this.image = image;
+        }
+    }
+
+    /**
+     * Creates a cache with the default capacity
+     */
+    public SceneCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a cache
+     * @param capacity Number of scenes kept
+     */
+    public SceneCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        this.scenes =
+                new LinkedHashMap<Key, Scene>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Key, Scene> eldest) {
+                        return size() > capacity;
+                    }
+                };
+    }
+
+    /**
+     * Gets a retained scene
+     * @param rule Rule derived
+     * @param seed Derivation seed
+     * @param iteration Iteration drawn
+     * @return The scene, or null if it is not retained
+     */
+    public Scene get(LSystemRule rule, long seed, int iteration) {
+        return scenes.get(new Key(rule, seed, iteration));
+    }
+
+    /**
+     * Retains the geometry of an iteration, replacing any scene with the same key
+     * @param rule Rule derived
+     * @param seed Derivation seed
+     * @param iteration Iteration drawn
+     * @param geometry Interpreted geometry, drawn from the origin, which must not be modified
+     * afterwards
+     * @return The new scene, without raster
+     */
+    public Scene put(LSystemRule rule, long seed, int iteration, TurtlePath geometry) {
+        Scene scene = new Scene(geometry);
+        scenes.put(new Key(rule, seed, iteration), scene);
+
+        return scene;
+    }
+
+    /**
+     * Drops every scene of a rule, e.g. after it changed
+     * @param rule Rule whose scenes are dropped
+     */
+    public void invalidate(LSystemRule rule) {
+        scenes.keySet().removeIf(key -> key.rule == rule);
+    }
+
+    /**
+     * Drops every scene
+     */
+    public void invalidate() {
+        scenes.clear();
+    }
+
+    /**
+     * Gets the number of retained scenes
+     * @return Scene count
+     */
+    public int size() {
+        return scenes.size();
+    }
+
+    private static final class Key {
+        private final LSystemRule rule;
+        private final long seed;
+        private final int iteration;
+
+        Key(LSystemRule rule, long seed, int iteration) {
+            this.rule = rule;
+            this.seed = seed;
+            this.iteration = iteration;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+
+            Key that = (Key) other;
+            return rule == that.rule && seed == that.seed && iteration == that.iteration;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = System.identityHashCode(rule);
+            h = 31 * h + Long.hashCode(seed);
+            return 31 * h + iteration;
+        }
+    }
+}
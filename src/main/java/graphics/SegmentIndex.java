@@ -0,0 +1,279 @@
+package graphics;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Uniform grid over the segments of a {@link TurtlePath}, answering rectangle and nearest-segment
+ * queries in time proportional to the segments near the query instead of all of them.
+ *
+ * <p>The grid has about one cell per segment, sized to the bounding box of the path, and every
+ * segment is listed in each cell its bounding box overlaps. Cells are stored in two primitive
+ * arrays (the start of each cell in a shared array of segment indices), which are reused when
+ * the index is rebuilt. An index holds query scratch state, so it must not be shared between
+ * threads.
+ *
+ * <h3>Usage Example:</h3>
+ * <pre>
+ * SegmentIndex index = new SegmentIndex().build(path);
+ * index.query(0, 0, 800, 600, i -&gt; draw(path, i));
+ * int hit = index.nearest(mouseX, mouseY, 5);
+ * </pre>
+ */
+public class SegmentIndex {
+    // Upper bound of the number of cells, whatever the number of segments
+    private static final int MAX_CELLS = 1 << 22;
+
+    private TurtlePath path;
+    private int columns;
+    private int rows;
+    private double originX;
+    private double originY;
+    private double cellSize;
+    private double inverseCellSize;
+
+    private int[] cellStarts = new int[2];
+    private int[] cellSegments = new int[0];
+
+    // Stamp of the last query visiting each segment, so segments spanning cells are seen once
+    private int[] visited = new int[0];
+    private int stamp;
+
+    /**
+     * Indexes the segments of a path, replacing the previous content of this index. The path
+     * must not change while the index is used.
+     * @param path Path to index
+     * @return this for method chaining
+     */
+    public SegmentIndex build(TurtlePath path) {
+        this.path = path;
+        int count = path.getLineCount();
+        float[] coordinates = path.coordinateArray();
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double extents = 0;
+        for (int offset = 0; offset < 4 * count; offset += 4) {
+            float x1 = coordinates[offset];
+            float y1 = coordinates[offset + 1];
+            float x2 = coordinates[offset + 2];
+            float y2 = coordinates[offset + 3];
+
+            minX = Math.min(minX, Math.min(x1, x2));
+            maxX = Math.max(maxX, Math.max(x1, x2));
+            minY = Math.min(minY, Math.min(y1, y2));
+            maxY = Math.max(maxY, Math.max(y1, y2));
+            extents += Math.max(Math.abs(x2 - x1), Math.abs(y2 - y1));
+        }
+
+        if (count == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+
+        // About one cell per segment, square cells covering the bounding box. Cells are at
+        // least as large as an average segment, which then only spans a few of them.
+        double width = maxX - minX;
+        double height = maxY - minY;
+        int cells = Math.min(Math.max(count, 1), MAX_CELLS);
+        cellSize = Math.max(Math.sqrt(width * height / cells), Math.max(width, height) / cells);
+        cellSize = Math.max(cellSize, extents / Math.max(count, 1));
+        if (!(cellSize > 0)) cellSize = 1; // all segments are points
+        inverseCellSize = 1 / cellSize;
+        originX = minX;
+        originY = minY;
+        columns = (int) Math.min(width / cellSize, MAX_CELLS) + 1;
+        rows = (int) Math.min(height / cellSize, MAX_CELLS / columns) + 1;
+
+        if (cellStarts.length < columns * rows + 1) {
+            cellStarts = new int[columns * rows + 1];
+        } else {
+            Arrays.fill(cellStarts, 0);
+        }
+        if (visited.length < count) {
+            visited = new int[count];
+            stamp = 0;
+        }
+
+        // Counts the segments per cell, then turns the counts into start offsets
+        for (int i = 0; i < count; i++) {
+            int offset = 4 * i;
+            int fromColumn = column(Math.min(coordinates[offset], coordinates[offset + 2]));
+            int toColumn = column(Math.max(coordinates[offset], coordinates[offset + 2]));
+            int fromRow = row(Math.min(coordinates[offset + 1], coordinates[offset + 3]));
+            int toRow = row(Math.max(coordinates[offset + 1], coordinates[offset + 3]));
+
+            for (int r = fromRow; r <= toRow; r++) {
+                for (int c = fromColumn; c <= toColumn; c++) {
+                    cellStarts[r * columns + c + 1]++;
+                }
+            }
+        }
+
+        int cellCount = columns * rows;
+        for (int cell = 0; cell < cellCount; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+        if (cellSegments.length < cellStarts[cellCount]) {
+            cellSegments = new int[cellStarts[cellCount]];
+        }
+
+        // Fills the cells, using the start offsets as cursors and shifting them back afterwards
+        for (int i = 0; i < count; i++) {
+            int offset = 4 * i;
+            int fromColumn = column(Math.min(coordinates[offset], coordinates[offset + 2]));
+            int toColumn = column(Math.max(coordinates[offset], coordinates[offset + 2]));
+            int fromRow = row(Math.min(coordinates[offset + 1], coordinates[offset + 3]));
+            int toRow = row(Math.max(coordinates[offset + 1], coordinates[offset + 3]));
+
+            for (int r = fromRow; r <= toRow; r++) {
+                for (int c = fromColumn; c <= toColumn; c++) {
+                    cellSegments[cellStarts[r * columns + c]++] = i;
+                }
+            }
+        }
+        System.arraycopy(cellStarts, 0, cellStarts, 1, cellCount);
+        cellStarts[0] = 0;
+
+        return this;
+    }
+
+    /**
+     * Gets the indexed path
+     * @return The path of the last {@link #build(TurtlePath)}, or null
+     */
+    public TurtlePath getPath() {
+        return path;
+    }
+
+    /**
+     * Sends the index of every segment whose bounding box intersects a rectangle to {@code
+     * visitor}, once each, in no particular order
+     * @param minX Left edge of the rectangle
+     * @param minY Top edge of the rectangle
+     * @param maxX Right edge of the rectangle
+     * @param maxY Bottom edge of the rectangle
+     * @param visitor Receives segment indices
+     */
+    public void query(double minX, double minY, double maxX, double maxY, IntConsumer visitor) {
+        checkBuilt();
+        if (path.isEmpty() || maxX < minX || maxY < minY) return;
+
+        float[] coordinates = path.coordinateArray();
+        int query = nextStamp();
+
+        for (int r = row(minY); r <= row(maxY); r++) {
+            for (int c = column(minX); c <= column(maxX); c++) {
+                int cell = r * columns + c;
+
+                for (int k = cellStarts[cell]; k < cellStarts[cell + 1]; k++) {
+                    int i = cellSegments[k];
+                    if (visited[i] == query) continue;
+                    visited[i] = query;
+
+                    int offset = 4 * i;
+                    float x1 = coordinates[offset];
+                    float y1 = coordinates[offset + 1];
+                    float x2 = coordinates[offset + 2];
+                    float y2 = coordinates[offset + 3];
+                    if (Math.max(x1, x2) >= minX
+                            && Math.min(x1, x2) <= maxX
+                            && Math.max(y1, y2) >= minY
+                            && Math.min(y1, y2) <= maxY) {
+                        visitor.accept(i);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the segment closest to a point, e.g. for hit-testing under the cursor
+     * @param x X coordinate of the point
+     * @param y Y coordinate of the point
+     * @param maxDistance Largest distance to search
+     * @return Index of the closest segment within {@code maxDistance}, or -1 if there is none
+     */
+    public int nearest(double x, double y, double maxDistance) {
+        checkBuilt();
+        if (path.isEmpty() || maxDistance < 0) return -1;
+
+        float[] coordinates = path.coordinateArray();
+        int query = nextStamp();
+        int centerColumn = column(x);
+        int centerRow = row(y);
+        int best = -1;
+        double bestDistance = maxDistance;
+
+        // Visits rings of cells around the cell of the point (the closest one if the point is
+        // outside the grid) until they are farther than the best match: cells of ring k are at
+        // least k - 1 cells away from the point.
+        int maxRing = Math.max(columns, rows);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if ((ring - 1) * cellSize > bestDistance) break;
+
+            for (int r = centerRow - ring; r <= centerRow + ring; r++) {
+                if (r < 0 || r >= rows) continue;
+
+                // Inner rows only hold the two cells at the edges of the ring
+                int step = r == centerRow - ring || r == centerRow + ring ? 1 : 2 * ring;
+                for (int c = centerColumn - ring; c <= centerColumn + ring; c += step) {
+                    if (c < 0 || c >= columns) continue;
+                    int cell = r * columns + c;
+
+                    for (int k = cellStarts[cell]; k < cellStarts[cell + 1]; k++) {
+                        int i = cellSegments[k];
+                        if (visited[i] == query) continue;
+                        visited[i] = query;
+
+                        double distance = distanceToSegment(x, y, coordinates, 4 * i);
+                        if (distance < bestDistance || (distance == bestDistance && best < 0)) {
+                            best = i;
+                            bestDistance = distance;
+                        }
+                    }
+                }
+            }
+        }
+
+        return best;
+    }
+
+    private static double distanceToSegment(double x, double y, float[] coordinates, int offset) {
+        double x1 = coordinates[offset];
+        double y1 = coordinates[offset + 1];
+        double dx = coordinates[offset + 2] - x1;
+        double dy = coordinates[offset + 3] - y1;
+        double lengthSquared = dx * dx + dy * dy;
+
+        double t = lengthSquared == 0 ? 0 : ((x - x1) * dx + (y - y1) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+
+        return Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy));
+    }
+
+    private int column(double x) {
+        // Casting truncates towards 0, which is clamped to the first column anyway
+        return Math.max(0, Math.min(columns - 1, (int) ((x - originX) * inverseCellSize)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) ((y - originY) * inverseCellSize)));
+    }
+
+    private int nextStamp() {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(visited, 0);
+            stamp = 1;
+        }
+
+        return stamp;
+    }
+
+    private void checkBuilt() {
+        if (path == null) {
+            throw new IllegalStateException("Index has not been built");
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package graphics;
+
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+
+/**
+ * Segments grouped by drawing style into one {@link Path2D.Float} per style, so a path is drawn
+ * with one {@code Graphics2D.draw} call per style instead of one per segment. A style is a depth,
+ * clamped to {@link #DEPTH_STYLES} levels, and a stroke width, rounded to {@link #WIDTH_STEP}.
+ *
+ * <p>Connected segments of a style are joined into one polyline. The paths are kept by
+ * {@link #clear()} and reused by the next render.
+ */
+class StrokeBuckets {
+    /** Number of depths with a style of their own, deeper segments share the last one */
+    static final int DEPTH_STYLES = 8;
+
+    /** Stroke widths are rounded to multiples of this, in pixels */
+    static final float WIDTH_STEP = 0.25f;
+
+    private Path2D.Float[] paths = new Path2D.Float[DEPTH_STYLES];
+    private int[] keys = new int[DEPTH_STYLES];
+    private float[] lastX = new float[DEPTH_STYLES];
+    private float[] lastY = new float[DEPTH_STYLES];
+    private int count;
+    private int lastBucket = -1; // bucket of the previous segment, usually the next one's too
+
+    /**
+     * Adds a segment to the bucket of its style
+     * @param depth Branch depth of the segment
+     * @param strokeWidth Stroke width, in pixels
+     * @param x1 Starting X coordinate
+     * @param y1 Starting Y coordinate
+     * @param x2 Ending X coordinate
+     * @param y2 Ending Y coordinate
+     */
+    void add(int depth, float strokeWidth, float x1, float y1, float x2, float y2) {
+        int bucket = bucketOf(styleKey(depth, strokeWidth));
+        Path2D.Float path = paths[bucket];
+
+        if (path.getCurrentPoint() == null || lastX[bucket] != x1 || lastY[bucket] != y1) {
+            path.moveTo(x1, y1);
+        }
+        path.lineTo(x2, y2);
+        lastX[bucket] = x2;
+        lastY[bucket] = y2;
+    }
+
+    /**
+     * Gets the number of styles in use
+     * @return Bucket count
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Gets the segments of a bucket
+     * @return The path, valid until the next {@link #clear()}
+     */
+    Path2D.Float getPath(int bucket) {
+        return paths[bucket];
+    }
+
+    /**
+     * Gets the depth style of a bucket
+     * @return Depth, at most {@code DEPTH_STYLES - 1}
+     */
+    int getDepth(int bucket) {
+        return keys[bucket] % DEPTH_STYLES;
+    }
+
+    /**
+     * Gets the stroke width of a bucket
+     * @return Rounded stroke width, in pixels
+     */
+    float getStrokeWidth(int bucket) {
+        return (keys[bucket] / DEPTH_STYLES) * WIDTH_STEP;
+    }
+
+    /**
+     * Orders the buckets by depth, then by decreasing stroke width, so finer branches are drawn
+     * over the ones holding them
+     * @return Bucket indices in drawing order
+     */
+    int[] drawingOrder() {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            int j = i;
+            for (; j > 0 && compare(order[j - 1], i) > 0; j--) {
+                order[j] = order[j - 1];
+            }
+            order[j] = i;
+        }
+
+        return order;
+    }
+
+    /**
+     * Empties every bucket, keeping the paths for reuse
+     */
+    void clear() {
+        for (int i = 0; i < count; i++) {
+            paths[i].reset();
+        }
+        count = 0;
+        lastBucket = -1;
+    }
+
+    private int compare(int bucket, int other) {
+        int depth = getDepth(bucket);
+        int otherDepth = getDepth(other);
+        if (depth != otherDepth) return Integer.compare(depth, otherDepth);
+
+        return Float.compare(getStrokeWidth(other), getStrokeWidth(bucket));
+    }
+
+    private static int styleKey(int depth, float strokeWidth) {
+        int width = Math.max(Math.round(strokeWidth / WIDTH_STEP), 1);
+        return width * DEPTH_STYLES + Math.min(Math.max(depth, 0), DEPTH_STYLES - 1);
+    }
+
+    private int bucketOf(int key) {
+        if (lastBucket >= 0 && keys[lastBucket] == key) return lastBucket;
+
+        for (int i = 0; i < count; i++) {
+            if (keys[i] == key) return lastBucket = i;
+        }
+
+        if (count == paths.length) {
+            paths = Arrays.copyOf(paths, count * 2);
+            keys = Arrays.copyOf(keys, count * 2);
+            lastX = Arrays.copyOf(lastX, count * 2);
+            lastY = Arrays.copyOf(lastY, count * 2);
+        }
+        if (paths[count] == null) {
+            paths[count] = new Path2D.Float(Path2D.WIND_NON_ZERO, 1024);
+        }
+        keys[count] = key;
+
+        return lastBucket = count++;
+    }
+}
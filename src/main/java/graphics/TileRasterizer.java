@@ -0,0 +1,367 @@
+package graphics;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Software rasteriser drawing the segments of a {@link TurtlePath} straight into the
+ * {@code int[]} pixels of an image, for offline rendering without the Java2D pipeline.
+ *
+ * <p>Lines are antialiased by area, as in Xiaolin Wu's algorithm extended to any width: along
+ * the major axis of a segment, each pixel gets the part of it covered by the span of the
+ * segment, which is one pixel wide in Wu's algorithm and the line width here. Segments get square
+ * caps, so connected segments leave no gap at their joints. Coverage is accumulated as the
+ * maximum over the segments, so joints are not drawn twice and the result does not depend on the
+ * drawing order, then the color is composited over each pixel once.
+ *
+ * <p>The image is split into {@link #TILE_SIZE} square tiles and every segment is binned to the
+ * tiles its bounding box touches, widened by the whole extent the rasteriser paints, so the
+ * drawing does not depend on where segments fall on the tile grid. Tiles are then rasterised
+ * independently, in parallel when a pool is set: a tile only writes its own pixels, so no locking
+ * is needed.
+ */
+public class TileRasterizer {
+    /** Side of a tile, in pixels */
+    public static final int TILE_SIZE = 64;
+
+    /** Line width used unless set, in pixels */
+    public static final float DEFAULT_LINE_WIDTH = 2;
+
+    private static final int COORDINATES_PER_SEGMENT = 4;
+
+    private final ThreadLocal<float[]> coverages =
+            ThreadLocal.withInitial(() -> new float[TILE_SIZE * TILE_SIZE]);
+    private ForkJoinPool pool;
+    private float lineWidth = DEFAULT_LINE_WIDTH;
+    private int color = 0xff000000;
+
+    // State of the draw in progress, read by the tile tasks
+    private float[] screen = new float[0]; // transformed segments
+    private int[] tileStarts = new int[1];
+    private int[] tileSegments = new int[0];
+    private int tilesX;
+    private int[] pixels;
+    private int pixelOffset;
+    private int scanlineStride;
+    private int imageWidth;
+    private int imageHeight;
+    private boolean opaque;
+
+    /**
+     * Draws the segments of a path into an image, blending the color over its pixels
+     * @param path Segments to draw
+     * @param scale Scale from path coordinates to pixels; the line width is not scaled
+     * @param offsetX X coordinate, in pixels, of the origin of the path
+     * @param offsetY Y coordinate, in pixels, of the origin of the path
+     * @param image Image of type {@link BufferedImage#TYPE_INT_ARGB} or
+     * {@link BufferedImage#TYPE_INT_RGB}
+     */
+    public void draw(
+            TurtlePath path, double scale, double offsetX, double offsetY, BufferedImage image) {
+        bindImage(image);
+        transform(path, scale, offsetX, offsetY);
+        bin(path.getLineCount());
+
+        int tileCount = tilesX * ((imageHeight + TILE_SIZE - 1) / TILE_SIZE);
+        if (pool != null && pool.getParallelism() > 1 && tileCount > 1) {
+            pool.submit(() -> IntStream.range(0, tileCount).parallel().forEach(this::drawTile))
+                    .join();
+        } else {
+            for (int tile = 0; tile < tileCount; tile++) {
+                drawTile(tile);
+            }
+        }
+
+        pixels = null; // the image is not kept
+    }
+
+    /**
+     * Rasterises tiles on the common {@link ForkJoinPool}
+     * @param parallel true to rasterise tiles in parallel
+     */
+    public void setParallel(boolean parallel) {
+        setParallel(parallel ? ForkJoinPool.commonPool() : null);
+    }
+
+    /**
+     * Rasterises tiles on the given pool. Tiles are rasterised sequentially when the pool has a
+     * parallelism of 1.
+     * @param pool Pool to run on, or null to rasterise sequentially
+     */
+    public void setParallel(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Checks if tiles are rasterised in parallel
+     * @return true if a pool is set
+     */
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Sets the width of the lines
+     * @param lineWidth Width in pixels, whatever the scale
+     */
+    public void setLineWidth(float lineWidth) {
+        if (!(lineWidth > 0)) {
+            throw new IllegalArgumentException("Line width must be positive");
+        }
+
+        this.lineWidth = lineWidth;
+    }
+
+    /**
+     * Sets the color of the lines
+     * @param argb Color with its alpha, as in {@link java.awt.Color#getRGB()}
+     */
+    public void setColor(int argb) {
+        this.color = argb;
+    }
+
+    private void bindImage(BufferedImage image) {
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_RGB) {
+            throw new IllegalArgumentException("Unsupported image type: " + type);
+        }
+
+        WritableRaster raster = image.getRaster();
+        SinglePixelPackedSampleModel model =
+                (SinglePixelPackedSampleModel) raster.getSampleModel();
+        DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+
+        pixels = buffer.getData();
+        scanlineStride = model.getScanlineStride();
+        pixelOffset =
+                buffer.getOffset()
+                        - raster.getSampleModelTranslateY() * scanlineStride
+                        - raster.getSampleModelTranslateX();
+        imageWidth = image.getWidth();
+        imageHeight = image.getHeight();
+        opaque = type == BufferedImage.TYPE_INT_RGB;
+        tilesX = (imageWidth + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    private void transform(TurtlePath path, double scale, double offsetX, double offsetY) {
+        int values = path.getLineCount() * COORDINATES_PER_SEGMENT;
+        if (screen.length < values) {
+            screen = new float[values];
+        }
+
+        float[] coordinates = path.coordinateArray();
+        for (int i = 0; i < values; i += 2) {
+            screen[i] = (float) (coordinates[i] * scale + offsetX);
+            screen[i + 1] = (float) (coordinates[i + 1] * scale + offsetY);
+        }
+    }
+
+    /**
+     * Lists the segments of every tile in {@code tileSegments}, the ones of tile {@code t} being
+     * at {@code tileStarts[t]} to {@code tileStarts[t + 1]}
+     */
+    private void bin(int segmentCount) {
+        int tilesY = (imageHeight + TILE_SIZE - 1) / TILE_SIZE;
+        int tileCount = tilesX * tilesY;
+        if (tileStarts.length < tileCount + 1) {
+            tileStarts = new int[tileCount + 1];
+        } else {
+            Arrays.fill(tileStarts, 0, tileCount + 1, 0);
+        }
+
+        // First pass counts the segments of each tile, the second one places them
+        for (int pass = 0; pass < 2; pass++) {
+            if (pass == 1) {
+                for (int tile = 0; tile < tileCount; tile++) {
+                    tileStarts[tile + 1] += tileStarts[tile];
+                }
+                if (tileSegments.length < tileStarts[tileCount]) {
+                    tileSegments = new int[tileStarts[tileCount]];
+                }
+            }
+
+            float radius = lineWidth / 2;
+            for (int segment = 0; segment < segmentCount; segment++) {
+                int offset = segment * COORDINATES_PER_SEGMENT;
+                float x1 = screen[offset];
+                float y1 = screen[offset + 1];
+                float x2 = screen[offset + 2];
+                float y2 = screen[offset + 3];
+
+                // Extent painted by coverSegment: the cap along the segment, then the span
+                // across the major axis, plus the pixel holding the edge
+                float dx = Math.abs(x2 - x1);
+                float dy = Math.abs(y2 - y1);
+                float slope = Math.max(dx, dy) == 0 ? 0 : Math.min(dx, dy) / Math.max(dx, dy);
+                float margin = radius + radius * (float) Math.sqrt(1 + slope * slope) + 1;
+
+                if (Math.max(x1, x2) + margin < 0
+                        || Math.max(y1, y2) + margin < 0
+                        || Math.min(x1, x2) - margin >= imageWidth
+                        || Math.min(y1, y2) - margin >= imageHeight) {
+                    continue; // outside the image
+                }
+
+                int minX = tileOf(Math.min(x1, x2) - margin, imageWidth);
+                int maxX = tileOf(Math.max(x1, x2) + margin, imageWidth);
+                int minY = tileOf(Math.min(y1, y2) - margin, imageHeight);
+                int maxY = tileOf(Math.max(y1, y2) + margin, imageHeight);
+
+                for (int ty = minY; ty <= maxY; ty++) {
+                    for (int tx = minX; tx <= maxX; tx++) {
+                        int tile = ty * tilesX + tx;
+                        if (pass == 0) {
+                            tileStarts[tile + 1]++;
+                        } else {
+                            tileSegments[tileStarts[tile]++] = segment;
+                        }
+                    }
+                }
+            }
+        }
+
+        // Placing advanced each start to the next tile's
+        System.arraycopy(tileStarts, 0, tileStarts, 1, tileCount);
+        tileStarts[0] = 0;
+    }
+
+    /**
+     * Finds the tile holding a coordinate, clamped to the image
+     * @return Tile index along the axis
+     */
+    private static int tileOf(float coordinate, int size) {
+        int pixel = Math.min(Math.max((int) Math.floor(coordinate), 0), size - 1);
+        return pixel / TILE_SIZE;
+    }
+
+    private void drawTile(int tile) {
+        int start = tileStarts[tile];
+        int end = tileStarts[tile + 1];
+        if (start == end) return;
+
+        int tileX = (tile % tilesX) * TILE_SIZE;
+        int tileY = (tile / tilesX) * TILE_SIZE;
+        int width = Math.min(TILE_SIZE, imageWidth - tileX);
+        int height = Math.min(TILE_SIZE, imageHeight - tileY);
+        float[] coverage = coverages.get();
+
+        for (int i = start; i < end; i++) {
+            int offset = tileSegments[i] * COORDINATES_PER_SEGMENT;
+            coverSegment(
+                    screen[offset],
+                    screen[offset + 1],
+                    screen[offset + 2],
+                    screen[offset + 3],
+                    coverage,
+                    tileX,
+                    tileY,
+                    width,
+                    height);
+        }
+
+        for (int y = 0; y < height; y++) {
+            int row = pixelOffset + (tileY + y) * scanlineStride + tileX;
+            for (int x = 0; x < width; x++) {
+                float covered = coverage[y * TILE_SIZE + x];
+                if (covered > 0) {
+                    pixels[row + x] = blend(pixels[row + x], Math.min(covered, 1));
+                    coverage[y * TILE_SIZE + x] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Accumulates the coverage of a segment over the pixels of a tile
+     */
+    private void coverSegment(
+            float x1,
+            float y1,
+            float x2,
+            float y2,
+            float[] coverage,
+            int tileX,
+            int tileY,
+            int width,
+            int height) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        if (length == 0) return;
+
+        // Square caps: extends the segment by half the line width at both ends
+        double radius = lineWidth / 2.0;
+        double capX = dx / length * radius;
+        double capY = dy / length * radius;
+
+        // Steps along the major axis, u, and covers a span along the minor one, v
+        boolean steep = Math.abs(dy) > Math.abs(dx);
+        double u0 = steep ? y1 - capY : x1 - capX;
+        double v0 = steep ? x1 - capX : y1 - capY;
+        double u1 = steep ? y2 + capY : x2 + capX;
+        double v1 = steep ? x2 + capX : y2 + capY;
+        if (u0 > u1) {
+            double u = u0;
+            u0 = u1;
+            u1 = u;
+            double v = v0;
+            v0 = v1;
+            v1 = v;
+        }
+
+        double slope = (v1 - v0) / (u1 - u0);
+        double halfSpan = radius * Math.sqrt(1 + slope * slope);
+        int uMin = steep ? tileY : tileX;
+        int uMax = uMin + (steep ? height : width);
+        int vMin = steep ? tileX : tileY;
+        int vMax = vMin + (steep ? width : height);
+
+        int firstU = Math.max((int) Math.floor(u0), uMin);
+        int lastU = Math.min((int) Math.ceil(u1), uMax);
+        for (int u = firstU; u < lastU; u++) {
+            double along = Math.min(u + 1, u1) - Math.max(u, u0);
+            double center = v0 + slope * (u + 0.5 - u0);
+            double low = center - halfSpan;
+            double high = center + halfSpan;
+
+            int firstV = Math.max((int) Math.floor(low), vMin);
+            int lastV = Math.min((int) Math.ceil(high), vMax);
+            for (int v = firstV; v < lastV; v++) {
+                float covered = (float) ((Math.min(v + 1, high) - Math.max(v, low)) * along);
+                int index =
+                        steep
+                                ? (u - tileY) * TILE_SIZE + (v - tileX)
+                                : (v - tileY) * TILE_SIZE + (u - tileX);
+                if (covered > coverage[index]) {
+                    coverage[index] = covered;
+                }
+            }
+        }
+    }
+
+    /**
+     * Composites the color, with its alpha scaled by the coverage, over a pixel
+     */
+    private int blend(int pixel, float covered) {
+        float alpha = (color >>> 24) / 255f * covered;
+        float pixelAlpha = opaque ? 1 : (pixel >>> 24) / 255f;
+        float outAlpha = alpha + pixelAlpha * (1 - alpha);
+        if (outAlpha <= 0) return pixel;
+
+        float pixelWeight = pixelAlpha * (1 - alpha);
+        int result = opaque ? 0xff000000 : Math.round(outAlpha * 255) << 24;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            int source = (color >> shift) & 0xff;
+            int target = (pixel >> shift) & 0xff;
+            int channel = Math.round((source * alpha + target * pixelWeight) / outAlpha);
+            result |= channel << shift;
+        }
+
+        return result;
+    }
+}
@@ -1,21 +1,74 @@
 package graphics;
 
+import core.BranchIndex;
+import core.DerivationContext;
 import core.LSystemEngine;
+import core.ModuleString;
 import java.awt.geom.Point2D;
-import java.util.Stack;
-import model.TurtleState;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * Interprets L-System strings using turtle graphics commands.
  * Converts symbolic representations into drawable geometric paths.
+ *
+ * <p>Input is interpreted in a single pass: strings are scanned character by character, parsing
+ * the first parameter of each module in place, and the states saved by '[' are kept in a
+ * primitive stack reused between calls. Interpreting into a reused {@link TurtlePath} therefore
+ * allocates nothing per module once the buffers have grown. An interpreter holds this scratch
+ * state, so it must not be shared between threads.
+ *
+ * <p>The heading is a unit vector rather than an angle. Turns rotate it with the cosine and sine
+ * of their angle, computed once per distinct angle (see {@link RotationTable}), so drawing does
+ * not call trigonometric functions. Rounding drift of the vector length is corrected whenever it
+ * exceeds {@value #RENORMALIZE_TOLERANCE}.
+ *
+ * <p>Segments are tagged with their depth (number of open branches), their branch id (index of
+ * the '[' that opened the innermost branch, in modules or characters of the input) and the line
+ * width set by {@code !(w)}.
+ *
+ * <p>Large module strings can be interpreted in parallel, see {@link #setParallel(ForkJoinPool)}.
+ * The turtle can also be driven straight from a derivation, without building the final
+ * generation, see {@link #interpret(LSystemEngine, int, DerivationContext, Point2D, PathSink)}.
  */
 public class TurtleGraphics {
 
     private static final double DEFAULT_ANGLE_INCREMENT = Math.toRadians(25); // 25 degrees
     private static final double DEFAULT_STEP_SIZE = 8.0;
+    private static final double START_ANGLE = Math.toRadians(90); // Start pointing up
+
+    // Largest tolerated difference between 1 and the squared length of the heading
+    private static final double RENORMALIZE_TOLERANCE = 1e-12;
+
+    // Doubles saved per state by '[': x, y, heading, branch id and width
+    private static final int STATE_SIZE = 6;
+
+    // Modules interpreted by a single parallel task. Smaller inputs are interpreted sequentially.
+    private static final int PARALLEL_PIECE_SIZE = 1 << 13;
 
-    private final double angleIncrement;
     private final double stepSize;
+    private final double cosIncrement;
+    private final double sinIncrement;
+    private final RotationTable rotations = new RotationTable();
+
+    // Turtle state and saved states of the current interpretation
+    private double x;
+    private double y;
+    private double headingX;
+    private double headingY;
+    private int branchId;
+    private float width;
+    private double[] stack = new double[STATE_SIZE * 64];
+    private int stackSize;
+    private int baseDepth; // open branches when a parallel piece starts
+    private int streamed; // modules received from a streaming derivation
+
+    private ForkJoinPool pool;
+    private TurtlePath[] pieceBuffers = new TurtlePath[0];
 
     /**
      * Creates interpreter with default parameters
@@ -30,8 +83,18 @@ public class TurtleGraphics {
      * @param stepSize Step size for forward movement
      */
     public TurtleGraphics(double angleIncrement, double stepSize) {
-        this.angleIncrement = angleIncrement;
         this.stepSize = stepSize;
+        this.cosIncrement = Math.cos(angleIncrement);
+        this.sinIncrement = Math.sin(angleIncrement);
+    }
+
+    /**
+     * Creates an interpreter with the parameters of another one, for a parallel task
+     */
+    private TurtleGraphics(TurtleGraphics other) {
+        this.stepSize = other.stepSize;
+        this.cosIncrement = other.cosIncrement;
+        this.sinIncrement = other.sinIncrement;
     }
 
     /**
@@ -41,24 +104,58 @@ public class TurtleGraphics {
      * @return TurtlePath containing the interpreted path
      */
     public TurtlePath interpret(String lSystemString, Point2D startPosition) {
-        TurtlePath path = new TurtlePath();
-        TurtleState turtle =
-                new TurtleState(
-                        startPosition.getX(),
-                        startPosition.getY(),
-                        Math.toRadians(90)); // Start pointing up
-        Stack<TurtleState> stateStack = new Stack<>();
-
-        // for (char command : lSystemString.toCharArray()) {
-        //     processCommand(command, turtle, stateStack, path);
-        // }
-        for (String symbol : LSystemEngine.splitSymbols(lSystemString)) {
-            // Modules always have more 3 characters
-            if (symbol.length() == 1) {
-                processCommand(symbol.charAt(0), turtle, stateStack, path);
+        return interpret(lSystemString, startPosition, new TurtlePath());
+    }
+
+    /**
+     * Interprets L-System string as turtle graphics commands, without parsing it into modules
+     * @param lSystemString String containing turtle commands
+     * @param startPosition Starting position for turtle
+     * @param path Path to fill, cleared first so it can be reused between calls
+     * @return {@code path}
+     * @throws IllegalArgumentException if a module is not terminated
+     */
+    public TurtlePath interpret(
+            CharSequence lSystemString, Point2D startPosition, TurtlePath path) {
+        path.clear();
+        start(startPosition);
+
+        int length = lSystemString.length();
+        int i = 0;
+        while (i < length) {
+            char symbol = lSystemString.charAt(i);
+
+            if (i + 1 < length && lSystemString.charAt(i + 1) == '(') {
+                int end = i + 2;
+                while (end < length && lSystemString.charAt(end) != ')') end++;
+                if (end == length) {
+                    throw new IllegalArgumentException(
+                            "Malformed input: no module termination found! Module started at "
+                                    + i
+                                    + "\n\tInput string: "
+                                    + lSystemString);
+                }
+
+                // Only the first parameter is used, the others are skipped without parsing
+                int parameterStart = i + 2;
+                boolean processed = false;
+                for (int j = parameterStart; j <= end && !processed; j++) {
+                    if (j < end && lSystemString.charAt(j) != ',') continue;
+
+                    if (!isBlank(lSystemString, parameterStart, j)) {
+                        double parameter =
+                                ModuleString.parseParameter(lSystemString, parameterStart, j);
+                        process(symbol, i, parameter, path);
+                        processed = true;
+                    }
+                    parameterStart = j + 1;
+                }
+
+                if (!processed) process(symbol, i, path);
+                i = end + 1;
             } else {
-                String[] params = LSystemEngine.splitParameters(symbol);
-                processCommand(symbol.charAt(0), params, turtle, stateStack, path);
+                process(symbol, i, path);
+                i++;
             }
         }
 
@@ -66,110 +163,435 @@ public class TurtleGraphics {
     }
 
     /**
-     * Processes a single turtle graphics command
+     * Interprets L-System modules as turtle graphics commands
+     * @param modules Modules containing turtle commands
+     * @param startPosition Starting position for turtle
+     * @return TurtlePath containing the interpreted path
      */
-    private void processCommand(
-            char command, TurtleState turtle, Stack<TurtleState> stateStack, TurtlePath path) {
-        switch (command) {
-            case 'F': // Move forward and draw
-                moveForward(turtle, path, true);
-                break;
+    public TurtlePath interpret(ModuleString modules, Point2D startPosition) {
+        return interpret(modules, startPosition, new TurtlePath());
+    }
 
-            case 'f': // Move forward without drawing
-                moveForward(turtle, path, false);
-                break;
+    /**
+     * Interprets L-System modules as turtle graphics commands
+     * @param modules Modules containing turtle commands
+     * @param startPosition Starting position for turtle
+     * @param path Path to fill, cleared first so it can be reused between calls
+     * @return {@code path}
+     */
+    public TurtlePath interpret(ModuleString modules, Point2D startPosition, TurtlePath path) {
+        path.clear();
+        start(startPosition);
 
-            case '+': // Turn left
-                turtle.turn(angleIncrement);
-                break;
+        // The pre-pass and the final copy only pay off when pieces really run concurrently
+        if (pool != null
+                && pool.getParallelism() > 1
+                && modules.size() > PARALLEL_PIECE_SIZE
+                && isBalanced(modules)) {
+            interpretInParallel(modules, path);
+        } else {
+            interpretRange(modules, 0, modules.size(), path);
+        }
 
-            case '-': // Turn right
-                turtle.turn(-angleIncrement);
-                break;
+        return path;
+    }
 
-            case '[': // Push state to stack
-                stateStack.push(turtle.copy());
-                break;
+    /**
+     * Interprets the final generation of a derivation as it is produced, without building it:
+     * modules streamed by {@link LSystemEngine#stream(int, DerivationContext, core.ModuleSink)}
+     * are sent straight to the turtle, so memory only grows with the number of iterations and
+     * with what {@code sink} keeps. Segments are identical to those of interpreting {@link
+     * LSystemEngine#generateModules(int, DerivationContext)}.
+     *
+     * <p>Context-sensitive rules cannot be streamed, so their final generation is built first.
+     * @param engine Engine deriving the modules
+     * @param iterations Number of iterations to apply
+     * @param context State of the derivation
+     * @param startPosition Starting position for turtle
+     * @param sink Receives the segments, in the order they are drawn
+     * @return {@code sink}
+     */
+    public <S extends PathSink> S interpret(
+            LSystemEngine engine,
+            int iterations,
+            DerivationContext context,
+            Point2D startPosition,
+            S sink) {
+        if (!engine.getRule().getContextProductions().isEmpty()) {
+            ModuleString modules = engine.generateModules(iterations, context);
 
-            case ']': // Pop state from stack
-                if (!stateStack.isEmpty()) {
-                    turtle.copyFrom(stateStack.pop());
+            start(startPosition);
+            interpretRange(modules, 0, modules.size(), sink);
+            return sink;
+        }
+
+        start(startPosition);
+        streamed = 0;
+        engine.stream(
+                iterations,
+                context,
+                (symbol, parameters, offset, count) -> {
+                    if (count == 0) {
+                        process(symbol, streamed, sink);
+                    } else {
+                        process(symbol, streamed, parameters[offset], sink);
+                    }
+                    streamed++;
+                });
+
+        return sink;
+    }
+
+    /**
+     * Interprets the final generation of a derivation with the seed of the engine, see {@link
+     * #interpret(LSystemEngine, int, DerivationContext, Point2D, PathSink)}
+     * @param engine Engine deriving the modules
+     * @param iterations Number of iterations to apply
+     * @param startPosition Starting position for turtle
+     * @param sink Receives the segments, in the order they are drawn
+     * @return {@code sink}
+     */
+    public <S extends PathSink> S interpret(
+            LSystemEngine engine, int iterations, Point2D startPosition, S sink) {
+        return interpret(
+                engine, iterations, new DerivationContext(engine.getSeed()), startPosition, sink);
+    }
+
+    private void interpretRange(ModuleString modules, int from, int to, PathSink path) {
+        double[] parameters = modules.parameterArray();
+
+        for (int i = from; i < to; i++) {
+            step(modules, i, parameters, path);
+        }
+    }
+
+    private void step(ModuleString modules, int index, double[] parameters, PathSink path) {
+        char symbol = modules.symbolAt(index);
+
+        if (modules.parameterCount(index) == 0) {
+            process(symbol, index, path);
+        } else {
+            process(symbol, index, parameters[modules.parameterOffset(index)], path);
+        }
+    }
+
+    /**
+     * Checks that every ']' closes an earlier '[' and that all branches are closed
+     */
+    static boolean isBalanced(ModuleString modules) {
+        int depth = 0;
+
+        for (int i = 0; i < modules.size() && depth >= 0; i++) {
+            char symbol = modules.symbolAt(i);
+            if (symbol == '[') depth++;
+            else if (symbol == ']') depth--;
+        }
+
+        return depth == 0;
+    }
+
+    /**
+     * Splits the modules into pieces whose starting state is found by a cheap pre-pass,
+     * interprets the pieces concurrently and joins their segments in order. The pre-pass walks
+     * the modules outside large branches only, skipping small branches with their matching
+     * bracket: a balanced branch leaves the turtle as it found it. The result is identical to the
+     * sequential interpretation.
+     */
+    private void interpretInParallel(ModuleString modules, TurtlePath path) {
+        BranchIndex branches = new BranchIndex("").build(modules);
+        List<Piece> pieces = new ArrayList<>();
+        split(modules, branches, 0, modules.size(), pieces);
+
+        TurtlePath[] buffers = pieceBuffers(pieces.size());
+        IntConsumer task = p -> interpretPiece(modules, pieces.get(p), buffers[p]);
+        pool.submit(() -> IntStream.range(0, pieces.size()).parallel().forEach(task)).join();
+
+        int segments = 0;
+        for (int p = 0; p < pieces.size(); p++) {
+            segments += buffers[p].getLineCount();
+        }
+
+        path.ensureCapacity(segments);
+        for (int p = 0; p < pieces.size(); p++) {
+            path.append(buffers[p]);
+        }
+    }
+
+    /**
+     * Adds the pieces of the balanced range [from, to), starting in the current state, and
+     * leaves the turtle in the state after the range. Branches larger than a piece are split
+     * recursively.
+     */
+    private void split(
+            ModuleString modules, BranchIndex branches, int from, int to, List<Piece> pieces) {
+        double[] parameters = modules.parameterArray();
+        Piece piece = new Piece(from, saveState());
+
+        int i = from;
+        while (i < to) {
+            if (modules.symbolAt(i) == '[') {
+                int close = branches.matching(i);
+
+                if (close - i > PARALLEL_PIECE_SIZE) {
+                    piece.end = i;
+                    pieces.add(piece);
+
+                    step(modules, i, parameters, null); // enter the branch
+                    split(modules, branches, i + 1, close, pieces);
+                    step(modules, close, parameters, null); // leave it
+
+                    piece = new Piece(close + 1, saveState());
                 }
-                break;
+                i = close + 1;
+            } else {
+                step(modules, i, parameters, null);
+                i++;
+            }
+
+            if (i - piece.start >= PARALLEL_PIECE_SIZE) {
+                piece.end = i;
+                pieces.add(piece);
+                piece = new Piece(i, saveState());
+            }
         }
+
+        piece.end = to;
+        pieces.add(piece);
+    }
+
+    private void interpretPiece(ModuleString modules, Piece piece, TurtlePath buffer) {
+        buffer.clear();
+        if (piece.start == piece.end) return;
+
+        TurtleGraphics worker = new TurtleGraphics(this);
+        worker.restoreState(piece.state);
+        worker.interpretRange(modules, piece.start, piece.end, buffer);
     }
 
     /**
-     * Processes a single parametric turtle graphics command
+     * Gets the per-piece output buffers, reusing the ones of previous interpretations
+     */
+    private TurtlePath[] pieceBuffers(int count) {
+        if (pieceBuffers.length < count) {
+            TurtlePath[] grown = Arrays.copyOf(pieceBuffers, count);
+
+            for (int p = pieceBuffers.length; p < count; p++) {
+                grown[p] = new TurtlePath();
+            }
+            pieceBuffers = grown;
+        }
+
+        return pieceBuffers;
+    }
+
+    /**
+     * Gets the current state: x, y, heading X, heading Y, branch id, width and depth, e.g. the
+     * final state of an interpretation
      */
-    private void processCommand(
-            char command,
-            String[] params,
-            TurtleState turtle,
-            Stack<TurtleState> stateStack,
-            TurtlePath path) {
+    double[] saveState() {
+        return new double[] {
+            x, y, headingX, headingY, branchId, width, baseDepth + stackSize / STATE_SIZE
+        };
+    }
+
+    private void restoreState(double[] state) {
+        x = state[0];
+        y = state[1];
+        headingX = state[2];
+        headingY = state[3];
+        branchId = (int) state[4];
+        width = (float) state[5];
+        baseDepth = (int) state[6];
+        stackSize = 0;
+    }
 
-        // If there is no parameter, consider it a normal L-System.
-        if (params.length < 1) {
-            processCommand(command, turtle, stateStack, path);
-            return;
+    /**
+     * Range of modules interpreted by one parallel task, with the turtle state it starts in
+     */
+    private static final class Piece {
+        final int start;
+        final double[] state;
+        int end;
+
+        Piece(int start, double[] state) {
+            this.start = start;
+            this.state = state;
         }
+    }
 
+    /**
+     * Interprets large module strings in parallel on the common {@link ForkJoinPool}
+     * @param parallel true to interpret large module strings in parallel
+     */
+    public void setParallel(boolean parallel) {
+        setParallel(parallel ? ForkJoinPool.commonPool() : null);
+    }
+
+    /**
+     * Interprets large module strings in parallel on the given pool. Strings are always
+     * interpreted sequentially, as are module strings with unbalanced brackets and any input when
+     * the pool has a parallelism of 1.
+     * @param pool Pool to run on, or null to interpret sequentially
+     */
+    public void setParallel(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Checks if large module strings are interpreted in parallel
+     * @return true if a pool is set
+     */
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    private static boolean isBlank(CharSequence input, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (input.charAt(i) > ' ') return false;
+        }
+
+        return true;
+    }
+
+    private void start(Point2D startPosition) {
+        baseDepth = 0;
+        x = startPosition.getX();
+        y = startPosition.getY();
+        headingX = Math.cos(START_ANGLE);
+        headingY = Math.sin(START_ANGLE);
+        branchId = TurtlePath.TRUNK;
+        width = TurtlePath.DEFAULT_WIDTH;
+        stackSize = 0;
+    }
+
+    /**
+     * Processes a single turtle graphics command
+     * @param index Index of the command in the input
+     */
+    private void process(char command, int index, PathSink path) {
+        switch (command) {
+            case 'F': // Move forward and draw
+                moveForward(stepSize, path, true);
+                break;
+
+            case 'f': // Move forward without drawing
+                moveForward(stepSize, path, false);
+                break;
+
+            default:
+                processTopology(command, index);
+        }
+    }
+
+    /**
+     * Processes a single parametric turtle graphics command
+     * @param index Index of the command in the input
+     */
+    private void process(char command, int index, double parameter, PathSink path) {
         switch (command) {
             case 'F': // Move forward and draw
-                moveForward(Double.parseDouble(params[0]), turtle, path, true);
+                moveForward(parameter, path, true);
                 break;
 
             case 'f': // Move forward without drawing
-                moveForward(turtle, path, false);
+                moveForward(stepSize, path, false);
                 break;
 
             case 'A': // Turn arbitrarily
-                double rad = Math.toRadians(Double.parseDouble(params[0]));
-                turtle.turn(rad);
+                int slot = rotations.lookup(parameter);
+                turn(rotations.cos(slot), rotations.sin(slot));
                 break;
 
+            case '!': // Set line width
+                width = (float) parameter;
+                break;
+
+            default:
+                processTopology(command, index);
+        }
+    }
+
+    /**
+     * Processes the commands that ignore parameters: turns and branches
+     */
+    private void processTopology(char command, int index) {
+        switch (command) {
             case '+': // Turn left
-                turtle.turn(angleIncrement);
+                turn(cosIncrement, sinIncrement);
                 break;
 
             case '-': // Turn right
-                turtle.turn(-angleIncrement);
+                turn(cosIncrement, -sinIncrement);
                 break;
 
             case '[': // Push state to stack
-                stateStack.push(turtle.copy());
+                push();
+                branchId = index;
                 break;
 
             case ']': // Pop state from stack
-                if (!stateStack.isEmpty()) {
-                    turtle.copyFrom(stateStack.pop());
-                }
+                pop();
                 break;
         }
     }
 
     /**
-     * Moves turtle forward, optionally drawing a line
+     * Rotates the heading counterclockwise by the angle of the given cosine and sine
      */
-    private void moveForward(TurtleState turtle, TurtlePath path, boolean draw) {
-        moveForward(stepSize, turtle, path, draw);
+    private void turn(double cos, double sin) {
+        double rotatedX = headingX * cos - headingY * sin;
+        double rotatedY = headingX * sin + headingY * cos;
+
+        double squaredLength = rotatedX * rotatedX + rotatedY * rotatedY;
+        if (Math.abs(squaredLength - 1) > RENORMALIZE_TOLERANCE) {
+            double length = Math.sqrt(squaredLength);
+            rotatedX /= length;
+            rotatedY /= length;
+        }
+
+        headingX = rotatedX;
+        headingY = rotatedY;
+    }
+
+    private void push() {
+        if (stackSize + STATE_SIZE > stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+
+        stack[stackSize] = x;
+        stack[stackSize + 1] = y;
+        stack[stackSize + 2] = headingX;
+        stack[stackSize + 3] = headingY;
+        stack[stackSize + 4] = branchId;
+        stack[stackSize + 5] = width;
+        stackSize += STATE_SIZE;
+    }
+
+    private void pop() {
+        if (stackSize == 0) return; // unbalanced ']', keep the current state
+
+        stackSize -= STATE_SIZE;
+        x = stack[stackSize];
+        y = stack[stackSize + 1];
+        headingX = stack[stackSize + 2];
+        headingY = stack[stackSize + 3];
+        branchId = (int) stack[stackSize + 4];
+        width = (float) stack[stackSize + 5];
     }
 
     /**
      * Moves turtle forward `step` units, optionally drawing a line
      */
-    private void moveForward(double step, TurtleState turtle, TurtlePath path, boolean draw) {
-        double currentX = turtle.getX();
-        double currentY = turtle.getY();
-
-        double newX = currentX + step * Math.cos(turtle.getAngle());
-        double newY = currentY - step * Math.sin(turtle.getAngle());
+    private void moveForward(double step, PathSink path, boolean draw) {
+        double newX = x + step * headingX;
+        double newY = y - step * headingY;
 
-        if (draw) {
-            path.addLine(currentX, currentY, newX, newY);
+        if (draw && path != null) {
+            int depth = baseDepth + stackSize / STATE_SIZE;
+            path.addSegment(x, y, newX, newY, depth, branchId, width);
         }
 
-        turtle.moveTo(newX, newY);
+        x = newX;
+        y = newY;
     }
 }
@@ -0,0 +1,365 @@
+package graphics;
+
+import core.DerivationContext;
+import core.LSystemEngine;
+import core.ModuleString;
+import java.util.Arrays;
+
+/**
+ * Interprets L-System modules with a turtle moving in three dimensions.
+ *
+ * <p>The orientation of the turtle is a frame of three unit vectors: heading (H), left (L) and
+ * up (U), starting with H along +Y, L along -X and U along +Z, so modules without 3D commands
+ * draw in the X-Y plane exactly like {@link TurtleGraphics}. Commands:
+ *
+ * <ul>
+ *   <li>{@code F}, {@code F(l)}: move forward and draw; {@code f}, {@code f(l)}: move without
+ *       drawing
+ *   <li>{@code +}, {@code -}: turn left, right (around U); {@code A(a)} turns left by a degrees
+ *   <li>{@code &}, {@code ^}: pitch down, up (around L)
+ *   <li>{@code \}, {@code /}: roll left, right (around H)
+ *   <li>{@code |}: turn around
+ *   <li>{@code [}, {@code ]}: push, pop the state; {@code !(w)}: set the line width
+ * </ul>
+ *
+ * Turns use the angle increment, or their parameter in degrees, e.g. {@code &(30)}.
+ *
+ * <p>The frame is held in a primitive array and rotated in place with the cosine and sine of
+ * each angle, computed once per distinct angle (see {@link RotationTable}). Saved states are kept
+ * in a primitive stack and segments are written into a {@link TurtlePath3D}, so interpretation
+ * allocates nothing per module once the buffers have grown. An interpreter holds this scratch
+ * state, so it must not be shared between threads.
+ */
+public class TurtleGraphics3D {
+
+    private static final double DEFAULT_ANGLE_INCREMENT = Math.toRadians(25); // 25 degrees
+    private static final double DEFAULT_STEP_SIZE = 8.0;
+
+    // Largest tolerated difference between 1 and the squared length of the heading
+    private static final double RENORMALIZE_TOLERANCE = 1e-12;
+
+    // Offsets of the frame vectors in the frame array
+    private static final int H = 0;
+    private static final int L = 3;
+    private static final int U = 6;
+    private static final int FRAME_SIZE = 9;
+
+    // Doubles saved per state by '[': position, frame, branch id and width
+    private static final int STATE_SIZE = 3 + FRAME_SIZE + 2;
+
+    private final double stepSize;
+    private final double cosIncrement;
+    private final double sinIncrement;
+    private final RotationTable rotations = new RotationTable();
+
+    private double x;
+    private double y;
+    private double z;
+    private final double[] frame = new double[FRAME_SIZE];
+    private int branchId;
+    private float width;
+    private double[] stack = new double[STATE_SIZE * 64];
+    private int stackSize;
+    private int streamed; // modules received from a streaming derivation
+
+    /**
+     * Creates interpreter with default parameters
+     */
+    public TurtleGraphics3D() {
+        this(DEFAULT_ANGLE_INCREMENT, DEFAULT_STEP_SIZE);
+    }
+
+    /**
+     * Creates interpreter with custom parameters
+     * @param angleIncrement Angle increment for turns (in radians)
+     * @param stepSize Step size for forward movement
+     */
+    public TurtleGraphics3D(double angleIncrement, double stepSize) {
+        this.stepSize = stepSize;
+        this.cosIncrement = Math.cos(angleIncrement);
+        this.sinIncrement = Math.sin(angleIncrement);
+    }
+
+    /**
+     * Interprets L-System modules as 3D turtle commands, starting at the origin
+     * @param modules Modules containing turtle commands
+     * @return A new path holding the drawn segments
+     */
+    public TurtlePath3D interpret(ModuleString modules) {
+        return interpret(modules, new TurtlePath3D());
+    }
+
+    /**
+     * Interprets L-System modules as 3D turtle commands, starting at the origin
+     * @param modules Modules containing turtle commands
+     * @param path Path to fill, cleared first so it can be reused between calls
+     * @return {@code path}
+     */
+    public TurtlePath3D interpret(ModuleString modules, TurtlePath3D path) {
+        path.clear();
+        start();
+
+        double[] parameters = modules.parameterArray();
+        for (int i = 0; i < modules.size(); i++) {
+            if (modules.parameterCount(i) == 0) {
+                process(modules.symbolAt(i), i, path);
+            } else {
+                process(modules.symbolAt(i), i, parameters[modules.parameterOffset(i)], path);
+            }
+        }
+
+        return path;
+    }
+
+    /**
+     * Interprets the final generation of a derivation as it is streamed, without building it,
+     * see {@link TurtleGraphics#interpret(LSystemEngine, int, DerivationContext,
+     * java.awt.geom.Point2D, PathSink)}
+     * @param engine Engine deriving the modules, with a context-free rule
+     * @param iterations Number of iterations to apply
+     * @param context State of the derivation
+     * @param path Path to fill, cleared first so it can be reused between calls
+     * @return {@code path}
+     */
+    public TurtlePath3D interpret(
+            LSystemEngine engine, int iterations, DerivationContext context, TurtlePath3D path) {
+        path.clear();
+        start();
+
+        streamed = 0;
+        engine.stream(
+                iterations,
+                context,
+                (symbol, parameters, offset, count) -> {
+                    if (count == 0) {
+                        process(symbol, streamed, path);
+                    } else {
+                        process(symbol, streamed, parameters[offset], path);
+                    }
+                    streamed++;
+                });
+
+        return path;
+    }
+
+    private void start() {
+        x = 0;
+        y = 0;
+        z = 0;
+        Arrays.fill(frame, 0);
+        frame[H + 1] = 1; // heading up
+        frame[L] = -1; // left
+        frame[U + 2] = 1; // up, towards the viewer
+        branchId = TurtlePath.TRUNK;
+        width = TurtlePath.DEFAULT_WIDTH;
+        stackSize = 0;
+    }
+
+    /**
+     * Processes a single turtle graphics command
+     * @param index Index of the command in the input
+     */
+    private void process(char command, int index, TurtlePath3D path) {
+        switch (command) {
+            case 'F': // Move forward and draw
+                moveForward(stepSize, path, true);
+                break;
+
+            case 'f': // Move forward without drawing
+                moveForward(stepSize, path, false);
+                break;
+
+            case '+': // Turn left
+                rotate(H, L, cosIncrement, sinIncrement);
+                break;
+
+            case '-': // Turn right
+                rotate(H, L, cosIncrement, -sinIncrement);
+                break;
+
+            case '&': // Pitch down
+                rotate(H, U, cosIncrement, -sinIncrement);
+                break;
+
+            case '^': // Pitch up
+                rotate(H, U, cosIncrement, sinIncrement);
+                break;
+
+            case '\\': // Roll left
+                rotate(L, U, cosIncrement, sinIncrement);
+                break;
+
+            case '/': // Roll right
+                rotate(L, U, cosIncrement, -sinIncrement);
+                break;
+
+            default:
+                processOther(command, index);
+        }
+    }
+
+    /**
+     * Processes a single parametric turtle graphics command
+     * @param index Index of the command in the input
+     */
+    private void process(char command, int index, double parameter, TurtlePath3D path) {
+        switch (command) {
+            case 'F': // Move forward and draw
+                moveForward(parameter, path, true);
+                break;
+
+            case 'f': // Move forward without drawing
+                moveForward(parameter, path, false);
+                break;
+
+            case 'A': // Turn left arbitrarily
+            case '+':
+                rotate(H, L, parameter);
+                break;
+
+            case '-': // Turn right
+                rotate(H, L, -parameter);
+                break;
+
+            case '&': // Pitch down
+                rotate(H, U, -parameter);
+                break;
+
+            case '^': // Pitch up
+                rotate(H, U, parameter);
+                break;
+
+            case '\\': // Roll left
+                rotate(L, U, parameter);
+                break;
+
+            case '/': // Roll right
+                rotate(L, U, -parameter);
+                break;
+
+            case '!': // Set line width
+                width = (float) parameter;
+                break;
+
+            default:
+                processOther(command, index);
+        }
+    }
+
+    /**
+     * Processes the commands that ignore parameters: turning around and branches
+     */
+    private void processOther(char command, int index) {
+        switch (command) {
+            case '|': // Turn around
+                for (int i = 0; i < 3; i++) {
+                    frame[H + i] = -frame[H + i];
+                    frame[L + i] = -frame[L + i];
+                }
+                break;
+
+            case '[': // Push state to stack
+                push();
+                branchId = index;
+                break;
+
+            case ']': // Pop state from stack
+                pop();
+                break;
+        }
+    }
+
+    private void rotate(int a, int b, double degrees) {
+        int slot = rotations.lookup(degrees);
+        rotate(a, b, rotations.cos(slot), rotations.sin(slot));
+    }
+
+    /**
+     * Rotates frame vectors a and b in their plane, turning a towards b by the angle of the
+     * given cosine and sine
+     */
+    private void rotate(int a, int b, double cos, double sin) {
+        for (int i = 0; i < 3; i++) {
+            double va = frame[a + i];
+            double vb = frame[b + i];
+            frame[a + i] = va * cos + vb * sin;
+            frame[b + i] = vb * cos - va * sin;
+        }
+
+        if (Math.abs(dot(H, H) - 1) > RENORMALIZE_TOLERANCE) {
+            orthonormalize();
+        }
+    }
+
+    /**
+     * Corrects the rounding drift of the frame: normalizes H, makes L orthogonal to it and
+     * rebuilds U as H x L
+     */
+    private void orthonormalize() {
+        normalize(H);
+
+        double dot = dot(L, H);
+        for (int i = 0; i < 3; i++) {
+            frame[L + i] -= dot * frame[H + i];
+        }
+        normalize(L);
+
+        frame[U] = frame[H + 1] * frame[L + 2] - frame[H + 2] * frame[L + 1];
+        frame[U + 1] = frame[H + 2] * frame[L] - frame[H] * frame[L + 2];
+        frame[U + 2] = frame[H] * frame[L + 1] - frame[H + 1] * frame[L];
+    }
+
+    private void normalize(int v) {
+        double length = Math.sqrt(dot(v, v));
+        for (int i = 0; i < 3; i++) {
+            frame[v + i] /= length;
+        }
+    }
+
+    private double dot(int a, int b) {
+        return frame[a] * frame[b] + frame[a + 1] * frame[b + 1] + frame[a + 2] * frame[b + 2];
+    }
+
+    private void push() {
+        if (stackSize + STATE_SIZE > stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+
+        stack[stackSize] = x;
+        stack[stackSize + 1] = y;
+        stack[stackSize + 2] = z;
+        System.arraycopy(frame, 0, stack, stackSize + 3, FRAME_SIZE);
+        stack[stackSize + 3 + FRAME_SIZE] = branchId;
+        stack[stackSize + 4 + FRAME_SIZE] = width;
+        stackSize += STATE_SIZE;
+    }
+
+    private void pop() {
+        if (stackSize == 0) return; // unbalanced ']', keep the current state
+
+        stackSize -= STATE_SIZE;
+        x = stack[stackSize];
+        y = stack[stackSize + 1];
+        z = stack[stackSize + 2];
+        System.arraycopy(stack, stackSize + 3, frame, 0, FRAME_SIZE);
+        branchId = (int) stack[stackSize + 3 + FRAME_SIZE];
+        width = (float) stack[stackSize + 4 + FRAME_SIZE];
+    }
+
+    /**
+     * Moves turtle forward `step` units along its heading, optionally drawing a line
+     */
+    private void moveForward(double step, TurtlePath3D path, boolean draw) {
+        double newX = x + step * frame[H];
+        double newY = y + step * frame[H + 1];
+        double newZ = z + step * frame[H + 2];
+
+        if (draw) {
+            path.addSegment(x, y, z, newX, newY, newZ, stackSize / STATE_SIZE, branchId, width);
+        }
+
+        x = newX;
+        y = newY;
+        z = newZ;
+    }
+}
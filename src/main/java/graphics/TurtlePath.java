@@ -1,34 +1,82 @@
 package graphics;
 
 import java.awt.geom.Line2D;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.awt.geom.Rectangle2D;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Represents a path created by turtle graphics interpretation.
  * Contains a collection of line segments that form the complete drawing.
+ *
+ * <p>Segments are stored in primitive arrays instead of one object per segment: the i-th segment
+ * goes from ({@code coordinates[4i]}, {@code coordinates[4i + 1]}) to ({@code coordinates[4i +
+ * 2]}, {@code coordinates[4i + 3]}) and its attributes are {@code depths[i]}, {@code branchIds[i]}
+ * and {@code widths[i]}. A segment takes 26 bytes. {@link Line2D} objects are only created by
+ * {@link #getLine(int)} and {@link #getLines()}, on demand.
  */
-public class TurtlePath {
+public class TurtlePath implements PathSink {
+    /** Branch id of segments drawn outside any branch */
+    public static final int TRUNK = -1;
 
-    private final List<Line2D.Double> lines;
+    /** Width of segments added without attributes */
+    public static final float DEFAULT_WIDTH = 1;
+
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final int COORDINATES_PER_SEGMENT = 4;
+
+    private float[] coordinates;
+    private short[] depths;
+    private int[] branchIds;
+    private float[] widths;
+    private int size;
+
+    /**
+     * Receives the segments of a path, see {@link #forEach(SegmentVisitor)}
+     */
+    @FunctionalInterface
+    public interface SegmentVisitor {
+        /**
+         * Visits a segment
+         * @param index Segment index
+         * @param x1 Starting X coordinate
+         * @param y1 Starting Y coordinate
+         * @param x2 Ending X coordinate
+         * @param y2 Ending Y coordinate
+         */
+        void visit(int index, float x1, float y1, float x2, float y2);
+    }
 
     /**
      * Creates an empty turtle path
      */
     public TurtlePath() {
-        this.lines = new ArrayList<>();
+        this(DEFAULT_CAPACITY);
     }
 
     /**
-     * Adds a line segment to the path
+     * Creates an empty turtle path able to hold {@code capacity} segments without growing
+     * @param capacity Initial number of segments
+     */
+    public TurtlePath(int capacity) {
+        int segments = Math.max(capacity, 1);
+
+        coordinates = new float[segments * COORDINATES_PER_SEGMENT];
+        depths = new short[segments];
+        branchIds = new int[segments];
+        widths = new float[segments];
+    }
+
+    /**
+     * Adds a line segment to the path, outside any branch
      * @param x1 Starting X coordinate
      * @param y1 Starting Y coordinate
      * @param x2 Ending X coordinate
      * @param y2 Ending Y coordinate
      */
     public void addLine(double x1, double y1, double x2, double y2) {
-        lines.add(new Line2D.Double(x1, y1, x2, y2));
+        addSegment(x1, y1, x2, y2, 0, TRUNK, DEFAULT_WIDTH);
     }
 
     /**
@@ -36,15 +84,184 @@ public class TurtlePath {
      * @param line Line2D object to add
      */
     public void addLine(Line2D.Double line) {
-        lines.add(new Line2D.Double(line.x1, line.y1, line.x2, line.y2)); // Defensive copy
+        addLine(line.x1, line.y1, line.x2, line.y2);
+    }
+
+    /**
+     * Adds a line segment with its attributes to the path
+     * @param x1 Starting X coordinate
+     * @param y1 Starting Y coordinate
+     * @param x2 Ending X coordinate
+     * @param y2 Ending Y coordinate
+     * @param depth Number of branches the segment is nested in, 0 for the trunk
+     * @param branchId Identifies the innermost branch holding the segment, {@link #TRUNK} for
+     * none
+     * @param width Line width
+     */
+    @Override
+    public void addSegment(
+            double x1, double y1, double x2, double y2, int depth, int branchId, float width) {
+        if (size == depths.length) {
+            ensureCapacity(size + 1);
+        }
+
+        int offset = size * COORDINATES_PER_SEGMENT;
+        coordinates[offset] = (float) x1;
+        coordinates[offset + 1] = (float) y1;
+        coordinates[offset + 2] = (float) x2;
+        coordinates[offset + 3] = (float) y2;
+        depths[size] = (short) Math.min(depth, Short.MAX_VALUE);
+        branchIds[size] = branchId;
+        widths[size] = width;
+        size++;
+    }
+
+    /**
+     * Grows the buffers, if needed, so they can hold the given number of segments
+     * @param segments Number of segments
+     */
+    public void ensureCapacity(int segments) {
+        if (segments <= depths.length) return;
+
+        int capacity = Math.max(segments, depths.length + (depths.length >> 1) + 1);
+        coordinates = Arrays.copyOf(coordinates, capacity * COORDINATES_PER_SEGMENT);
+        depths = Arrays.copyOf(depths, capacity);
+        branchIds = Arrays.copyOf(branchIds, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+    }
+
+    /**
+     * Appends copies of all segments of another path
+     * @param other Path to copy
+     */
+    public void append(TurtlePath other) {
+        ensureCapacity(size + other.size);
+
+        System.arraycopy(
+                other.coordinates,
+                0,
+                coordinates,
+                size * COORDINATES_PER_SEGMENT,
+                other.size * COORDINATES_PER_SEGMENT);
+        System.arraycopy(other.depths, 0, depths, size, other.size);
+        System.arraycopy(other.branchIds, 0, branchIds, size, other.size);
+        System.arraycopy(other.widths, 0, widths, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * Gets the starting X coordinate of a segment
+     * @param index Segment index
+     * @return The coordinate
+     */
+    public float getX1(int index) {
+        return coordinates[checkIndex(index) * COORDINATES_PER_SEGMENT];
+    }
+
+    /**
+     * Gets the starting Y coordinate of a segment
+     * @param index Segment index
+     * @return The coordinate
+     */
+    public float getY1(int index) {
+        return coordinates[checkIndex(index) * COORDINATES_PER_SEGMENT + 1];
+    }
+
+    /**
+     * Gets the ending X coordinate of a segment
+     * @param index Segment index
+     * @return The coordinate
+     */
+    public float getX2(int index) {
+        return coordinates[checkIndex(index) * COORDINATES_PER_SEGMENT + 2];
+    }
+
+    /**
+     * Gets the ending Y coordinate of a segment
+     * @param index Segment index
+     * @return The coordinate
+     */
+    public float getY2(int index) {
+        return coordinates[checkIndex(index) * COORDINATES_PER_SEGMENT + 3];
+    }
+
+    /**
+     * Gets the number of branches a segment is nested in
+     * @param index Segment index
+     * @return The depth, 0 for the trunk
+     */
+    public int getDepth(int index) {
+        return depths[checkIndex(index)];
+    }
+
+    /**
+     * Gets the innermost branch holding a segment
+     * @param index Segment index
+     * @return The branch id, {@link #TRUNK} for segments outside any branch
+     */
+    public int getBranchId(int index) {
+        return branchIds[checkIndex(index)];
+    }
+
+    /**
+     * Gets the line width of a segment
+     * @param index Segment index
+     * @return The width
+     */
+    public float getWidth(int index) {
+        return widths[checkIndex(index)];
+    }
+
+    /**
+     * Gets the backing coordinate array, four coordinates (x1, y1, x2, y2) per segment. It is
+     * shared, not copied, and is only valid until the next modification of this path.
+     * @return The backing coordinate array, holding {@code 4 * getLineCount()} used values
+     */
+    public float[] coordinateArray() {
+        return coordinates;
+    }
+
+    /**
+     * Sends every segment, in order, to {@code visitor}
+     * @param visitor Receiver of the segments
+     */
+    public void forEach(SegmentVisitor visitor) {
+        for (int i = 0, offset = 0; i < size; i++, offset += COORDINATES_PER_SEGMENT) {
+            visitor.visit(
+                    i,
+                    coordinates[offset],
+                    coordinates[offset + 1],
+                    coordinates[offset + 2],
+                    coordinates[offset + 3]);
+        }
     }
 
     /**
-     * Gets all line segments in the path
-     * @return Unmodifiable list of line segments
+     * Creates a line object for a segment
+     * @param index Segment index
+     * @return A new line holding the segment coordinates
+     */
+    public Line2D.Double getLine(int index) {
+        return new Line2D.Double(getX1(index), getY1(index), getX2(index), getY2(index));
+    }
+
+    /**
+     * Gets all line segments in the path. Lines are created when the list is read; prefer the
+     * primitive accessors on large paths.
+     * @return Unmodifiable view of the line segments
      */
     public List<Line2D.Double> getLines() {
-        return Collections.unmodifiableList(lines);
+        return new AbstractList<Line2D.Double>() {
+            @Override
+            public Line2D.Double get(int index) {
+                return getLine(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
 
     /**
@@ -52,7 +269,7 @@ public class TurtlePath {
      * @return Number of line segments
      */
     public int getLineCount() {
-        return lines.size();
+        return size;
     }
 
     /**
@@ -60,14 +277,14 @@ public class TurtlePath {
      * @return true if path contains no line segments
      */
     public boolean isEmpty() {
-        return lines.isEmpty();
+        return size == 0;
     }
 
     /**
-     * Clears all line segments from the path
+     * Clears all line segments from the path, keeping the allocated buffers for reuse
      */
     public void clear() {
-        lines.clear();
+        size = 0;
     }
 
     /**
@@ -75,18 +292,49 @@ public class TurtlePath {
      * @return Sum of all line segment lengths
      */
     public double getTotalLength() {
-        return lines.stream()
-                .mapToDouble(
-                        line ->
-                                Math.sqrt(
-                                        Math.pow(line.x2 - line.x1, 2)
-                                                + Math.pow(line.y2 - line.y1, 2)))
-                .sum();
+        double total = 0;
+
+        int end = size * COORDINATES_PER_SEGMENT;
+        for (int offset = 0; offset < end; offset += COORDINATES_PER_SEGMENT) {
+            double dx = coordinates[offset + 2] - coordinates[offset];
+            double dy = coordinates[offset + 3] - coordinates[offset + 1];
+            total += Math.sqrt(dx * dx + dy * dy);
+        }
+
+        return total;
+    }
+
+    /**
+     * Gets the bounding box of all segments
+     * @return A new rectangle holding every segment, empty at the origin for an empty path
+     */
+    public Rectangle2D.Double getBounds() {
+        if (size == 0) return new Rectangle2D.Double();
+
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        for (int offset = 0; offset < size * COORDINATES_PER_SEGMENT; offset += 2) {
+            minX = Math.min(minX, coordinates[offset]);
+            minY = Math.min(minY, coordinates[offset + 1]);
+            maxX = Math.max(maxX, coordinates[offset]);
+            maxY = Math.max(maxY, coordinates[offset + 1]);
+        }
+
+        return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Segment " + index + " out of bounds for " + size);
+        }
+
+        return index;
     }
 
     @Override
     public String toString() {
-        return String.format(
-                "TurtlePath{lines=%d, totalLength=%.2f}", lines.size(), getTotalLength());
+        return String.format("TurtlePath{lines=%d, totalLength=%.2f}", size, getTotalLength());
     }
 }
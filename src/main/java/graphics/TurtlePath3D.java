@@ -0,0 +1,215 @@
+package graphics;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+
+/**
+ * Segments drawn by a {@link TurtleGraphics3D}, stored like a {@link TurtlePath}: the i-th
+ * segment goes from ({@code coordinates[6i]}, {@code coordinates[6i + 1]}, {@code
+ * coordinates[6i + 2]}) to ({@code coordinates[6i + 3]}, {@code coordinates[6i + 4]}, {@code
+ * coordinates[6i + 5]}) and its attributes are {@code depths[i]}, {@code branchIds[i]} and {@code
+ * widths[i]}. Coordinates have the Y axis pointing up.
+ *
+ * <p>{@link #project(double, double, Point2D, TurtlePath)} turns the segments into a 2D path for
+ * the {@link Renderer}.
+ */
+public class TurtlePath3D {
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final int COORDINATES_PER_SEGMENT = 6;
+
+    private float[] coordinates;
+    private short[] depths;
+    private int[] branchIds;
+    private float[] widths;
+    private int size;
+
+    /**
+     * Creates an empty path
+     */
+    public TurtlePath3D() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty path able to hold {@code capacity} segments without growing
+     * @param capacity Initial number of segments
+     */
+    public TurtlePath3D(int capacity) {
+        int segments = Math.max(capacity, 1);
+
+        coordinates = new float[segments * COORDINATES_PER_SEGMENT];
+        depths = new short[segments];
+        branchIds = new int[segments];
+        widths = new float[segments];
+    }
+
+    /**
+     * Adds a line segment with its attributes to the path
+     * @param x1 Starting X coordinate
+     * @param y1 Starting Y coordinate
+     * @param z1 Starting Z coordinate
+     * @param x2 Ending X coordinate
+     * @param y2 Ending Y coordinate
+     * @param z2 Ending Z coordinate
+     * @param depth Number of branches the segment is nested in, 0 for the trunk
+     * @param branchId Identifies the innermost branch holding the segment, {@link
+     * TurtlePath#TRUNK} for none
+     * @param width Line width
+     */
+    public void addSegment(
+            double x1,
+            double y1,
+            double z1,
+            double x2,
+            double y2,
+            double z2,
+            int depth,
+            int branchId,
+            float width) {
+        if (size == depths.length) {
+            ensureCapacity(size + 1);
+        }
+
+        int offset = size * COORDINATES_PER_SEGMENT;
+        coordinates[offset] = (float) x1;
+        coordinates[offset + 1] = (float) y1;
+        coordinates[offset + 2] = (float) z1;
+        coordinates[offset + 3] = (float) x2;
+        coordinates[offset + 4] = (float) y2;
+        coordinates[offset + 5] = (float) z2;
+        depths[size] = (short) Math.min(depth, Short.MAX_VALUE);
+        branchIds[size] = branchId;
+        widths[size] = width;
+        size++;
+    }
+
+    /**
+     * Grows the buffers, if needed, so they can hold the given number of segments
+     * @param segments Number of segments
+     */
+    public void ensureCapacity(int segments) {
+        if (segments <= depths.length) return;
+
+        int capacity = Math.max(segments, depths.length + (depths.length >> 1) + 1);
+        coordinates = Arrays.copyOf(coordinates, capacity * COORDINATES_PER_SEGMENT);
+        depths = Arrays.copyOf(depths, capacity);
+        branchIds = Arrays.copyOf(branchIds, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+    }
+
+    /**
+     * Projects the segments orthographically onto the screen. The path is turned by {@code
+     * azimuth} around the vertical axis, then tilted by {@code elevation} towards the viewer;
+     * with both angles 0 the X-Y plane is seen from the front, like the 2D turtle draws it.
+     * @param azimuth Rotation around the vertical axis, in radians
+     * @param elevation Rotation around the horizontal screen axis, in radians
+     * @param origin Screen position of the 3D origin
+     * @param target Receives the projected segments and their attributes, cleared first
+     * @return {@code target}
+     */
+    public TurtlePath project(double azimuth, double elevation, Point2D origin, TurtlePath target) {
+        double cosAzimuth = Math.cos(azimuth);
+        double sinAzimuth = Math.sin(azimuth);
+        double cosElevation = Math.cos(elevation);
+        double sinElevation = Math.sin(elevation);
+        double originX = origin.getX();
+        double originY = origin.getY();
+
+        target.clear();
+        target.ensureCapacity(size);
+        for (int i = 0, offset = 0; i < size; i++, offset += COORDINATES_PER_SEGMENT) {
+            double x1 = coordinates[offset];
+            double y1 = coordinates[offset + 1];
+            double z1 = coordinates[offset + 2];
+            double x2 = coordinates[offset + 3];
+            double y2 = coordinates[offset + 4];
+            double z2 = coordinates[offset + 5];
+
+            // Screen Y points down
+            double depth1 = z1 * cosAzimuth - x1 * sinAzimuth;
+            double depth2 = z2 * cosAzimuth - x2 * sinAzimuth;
+            target.addSegment(
+                    originX + x1 * cosAzimuth + z1 * sinAzimuth,
+                    originY - (y1 * cosElevation - depth1 * sinElevation),
+                    originX + x2 * cosAzimuth + z2 * sinAzimuth,
+                    originY - (y2 * cosElevation - depth2 * sinElevation),
+                    depths[i],
+                    branchIds[i],
+                    widths[i]);
+        }
+
+        return target;
+    }
+
+    /**
+     * Gets the backing coordinate array, six coordinates (x1, y1, z1, x2, y2, z2) per segment.
+     * It is shared, not copied, and is only valid until the next modification of this path.
+     * @return The backing coordinate array, holding {@code 6 * getLineCount()} used values
+     */
+    public float[] coordinateArray() {
+        return coordinates;
+    }
+
+    /**
+     * Gets the number of branches a segment is nested in
+     * @param index Segment index
+     * @return The depth, 0 for the trunk
+     */
+    public int getDepth(int index) {
+        return depths[checkIndex(index)];
+    }
+
+    /**
+     * Gets the innermost branch holding a segment
+     * @param index Segment index
+     * @return The branch id, {@link TurtlePath#TRUNK} for segments outside any branch
+     */
+    public int getBranchId(int index) {
+        return branchIds[checkIndex(index)];
+    }
+
+    /**
+     * Gets the line width of a segment
+     * @param index Segment index
+     * @return The width
+     */
+    public float getWidth(int index) {
+        return widths[checkIndex(index)];
+    }
+
+    /**
+     * Gets the number of line segments in the path
+     * @return Number of line segments
+     */
+    public int getLineCount() {
+        return size;
+    }
+
+    /**
+     * Checks if the path is empty
+     * @return true if path contains no line segments
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Clears all line segments from the path, keeping the allocated buffers for reuse
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Segment " + index + " out of bounds for " + size);
+        }
+
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TurtlePath3D{lines=%d}", size);
+    }
+}
@@ -23,6 +23,21 @@ class BinaryTreeTest {
         engine = new LSystemEngine(new BinaryTree());
     }
 
+    /**
+     * Step of F(x) after one iteration, x + 25*e^(-0.1*x)
+     */
+    private static String step(double x) {
+        return ModuleString.formatParameter(x + 25 * Math.exp(-0.1 * x));
+    }
+
+    private static String step(double x, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            x = x + 25 * Math.exp(-0.1 * x);
+        }
+
+        return ModuleString.formatParameter(x);
+    }
+
     @Test
     @DisplayName("Should handle zero iterations correctly")
     void shouldHandleZeroIterations() {
@@ -39,7 +54,7 @@ class BinaryTreeTest {
 
         // Then
         assertEquals(
-                builder.forward("19.53")
+                builder.forward(step(12))
                         .forward("10")
                         .openBranch()
                         .turnLeft()
@@ -60,11 +75,11 @@ class BinaryTreeTest {
         String result = engine.generate(2);
         // Then
         assertEquals(
-                builder.forward("23.08")
-                        .forward("19.20")
+                builder.forward(step(12, 2))
+                        .forward(step(10))
                         .openBranch()
                         .turnLeft()
-                        .forward("20.16")
+                        .forward(step(5))
                         .forward("10")
                         .openBranch()
                         .turnLeft()
@@ -76,7 +91,7 @@ class BinaryTreeTest {
                         .leaf()
                         .closeBranch()
                         .turnRight()
-                        .forward("20.16")
+                        .forward(step(5))
                         .forward("10")
                         .openBranch()
                         .turnLeft()
@@ -90,6 +105,15 @@ class BinaryTreeTest {
                 result);
     }
 
+    @Test
+    @DisplayName("Should keep full precision of parameters across iterations")
+    void shouldKeepFullPrecision() {
+        ModuleString result = engine.generateModules(3);
+
+        assertEquals('F', result.symbolAt(0));
+        assertEquals(Double.parseDouble(step(12, 3)), result.parameter(0, 0));
+    }
+
     @Test
     @DisplayName("Should throw exception for negative iterations")
     void shouldThrowExceptionForNegativeIterations() {
@@ -0,0 +1,39 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the bracket structure used to find the context of modules.
+ */
+class BranchIndexTest {
+
+    @Test
+    @DisplayName("Should match brackets and skip sub-branches when finding contexts")
+    void shouldSkipSubBranches() {
+        // A0 [1 B2 [3 C4 ]5 D6 ]7 E8
+        BranchIndex index = new BranchIndex("").build(ModuleString.parse("A[B[C]D]E"));
+
+        assertEquals(7, index.matching(1));
+        assertEquals(3, index.matching(5));
+
+        assertEquals(0, index.leftContext(2));
+        assertEquals(2, index.leftContext(6));
+        assertEquals(0, index.leftContext(8));
+
+        assertEquals(8, index.rightContext(0));
+        assertEquals(6, index.rightContext(2));
+        assertEquals(-1, index.rightContext(6));
+    }
+
+    @Test
+    @DisplayName("Should skip ignored symbols when finding contexts")
+    void shouldSkipIgnoredSymbols() {
+        BranchIndex index = new BranchIndex("+-").build(ModuleString.parse("A+-B-C"));
+
+        assertEquals(0, index.leftContext(3));
+        assertEquals(5, index.rightContext(3));
+    }
+}
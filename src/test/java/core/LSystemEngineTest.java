@@ -0,0 +1,241 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import core.grammar.RuleParser;
+import core.impl.BinaryTree;
+import core.impl.SimplePlant;
+import core.impl.StochasticBinaryTree;
+import java.util.Collections;
+import java.util.Map;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the different derivation modes of LSystemEngine.
+ * Every mode must produce exactly the same modules as the sequential rewrite.
+ */
+class LSystemEngineTest {
+
+    @Test
+    @DisplayName("Should rewrite in parallel exactly like sequentially")
+    void shouldRewriteInParallelLikeSequentially() {
+        LSystemEngine sequential = new LSystemEngine(new SimplePlant());
+        LSystemEngine parallel = new LSystemEngine(new SimplePlant());
+        parallel.setParallel(true);
+
+        assertEquals(sequential.generate(7), parallel.generate(7));
+    }
+
+    @Test
+    @DisplayName("Should rewrite parametric rules in parallel exactly like sequentially")
+    void shouldRewriteParametricRulesInParallelLikeSequentially() {
+        LSystemEngine sequential = new LSystemEngine(new BinaryTree());
+        LSystemEngine parallel = new LSystemEngine(new BinaryTree());
+        parallel.setParallel(true);
+
+        assertEquals(sequential.generateModules(12), parallel.generateModules(12));
+    }
+
+    @Test
+    @DisplayName("Should stream the same modules as the generated iteration")
+    void shouldStreamGeneratedModules() {
+        LSystemEngine engine = new LSystemEngine(new BinaryTree());
+        ModuleString streamed = new ModuleString();
+
+        engine.stream(6, streamed);
+
+        assertEquals(engine.generateModules(6), streamed);
+    }
+
+    @Test
+    @DisplayName("Should stream the axiom for zero iterations")
+    void shouldStreamAxiomForZeroIterations() {
+        LSystemEngine engine = new LSystemEngine(new SimplePlant());
+        ModuleString streamed = new ModuleString();
+
+        engine.stream(0, streamed);
+
+        assertEquals("X", streamed.toString());
+    }
+
+    @Test
+    @DisplayName("Should expand through the DAG to the generated iteration")
+    void shouldExpandToGeneratedModules() {
+        LSystemEngine engine = new LSystemEngine(new SimplePlant());
+        Expansion expansion = engine.expand(6);
+
+        assertEquals(engine.generateModules(6), expansion.toModuleString());
+        assertEquals(engine.generateModules(6).size(), expansion.length());
+    }
+
+    @Test
+    @DisplayName("Should share expansions of the same module and depth")
+    void shouldShareExpansions() {
+        LSystemEngine engine = new LSystemEngine(new SimplePlant());
+
+        Expansion deep = engine.expand(40);
+        int cached = engine.getExpansionCacheSize();
+        engine.expand(40);
+
+        assertTrue(deep.length() > 1_000_000_000L);
+        assertTrue(cached < 200, "DAG should grow linearly with depth, had " + cached);
+        assertEquals(cached, engine.getExpansionCacheSize());
+    }
+
+    @Test
+    @DisplayName("Should only memoise rules declared deterministic")
+    void shouldNotMemoiseUndeclaredRules() {
+        LSystemRule rule =
+                new LSystemRule() {
+                    @Override
+                    public String getAxiom() {
+                        return "F";
+                    }
+
+                    @Override
+                    public Map<Character, String> getProductionRules() {
+                        return Map.of('F', "FF");
+                    }
+
+                    @Override
+                    public String getDescription() {
+                        return "Undeclared";
+                    }
+                };
+
+        assertThrows(IllegalStateException.class, () -> new LSystemEngine(rule).expand(3));
+    }
+
+    @Test
+    @DisplayName("Should predict the size of non-parametric generations exactly")
+    void shouldPredictGrowth() {
+        LSystemEngine engine = new LSystemEngine(new SimplePlant());
+        GrowthPrediction prediction = engine.predictGrowth();
+
+        for (int i = 0; i <= 6; i++) {
+            assertEquals(engine.generateModules(i).size(), prediction.moduleCount(i), 1e-6);
+        }
+    }
+
+    @Test
+    @DisplayName("Should count every axiom symbol even when the axiom is sampled")
+    void shouldPredictGrowthOfLargeAxioms() {
+        // Only even positions are sampled past 8192 modules, B is at an odd one
+        String axiom = String.join("", Collections.nCopies(8191, "F")) + "B";
+        LSystemRule rule =
+                new LSystemRule() {
+                    @Override
+                    public String getAxiom() {
+                        return axiom;
+                    }
+
+                    @Override
+                    public Map<Character, String> getProductionRules() {
+                        return Map.of('F', "FF");
+                    }
+
+                    @Override
+                    public String getDescription() {
+                        return "Large axiom";
+                    }
+                };
+
+        GrowthPrediction prediction = new LSystemEngine(rule).predictGrowth();
+
+        assertEquals(8192, prediction.moduleCount(0), 1e-6);
+        assertEquals(1, prediction.moduleCount(3, 'B'), 1e-6);
+    }
+
+    @Test
+    @DisplayName("Should share a growth prediction between concurrent derivations")
+    void shouldPredictGrowthConcurrently() {
+        LSystemEngine engine = new LSystemEngine(new SimplePlant());
+        engine.setModuleBudget(1_000_000);
+        GrowthPrediction[] predictions = new GrowthPrediction[16];
+        double[] counts = new double[predictions.length];
+
+        IntStream.range(0, predictions.length)
+                .parallel()
+                .forEach(
+                        i -> {
+                            predictions[i] = engine.predictGrowth();
+                            counts[i] = predictions[i].moduleCount(4 + i % 4);
+                        });
+
+        for (int i = 0; i < predictions.length; i++) {
+            assertSame(predictions[0], predictions[i]);
+            assertEquals(engine.generateModules(4 + i % 4).size(), counts[i], 1e-6);
+        }
+    }
+
+    @Test
+    @DisplayName("Should fail fast when the generation exceeds the module budget")
+    void shouldFailFastOverBudget() {
+        LSystemEngine engine = new LSystemEngine(new SimplePlant());
+        engine.setModuleBudget(10_000);
+
+        assertEquals(5, engine.maxIterationsWithinBudget(20));
+        assertThrows(IllegalStateException.class, () -> engine.generateModules(30));
+    }
+
+    @Test
+    @DisplayName("Should rewrite context-sensitive rules in parallel exactly like sequentially")
+    void shouldRewriteContextSensitiveRulesInParallelLikeSequentially() {
+        String source = "axiom: BA\n" + "B < A -> B\n" + "A -> A[A]A\n" + "B -> A\n";
+        LSystemEngine sequential = new LSystemEngine(RuleParser.parse(source));
+        LSystemEngine parallel = new LSystemEngine(RuleParser.parse(source));
+        parallel.setParallel(true);
+
+        assertTrue(sequential.generateModules(10).size() > 20_000);
+        assertEquals(sequential.generateModules(10), parallel.generateModules(10));
+    }
+
+    @Test
+    @DisplayName("Should derive the same stochastic tree sequentially, in parallel and streamed")
+    void shouldDeriveSameStochasticTreeInAnyMode() {
+        LSystemEngine sequential = new LSystemEngine(new StochasticBinaryTree());
+        LSystemEngine parallel = new LSystemEngine(new StochasticBinaryTree());
+        sequential.setSeed(42);
+        parallel.setSeed(42);
+        parallel.setParallel(true);
+        ModuleString streamed = new ModuleString();
+
+        ModuleString expected = sequential.generateModules(12);
+        sequential.stream(12, streamed);
+
+        assertTrue(expected.size() > 20_000);
+        assertEquals(expected, parallel.generateModules(12));
+        assertEquals(expected, streamed);
+    }
+
+    @Test
+    @DisplayName("Should derive stochastic trees from the seed only")
+    void shouldDeriveStochasticTreesFromSeed() {
+        LSystemEngine engine = new LSystemEngine(new StochasticBinaryTree());
+        engine.setSeed(7);
+        ModuleString first = engine.generateModules(5);
+
+        assertEquals(first, engine.generateModules(5));
+
+        engine.setSeed(8);
+        assertNotEquals(first, engine.generateModules(5));
+    }
+
+    @Test
+    @DisplayName("Should derive concurrently on a shared engine with one context per derivation")
+    void shouldDeriveConcurrently() {
+        LSystemEngine engine = new LSystemEngine(new StochasticBinaryTree());
+        ModuleString[] concurrent = new ModuleString[32];
+
+        IntStream.range(0, concurrent.length)
+                .parallel()
+                .forEach(s -> concurrent[s] = engine.generateModules(8, new DerivationContext(s)));
+
+        for (int s = 0; s < concurrent.length; s++) {
+            LSystemEngine alone = new LSystemEngine(new StochasticBinaryTree());
+            assertEquals(alone.generateModules(8, new DerivationContext(s)), concurrent[s]);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package core.grammar;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import core.LSystemEngine;
+import core.ModuleString;
+import core.impl.BinaryTree;
+import core.impl.SimplePlant;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the declarative rule format.
+ * Declarative versions of the built-in rules must derive exactly the same modules.
+ */
+class RuleParserTest {
+
+    @Test
+    @DisplayName("Should derive like SimplePlant")
+    void shouldDeriveLikeSimplePlant() {
+        CompiledRule rule =
+                RuleParser.parse(
+                        "axiom: X\n"
+                                + "X -> F+[[X]-X]-F[-FX]+X\n"
+                                + "F -> FF # doubles every stem segment\n");
+
+        assertEquals(
+                new LSystemEngine(new SimplePlant()).generate(5),
+                new LSystemEngine(rule).generate(5));
+    }
+
+    @Test
+    @DisplayName("Should derive like the parametric BinaryTree")
+    void shouldDeriveLikeBinaryTree() {
+        CompiledRule rule =
+                RuleParser.parse(
+                        "name: Binary Tree\n"
+                                + "axiom: F(12)0\n"
+                                + "F(x) -> F(x + 25 * exp(-0.1 * x))\n"
+                                + "0 -> F(10)[+F(5)0]-F(5)0\n");
+
+        assertEquals("Binary Tree", rule.getName());
+        assertEquals(
+                new LSystemEngine(new BinaryTree()).generateModules(6),
+                new LSystemEngine(rule).generateModules(6));
+    }
+
+    @Test
+    @DisplayName("Should apply the first alternative whose condition holds")
+    void shouldApplyFirstMatchingAlternative() {
+        CompiledRule rule =
+                RuleParser.parse(
+                        "axiom: A(1)A(5)A(10)\n"
+                                + "A(t) : t < 3 -> B(t)\n"
+                                + "A(t) : t >= 3 && t != 10 -> C(t * 2, max(t, 7))\n");
+
+        ModuleString result = new LSystemEngine(rule).generateModules(1);
+
+        assertEquals("B(1)C(10,7)A(10)", result.toString());
+    }
+
+    @Test
+    @DisplayName("Should report the line of malformed productions")
+    void shouldReportMalformedLine() {
+        IllegalArgumentException exception =
+                assertThrows(
+                        IllegalArgumentException.class,
+                        () -> RuleParser.parse("axiom: F\n\nF(x) -> F(y)\n"));
+
+        assertTrue(exception.getMessage().startsWith("Line 3:"), exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("Should read arrows inside key values as text")
+    void shouldReadArrowsInKeys() {
+        CompiledRule rule =
+                RuleParser.parse(
+                        "name: F -> FF\n"
+                                + "description: F -> FF doubles the stem\n"
+                                + "axiom: F\n"
+                                + "F -> FF\n");
+
+        assertEquals("F -> FF", rule.getName());
+        assertEquals("F -> FF doubles the stem", rule.getDescription());
+        assertEquals("FFFF", new LSystemEngine(rule).generateModules(2).toString());
+    }
+
+    @Test
+    @DisplayName("Should propagate a signal along the main axis, skipping branches")
+    void shouldPropagateSignal() {
+        CompiledRule rule =
+                RuleParser.parse("axiom: BA[A]AA\n" + "B < A -> B\n" + "B -> A\n");
+        LSystemEngine engine = new LSystemEngine(rule);
+
+        assertEquals("AB[A]AA", engine.generate(1));
+        assertEquals("AA[B]BA", engine.generate(2));
+    }
+
+    @Test
+    @DisplayName("Should read the parameters of both contexts")
+    void shouldReadContextParameters() {
+        CompiledRule rule =
+                RuleParser.parse(
+                        "axiom: A(1)+B(2)C(3)\n"
+                                + "ignore: +\n"
+                                + "A(a) < B(b) > C(c) : a < c -> B(a + b + c)\n");
+
+        assertEquals("A(1)+B(6)C(3)", new LSystemEngine(rule).generate(1));
+    }
+}
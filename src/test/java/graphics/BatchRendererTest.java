@@ -0,0 +1,195 @@
+package graphics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import core.RuleController;
+import core.impl.BinaryTree;
+import core.impl.SimplePlant;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for headless batch rendering.
+ */
+class BatchRendererTest {
+
+    @Test
+    @DisplayName("Should render every rule, seed and iteration to PNG files")
+    void shouldRenderPngFiles() throws Exception {
+        Path directory = Files.createTempDirectory("batch");
+        try {
+            BatchRenderer batch =
+                    new BatchRenderer(Arrays.asList(new BinaryTree(), new SimplePlant()));
+            batch.setSeeds(3, 5);
+            batch.setIterations(2, 3);
+            batch.setSize(96, 64);
+            batch.setThreads(2);
+            batch.setOutputDirectory(directory);
+
+            BatchRenderer.Report report = batch.run(silent());
+
+            assertEquals(12, report.getTrees());
+            assertTrue(report.getSegments() > 0);
+            assertEquals(0, report.getFailed());
+
+            BufferedImage image = ImageIO.read(directory.resolve("SimplePlant-s4-i3.png").toFile());
+            assertEquals(96, image.getWidth());
+            assertEquals(64, image.getHeight());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    @DisplayName("Should write SVG paths and skip iterations over the module budget")
+    void shouldWriteSvgAndSkipOverBudget() throws Exception {
+        Path directory = Files.createTempDirectory("batch");
+        try {
+            BatchRenderer batch =
+                    BatchRenderer.fromArguments(
+                            new String[] {
+                                "--rules", "simpleplant",
+                                "--iterations", "1..2",
+                                "--format", "svg",
+                                "--budget", "50",
+                                "--out", directory.toString()
+                            },
+                            new RuleController().getRules());
+
+            BatchRenderer.Report report = batch.run(silent());
+
+            assertEquals(1, report.getTrees());
+            assertEquals(1, report.getSkipped());
+            String svg =
+                    new String(
+                            Files.readAllBytes(directory.resolve("SimplePlant-s0-i1.svg")),
+                            StandardCharsets.US_ASCII);
+            assertTrue(svg.startsWith("<svg"));
+            assertTrue(svg.contains("d=\"M"));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    @DisplayName("Should count failed writes and keep recycling their images")
+    void shouldCountFailedWrites() throws Exception {
+        Path directory = Files.createTempDirectory("batch");
+        try {
+            // Non-empty directories in place of the files, more than the image pool holds
+            for (int seed = 0; seed < 20; seed++) {
+                Path file = directory.resolve("SimplePlant-s" + seed + "-i1.png");
+                Files.createFile(Files.createDirectory(file).resolve("keep"));
+            }
+            BatchRenderer batch = new BatchRenderer(Arrays.asList(new SimplePlant()));
+            batch.setSeeds(0, 19);
+            batch.setIterations(1);
+            batch.setSize(64, 64);
+            batch.setThreads(1);
+            batch.setOutputDirectory(directory);
+
+            BatchRenderer.Report report = batch.run(silent());
+
+            assertEquals(0, report.getTrees());
+            assertEquals(0, report.getSegments());
+            assertEquals(20, report.getFailed());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    @DisplayName("Should stop every thread when interrupted")
+    void shouldStopWhenInterrupted() throws Exception {
+        Path directory = Files.createTempDirectory("batch");
+        try {
+            BatchRenderer batch = new BatchRenderer(Arrays.asList(new SimplePlant()));
+            batch.setSeeds(0, 99_999);
+            batch.setIterations(3);
+            batch.setSize(64, 64);
+            batch.setThreads(2);
+            batch.setOutputDirectory(directory);
+            AtomicBoolean interrupted = new AtomicBoolean();
+            Thread runner =
+                    new Thread(
+                            () -> {
+                                try {
+                                    batch.run(silent());
+                                } catch (InterruptedException e) {
+                                    interrupted.set(true);
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            });
+
+            runner.start();
+            while (runner.isAlive() && isEmpty(directory)) {
+                Thread.sleep(10);
+            }
+            runner.interrupt();
+            runner.join(10_000);
+
+            assertFalse(runner.isAlive());
+            assertTrue(interrupted.get());
+            assertTrue(
+                    Thread.getAllStackTraces().keySet().stream()
+                            .noneMatch(t -> t.getName().startsWith("lsystem-batch-writer")));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject invalid arguments")
+    void shouldRejectInvalidArguments() {
+        RuleController rules = new RuleController();
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> BatchRenderer.fromArguments(new String[] {"--rules"}, rules.getRules()));
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        BatchRenderer.fromArguments(
+                                new String[] {"--rules", "Unknown"}, rules.getRules()));
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        BatchRenderer.fromArguments(
+                                new String[] {"--seeds", "5..1"}, rules.getRules()));
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        BatchRenderer.fromArguments(
+                                new String[] {"--size", "big"}, rules.getRules()));
+    }
+
+    private static PrintStream silent() {
+        return new PrintStream(new ByteArrayOutputStream());
+    }
+
+    private static boolean isEmpty(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return !files.findAny().isPresent();
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
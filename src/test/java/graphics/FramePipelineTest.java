@@ -0,0 +1,116 @@
+package graphics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import core.DerivationContext;
+import core.impl.BinaryTree;
+import core.impl.SimplePlant;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the background frame pipeline.
+ */
+class FramePipelineTest {
+
+    @Test
+    @DisplayName("Should draw successive iterations on the worker and hand them over")
+    void shouldPublishFrames() throws InterruptedException {
+        Semaphore frames = new Semaphore(0);
+
+        try (FramePipeline pipeline =
+                new FramePipeline(new Renderer(), 1_000_000, 3, frames::release)) {
+            pipeline.setViewport(200, 150);
+            pipeline.restart(new BinaryTree(), new DerivationContext(5));
+            awaitFrame(frames);
+
+            for (int iteration = 1; iteration <= 4; iteration++) {
+                frames.drainPermits();
+                pipeline.advance();
+                awaitFrame(frames);
+
+                FramePipeline.Frame frame = pipeline.latestFrame();
+                assertEquals(iteration % 4, frame.getIteration()); // back to the axiom after 3
+                assertEquals(5, frame.getSeed());
+                assertEquals(200, frame.getImage().getWidth());
+                assertTrue(hasDrawing(frame.getImage()));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should republish retained images when the animation loops")
+    void shouldReuseRetainedFrames() throws InterruptedException {
+        Semaphore frames = new Semaphore(0);
+
+        try (FramePipeline pipeline =
+                new FramePipeline(new Renderer(), 1_000_000, 2, frames::release)) {
+            pipeline.setViewport(120, 90);
+            pipeline.restart(new BinaryTree(), new DerivationContext(3));
+            awaitFrame(frames);
+            BufferedImage[] firstCycle = new BufferedImage[3];
+            firstCycle[0] = pipeline.latestFrame().getImage();
+
+            for (int step = 1; step < 6; step++) {
+                frames.drainPermits();
+                pipeline.advance();
+                awaitFrame(frames);
+
+                FramePipeline.Frame frame = pipeline.latestFrame();
+                if (step < 3) {
+                    firstCycle[step] = frame.getImage();
+                } else {
+                    assertSame(firstCycle[frame.getIteration()], frame.getImage());
+                }
+            }
+
+            // A new size draws the retained geometry again
+            frames.drainPermits();
+            pipeline.setViewport(60, 45);
+            awaitFrame(frames);
+            BufferedImage resized = pipeline.latestFrame().getImage();
+            assertEquals(60, resized.getWidth());
+            assertTrue(hasDrawing(resized));
+        }
+    }
+
+    @Test
+    @DisplayName("Should only publish frames of the latest restart")
+    void shouldDropStaleWork() throws InterruptedException {
+        Semaphore frames = new Semaphore(0);
+
+        try (FramePipeline pipeline =
+                new FramePipeline(new Renderer(), 1_000_000, 8, frames::release)) {
+            pipeline.setViewport(100, 100);
+            pipeline.restart(new SimplePlant(), new DerivationContext(1));
+            pipeline.advance();
+            pipeline.restart(new BinaryTree(), new DerivationContext(2));
+
+            // Waits until the frame of the last restart is published
+            FramePipeline.Frame frame = null;
+            while (frame == null || frame.getSeed() != 2) {
+                awaitFrame(frames);
+                frame = pipeline.latestFrame();
+            }
+            assertEquals(0, frame.getIteration());
+            assertFalse(frames.tryAcquire(200, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private static void awaitFrame(Semaphore frames) throws InterruptedException {
+        assertTrue(frames.tryAcquire(10, TimeUnit.SECONDS), "No frame published");
+    }
+
+    private static boolean hasDrawing(BufferedImage image) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                if ((image.getRGB(x, y) >>> 24) != 0) return true;
+            }
+        }
+
+        return false;
+    }
+}
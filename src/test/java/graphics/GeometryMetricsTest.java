@@ -0,0 +1,74 @@
+package graphics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import core.DerivationContext;
+import core.LSystemEngine;
+import core.ModuleString;
+import core.grammar.RuleParser;
+import core.impl.StochasticBinaryTree;
+import java.awt.geom.Point2D;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the streaming geometry metrics.
+ */
+class GeometryMetricsTest {
+
+    private static final Point2D START = new Point2D.Double(0, 0);
+
+    @Test
+    @DisplayName("Should measure the shape and topology of a plant")
+    void shouldMeasurePlant() {
+        // Trunk of 2 segments with a branch to the left holding one nested branch
+        LSystemEngine engine = new LSystemEngine(RuleParser.parse("axiom: F[+F[-F]F]F\n"));
+        GeometryMetrics metrics =
+                new TurtleGraphics(Math.toRadians(90), 10)
+                        .interpret(engine, 0, START, new GeometryMetrics());
+
+        assertEquals(5, metrics.getSegmentCount());
+        assertEquals(50, metrics.getTotalLength(), 1e-9);
+        assertEquals(20, metrics.getWidth(), 1e-9);
+        assertEquals(20, metrics.getHeight(), 1e-9);
+        assertEquals(2, metrics.getMaxDepth());
+        assertEquals(3, metrics.getLeafCount());
+        assertArrayEquals(new int[] {1, 1, 1}, metrics.getBranchOrderHistogram());
+    }
+
+    @Test
+    @DisplayName("Should measure the same values as the interpreted path")
+    void shouldMatchInterpretedPath() {
+        LSystemEngine engine = new LSystemEngine(new StochasticBinaryTree());
+
+        for (long seed = 0; seed < 20; seed++) {
+            GeometryMetrics metrics =
+                    GeometryMetrics.measure(engine, 8, new DerivationContext(seed));
+            ModuleString modules = engine.generateModules(8, new DerivationContext(seed));
+            TurtlePath path = new TurtleGraphics().interpret(modules, START);
+
+            assertEquals(path.getLineCount(), metrics.getSegmentCount());
+            assertEquals(path.getTotalLength(), metrics.getTotalLength(), 1e-3);
+
+            int maxDepth = 0;
+            for (int i = 0; i < path.getLineCount(); i++) {
+                maxDepth = Math.max(maxDepth, path.getDepth(i));
+            }
+            assertEquals(maxDepth, metrics.getMaxDepth());
+        }
+    }
+
+    @Test
+    @DisplayName("Should start over after a reset")
+    void shouldReset() {
+        GeometryMetrics metrics = new GeometryMetrics();
+        metrics.addSegment(0, 0, 3, 4, 0, TurtlePath.TRUNK, 1);
+
+        assertEquals(5, metrics.getTotalLength(), 1e-9);
+        metrics.reset();
+        assertEquals(0, metrics.getSegmentCount());
+        assertEquals(0, metrics.getLeafCount());
+        assertEquals(0, metrics.getHeight());
+        assertEquals(0, metrics.getBranchOrderHistogram().length);
+    }
+}
@@ -0,0 +1,65 @@
+package graphics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import core.LSystemEngine;
+import core.impl.BinaryTree;
+import core.impl.SimplePlant;
+import core.impl.StochasticBinaryTree;
+import java.awt.geom.Point2D;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the instanced drawing of derivations.
+ */
+class InstancedSceneTest {
+
+    private static final Point2D START = new Point2D.Double(400, 600);
+
+    @Test
+    @DisplayName("Should draw the same segments as the interpreted derivation")
+    void shouldMatchInterpretedPath() {
+        LSystemEngine[] engines = {
+            new LSystemEngine(new SimplePlant()), new LSystemEngine(new BinaryTree())
+        };
+
+        for (LSystemEngine engine : engines) {
+            TurtleGraphics interpreter = new TurtleGraphics();
+            TurtlePath expected = interpreter.interpret(engine.generateModules(6), START);
+            InstancedScene scene = InstancedScene.build(engine, 6, interpreter, START, 64);
+            TurtlePath actual = scene.toPath(new TurtlePath());
+
+            assertEquals(expected.getLineCount(), scene.getSegmentCount());
+            assertEquals(expected.getLineCount(), actual.getLineCount());
+            for (int i = 0; i < expected.getLineCount(); i++) {
+                assertEquals(expected.getX1(i), actual.getX1(i), 1e-3);
+                assertEquals(expected.getY1(i), actual.getY1(i), 1e-3);
+                assertEquals(expected.getX2(i), actual.getX2(i), 1e-3);
+                assertEquals(expected.getY2(i), actual.getY2(i), 1e-3);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep far fewer segments than a deep derivation draws")
+    void shouldShareGeometry() {
+        InstancedScene scene =
+                InstancedScene.build(
+                        new LSystemEngine(new SimplePlant()), 10, new TurtleGraphics(), START);
+
+        assertTrue(scene.getSegmentCount() > 1_000_000);
+        assertTrue(scene.getPrototypeSegmentCount() * 50 < scene.getSegmentCount());
+        assertTrue(scene.getInstanceCount() * 50 < scene.getSegmentCount());
+    }
+
+    @Test
+    @DisplayName("Should reject rules that are not deterministic")
+    void shouldRejectStochasticRules() {
+        LSystemEngine engine = new LSystemEngine(new StochasticBinaryTree());
+
+        assertThrows(
+                IllegalStateException.class,
+                () -> InstancedScene.build(engine, 4, new TurtleGraphics(), START));
+    }
+}
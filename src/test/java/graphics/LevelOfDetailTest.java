@@ -0,0 +1,80 @@
+package graphics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import core.LSystemEngine;
+import core.impl.SimplePlant;
+import java.awt.geom.Point2D;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the path simplifications and levels of detail.
+ */
+class LevelOfDetailTest {
+
+    private static final Point2D START = new Point2D.Double(0, 0);
+
+    @Test
+    @DisplayName("Should merge runs of collinear segments")
+    void shouldMergeCollinearSegments() {
+        TurtlePath path = new TurtleGraphics(Math.toRadians(90), 10).interpret("FFF+FF[F]F", START);
+        TurtlePath merged = PathSimplifier.mergeCollinear(path, new TurtlePath());
+
+        // The branch breaks the run, its segment has another depth
+        assertEquals(4, merged.getLineCount());
+        assertEquals(30, merged.getLine(0).getP1().distance(merged.getLine(0).getP2()), 1e-9);
+        assertEquals(path.getTotalLength(), merged.getTotalLength(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Should remove duplicate segments in either direction")
+    void shouldRemoveDuplicates() {
+        TurtlePath path = new TurtlePath();
+        path.addLine(0, 0, 10, 0);
+        path.addLine(0, 0, 0, 10);
+        path.addLine(10, 0, 0, 0);
+        path.addLine(0, 0, 10, 0);
+
+        TurtlePath distinct = PathSimplifier.removeDuplicates(path, new TurtlePath());
+
+        assertEquals(2, distinct.getLineCount());
+        assertEquals(path.getLine(1).getP2(), distinct.getLine(1).getP2());
+    }
+
+    @Test
+    @DisplayName("Should aggregate short connected segments and skip tiny chains")
+    void shouldAggregateShortSegments() {
+        TurtlePath path =
+                new TurtleGraphics(Math.toRadians(10), 1).interpret("F+F+F+F+F+F[fF]", START);
+        TurtlePath aggregated = PathSimplifier.aggregate(path, 2.5, new TurtlePath());
+
+        // Chain of 6 unit segments, the isolated one is shorter than half the minimum
+        assertEquals(2, aggregated.getLineCount());
+        assertEquals(path.getLine(0).getP1(), aggregated.getLine(0).getP1());
+        assertEquals(path.getLine(5).getP2(), aggregated.getLine(1).getP2());
+        assertTrue(aggregated.getLine(0).getP1().distance(aggregated.getLine(0).getP2()) >= 2.5);
+    }
+
+    @Test
+    @DisplayName("Should draw fewer segments at coarser levels")
+    void shouldSimplifyLevels() {
+        TurtlePath path =
+                new TurtleGraphics()
+                        .interpret(new LSystemEngine(new SimplePlant()).generateModules(6), START);
+        LevelOfDetail levels = new LevelOfDetail().build(path);
+
+        assertEquals(1, levels.levelFor(1));
+        assertEquals(0, levels.levelFor(2));
+        assertEquals(3, levels.levelFor(0.25));
+        assertEquals(levels.getLevelCount() - 1, levels.levelFor(1e-9));
+
+        int previous = path.getLineCount();
+        for (int level = 0; level < levels.getLevelCount(); level++) {
+            int count = levels.getLevel(level).getLineCount();
+            assertTrue(count <= previous);
+            previous = count;
+        }
+        assertTrue(levels.getLevel(0).getLineCount() < path.getLineCount() / 2);
+    }
+}
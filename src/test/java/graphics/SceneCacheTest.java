@@ -0,0 +1,138 @@
+package graphics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import core.LSystemEngine;
+import core.impl.BinaryTree;
+import core.impl.SimplePlant;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the retained scene cache.
+ */
+class SceneCacheTest {
+
+    @Test
+    @DisplayName("Should retain scenes by rule, seed and iteration")
+    void shouldRetainScenes() {
+        SceneCache cache = new SceneCache();
+        BinaryTree rule = new BinaryTree();
+        TurtlePath geometry = new TurtlePath();
+
+        SceneCache.Scene scene = cache.put(rule, 7, 2, geometry);
+
+        assertSame(scene, cache.get(rule, 7, 2));
+        assertSame(geometry, scene.getGeometry());
+        assertNull(cache.get(rule, 8, 2));
+        assertNull(cache.get(rule, 7, 3));
+        assertNull(cache.get(new BinaryTree(), 7, 2)); // rules are compared by identity
+    }
+
+    @Test
+    @DisplayName("Should only return the raster of the requested size")
+    void shouldMatchRasterSize() {
+        SceneCache.Scene scene = new SceneCache().put(new BinaryTree(), 0, 0, new TurtlePath());
+        BufferedImage image = new BufferedImage(40, 30, BufferedImage.TYPE_INT_ARGB);
+
+        assertNull(scene.getImage(40, 30));
+        scene.setImage(image);
+        assertSame(image, scene.getImage(40, 30));
+        assertNull(scene.getImage(30, 40));
+    }
+
+    @Test
+    @DisplayName("Should keep the levels of detail of a scene across renders")
+    void shouldRetainLevelsOfDetail() {
+        TurtlePath geometry =
+                new TurtleGraphics()
+                        .interpret(
+                                new LSystemEngine(new SimplePlant()).generateModules(4),
+                                new Point2D.Double());
+        SceneCache.Scene scene = new SceneCache().put(new SimplePlant(), 0, 4, geometry);
+        Renderer renderer = new Renderer();
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+
+        LevelOfDetail levels = scene.getLevelOfDetail();
+        renderer.render(image.createGraphics(), scene, 4);
+        TurtlePath drawn = renderer.getDrawnPath();
+        int segments = drawn.getLineCount();
+        renderer.render(image.createGraphics(), scene, 4);
+
+        assertSame(levels, scene.getLevelOfDetail());
+        assertSame(drawn, renderer.getDrawnPath());
+        assertEquals(segments, drawn.getLineCount());
+    }
+
+    @Test
+    @DisplayName("Should query the retained index of a scene when clipped")
+    void shouldRetainSegmentIndex() {
+        TurtlePath geometry = new TurtlePath();
+        for (int i = 0; i < 100; i++) {
+            geometry.addLine(i * 10, 0, i * 10, 10);
+        }
+        SceneCache.Scene scene = new SceneCache().put(new BinaryTree(), 0, 0, geometry);
+        Renderer renderer = new Renderer();
+        renderer.setLevelOfDetail(false);
+        BufferedImage image = new BufferedImage(100, 20, BufferedImage.TYPE_INT_ARGB);
+
+        SegmentIndex index = scene.getIndex();
+        renderer.render(image.createGraphics(), scene, 0); // clipped to the image
+        renderer.render(image.createGraphics(), scene, 0);
+
+        assertSame(index, scene.getIndex());
+        assertSame(geometry, index.getPath());
+        assertEquals(42, renderer.segmentAt(421, 5, 2));
+    }
+
+    @Test
+    @DisplayName("Should retain the stroke buckets of a scene until the stroke width changes")
+    void shouldRetainStrokeBuckets() {
+        TurtlePath geometry = new TurtlePath();
+        for (int i = 0; i < 10; i++) {
+            geometry.addLine(i * 10, 0, i * 10, 10);
+        }
+        SceneCache.Scene scene = new SceneCache().put(new BinaryTree(), 0, 0, geometry);
+        Renderer renderer = new Renderer();
+        renderer.setLevelOfDetail(false);
+        BufferedImage image = new BufferedImage(200, 20, BufferedImage.TYPE_INT_ARGB);
+
+        renderer.render(image.createGraphics(), scene, 0);
+        StrokeBuckets buckets = scene.getBuckets(-1, 2, b -> fail("Buckets filled again"));
+        renderer.render(image.createGraphics(), scene, 0);
+
+        assertSame(buckets, scene.getBuckets(-1, 2, b -> fail("Buckets filled again")));
+        assertEquals(1, buckets.size());
+
+        renderer.setStrokeWidth(4);
+        renderer.render(image.createGraphics(), scene, 0);
+        assertEquals(4, buckets.getStrokeWidth(0), 1e-6);
+    }
+
+    @Test
+    @DisplayName("Should evict the least recently used scene and invalidate explicitly")
+    void shouldEvictAndInvalidate() {
+        SceneCache cache = new SceneCache(2);
+        BinaryTree tree = new BinaryTree();
+        SimplePlant plant = new SimplePlant();
+
+        cache.put(tree, 0, 0, new TurtlePath());
+        cache.put(tree, 0, 1, new TurtlePath());
+        cache.get(tree, 0, 0);
+        cache.put(plant, 0, 0, new TurtlePath());
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(tree, 0, 0));
+        assertNull(cache.get(tree, 0, 1));
+
+        cache.invalidate(tree);
+        assertNull(cache.get(tree, 0, 0));
+        assertNotNull(cache.get(plant, 0, 0));
+
+        cache.invalidate();
+        assertEquals(0, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> new SceneCache(0));
+    }
+}
@@ -0,0 +1,92 @@
+package graphics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import core.DerivationContext;
+import core.LSystemEngine;
+import core.impl.StochasticBinaryTree;
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the segment grid index.
+ */
+class SegmentIndexTest {
+
+    private static final TurtlePath PATH =
+            new TurtleGraphics()
+                    .interpret(
+                            new LSystemEngine(new StochasticBinaryTree())
+                                    .generateModules(9, new DerivationContext(3)),
+                            new Point2D.Double(400, 600));
+
+    @Test
+    @DisplayName("Should find the segments intersecting a rectangle, once each")
+    void shouldQueryRectangles() {
+        SegmentIndex index = new SegmentIndex().build(PATH);
+        Random random = new Random(1);
+
+        for (int q = 0; q < 50; q++) {
+            double minX = random.nextDouble() * 800;
+            double minY = random.nextDouble() * 600;
+            double maxX = minX + random.nextDouble() * 200;
+            double maxY = minY + random.nextDouble() * 200;
+
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < PATH.getLineCount(); i++) {
+                Line2D.Double line = PATH.getLine(i);
+                if (Math.max(line.x1, line.x2) >= minX
+                        && Math.min(line.x1, line.x2) <= maxX
+                        && Math.max(line.y1, line.y2) >= minY
+                        && Math.min(line.y1, line.y2) <= maxY) {
+                    expected.add(i);
+                }
+            }
+
+            List<Integer> actual = new ArrayList<>();
+            index.query(minX, minY, maxX, maxY, actual::add);
+            actual.sort(null);
+
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    @DisplayName("Should find the closest segment to a point")
+    void shouldFindNearestSegment() {
+        SegmentIndex index = new SegmentIndex().build(PATH);
+        Random random = new Random(2);
+
+        for (int q = 0; q < 50; q++) {
+            double x = random.nextDouble() * 1000 - 100;
+            double y = random.nextDouble() * 800 - 100;
+            double maxDistance = random.nextDouble() * 50;
+
+            double expected = maxDistance;
+            for (int i = 0; i < PATH.getLineCount(); i++) {
+                expected = Math.min(expected, PATH.getLine(i).ptSegDist(x, y));
+            }
+
+            int nearest = index.nearest(x, y, maxDistance);
+            if (nearest < 0) {
+                assertEquals(maxDistance, expected);
+            } else {
+                assertEquals(expected, PATH.getLine(nearest).ptSegDist(x, y), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should handle empty paths")
+    void shouldHandleEmptyPaths() {
+        SegmentIndex index = new SegmentIndex().build(new TurtlePath());
+
+        index.query(0, 0, 100, 100, i -> fail("No segment expected"));
+        assertEquals(-1, index.nearest(0, 0, 100));
+    }
+}
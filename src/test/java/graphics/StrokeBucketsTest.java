@@ -0,0 +1,63 @@
+package graphics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.geom.PathIterator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for grouping segments by drawing style.
+ */
+class StrokeBucketsTest {
+
+    @Test
+    @DisplayName("Should group segments by depth and rounded stroke width")
+    void shouldGroupByStyle() {
+        StrokeBuckets buckets = new StrokeBuckets();
+
+        buckets.add(0, 2.0f, 0, 0, 0, 10);
+        buckets.add(1, 1.7f, 0, 10, 5, 15);
+        buckets.add(0, 2.05f, 0, 10, 0, 20); // rounds to the trunk style
+        buckets.add(20, 1.0f, 5, 15, 6, 16); // deep segments share the last depth style
+
+        assertEquals(3, buckets.size());
+        assertEquals(0, buckets.getDepth(0));
+        assertEquals(2.0f, buckets.getStrokeWidth(0));
+        assertEquals(1.75f, buckets.getStrokeWidth(1));
+        assertEquals(StrokeBuckets.DEPTH_STYLES - 1, buckets.getDepth(2));
+        assertArrayEquals(new int[] {0, 1, 2}, buckets.drawingOrder());
+
+        // Connected segments of the trunk form a single polyline
+        assertEquals(1, countMoves(buckets, 0));
+
+        buckets.clear();
+        assertEquals(0, buckets.size());
+    }
+
+    @Test
+    @DisplayName("Should draw wider strokes first within a depth")
+    void shouldOrderByDepthThenWidth() {
+        StrokeBuckets buckets = new StrokeBuckets();
+
+        buckets.add(1, 1.0f, 0, 0, 1, 1);
+        buckets.add(0, 1.0f, 0, 0, 1, 1);
+        buckets.add(0, 3.0f, 0, 0, 1, 1);
+        buckets.add(0, 1.0f, 5, 5, 6, 6); // not connected, starts a new subpath
+
+        assertArrayEquals(new int[] {2, 1, 0}, buckets.drawingOrder());
+        assertEquals(2, countMoves(buckets, 1));
+    }
+
+    private static int countMoves(StrokeBuckets buckets, int bucket) {
+        int moves = 0;
+        float[] coordinates = new float[6];
+        for (PathIterator it = buckets.getPath(bucket).getPathIterator(null);
+                !it.isDone();
+                it.next()) {
+            if (it.currentSegment(coordinates) == PathIterator.SEG_MOVETO) moves++;
+        }
+
+        return moves;
+    }
+}
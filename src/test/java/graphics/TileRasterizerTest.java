@@ -0,0 +1,133 @@
+package graphics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import core.DerivationContext;
+import core.LSystemEngine;
+import core.impl.SimplePlant;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the tiled software rasteriser.
+ */
+class TileRasterizerTest {
+
+    @Test
+    @DisplayName("Should cover the pixels of a line with antialiased edges")
+    void shouldCoverLine() {
+        TurtlePath path = new TurtlePath();
+        path.addLine(5, 10.5, 15, 10.5);
+        path.addLine(20.5, 3, 20.5, 30); // vertical
+        BufferedImage image = new BufferedImage(40, 40, BufferedImage.TYPE_INT_ARGB);
+
+        TileRasterizer rasterizer = new TileRasterizer();
+        rasterizer.setLineWidth(1);
+        rasterizer.setColor(0xff204080);
+        rasterizer.draw(path, 1, 0, 0, image);
+
+        assertEquals(0xff204080, image.getRGB(10, 10));
+        assertEquals(0xff204080, image.getRGB(20, 15));
+        assertEquals(0, image.getRGB(10, 9));
+        assertEquals(0, image.getRGB(10, 11));
+        assertEquals(0x80, image.getRGB(4, 10) >>> 24, 1); // half covered by the square cap
+        assertEquals(0, image.getRGB(3, 10));
+    }
+
+    @Test
+    @DisplayName("Should scale, translate and clip segments to the image")
+    void shouldTransformAndClip() {
+        TurtlePath path = new TurtlePath();
+        path.addLine(-100, 2, 100, 2);
+        BufferedImage image = new BufferedImage(100, 70, BufferedImage.TYPE_INT_RGB);
+
+        TileRasterizer rasterizer = new TileRasterizer();
+        rasterizer.setColor(0xffffffff);
+        rasterizer.draw(path, 10, 50, 40.5, image);
+
+        for (int x = 0; x < image.getWidth(); x++) {
+            assertEquals(0xffffffff, image.getRGB(x, 60));
+        }
+        assertEquals(0xff000000, image.getRGB(50, 40));
+    }
+
+    @Test
+    @DisplayName("Should draw wide lines the same wherever they fall on the tile grid")
+    void shouldNotCutWideLinesAtTiles() {
+        TileRasterizer rasterizer = new TileRasterizer();
+        rasterizer.setLineWidth(12);
+
+        int expected = -1;
+        for (int shift = 0; shift <= 16; shift += 4) {
+            TurtlePath path = new TurtlePath();
+            path.addLine(20 + shift, 20 + shift, 56 + shift, 56 + shift);
+            BufferedImage image = new BufferedImage(160, 160, BufferedImage.TYPE_INT_ARGB);
+            rasterizer.draw(path, 1, 0, 0, image);
+
+            int covered = 0;
+            int lastRow = 0;
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    if (image.getRGB(x, y) != 0) {
+                        covered++;
+                        lastRow = y;
+                    }
+                }
+            }
+
+            if (expected < 0) expected = covered;
+            assertEquals(expected, covered, "Pixels covered when shifted by " + shift);
+            assertTrue(lastRow - shift > 63, "Line cut at a tile edge when shifted by " + shift);
+        }
+    }
+
+    @Test
+    @DisplayName("Should rasterise tiles in parallel like sequentially")
+    void shouldRasteriseInParallelLikeSequentially() {
+        TurtlePath path =
+                new TurtleGraphics()
+                        .interpret(
+                                new LSystemEngine(new SimplePlant())
+                                        .generateModules(6, new DerivationContext(1)),
+                                new Point2D.Double());
+        Rectangle2D bounds = path.getBounds();
+        double scale = 300 / Math.max(bounds.getWidth(), bounds.getHeight());
+        double offsetX = -bounds.getX() * scale;
+        double offsetY = -bounds.getY() * scale;
+        BufferedImage sequential = new BufferedImage(300, 300, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage parallel = new BufferedImage(300, 300, BufferedImage.TYPE_INT_ARGB);
+
+        TileRasterizer rasterizer = new TileRasterizer();
+        rasterizer.draw(path, scale, offsetX, offsetY, sequential);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            rasterizer.setParallel(pool);
+            rasterizer.draw(path, scale, offsetX, offsetY, parallel);
+        } finally {
+            pool.shutdown();
+        }
+
+        int drawn = 0;
+        for (int y = 0; y < 300; y++) {
+            for (int x = 0; x < 300; x++) {
+                assertEquals(sequential.getRGB(x, y), parallel.getRGB(x, y));
+                if (sequential.getRGB(x, y) != 0) drawn++;
+            }
+        }
+        assertTrue(drawn > 1000);
+    }
+
+    @Test
+    @DisplayName("Should reject images without int pixels")
+    void shouldRejectUnsupportedImages() {
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_3BYTE_BGR);
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new TileRasterizer().draw(new TurtlePath(), 1, 0, 0, image));
+    }
+}
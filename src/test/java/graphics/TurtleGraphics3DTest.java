@@ -0,0 +1,81 @@
+package graphics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import core.DerivationContext;
+import core.LSystemEngine;
+import core.ModuleString;
+import core.impl.SimplePlant;
+import java.awt.geom.Point2D;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the 3D turtle interpreter.
+ */
+class TurtleGraphics3DTest {
+
+    private static final Point2D START = new Point2D.Double(400, 600);
+
+    @Test
+    @DisplayName("Should draw planar modules like the 2D turtle once projected")
+    void shouldProjectPlanarModulesLike2D() {
+        ModuleString modules = new LSystemEngine(new SimplePlant()).generateModules(5);
+
+        TurtlePath expected = new TurtleGraphics().interpret(modules, START);
+        TurtlePath actual =
+                new TurtleGraphics3D().interpret(modules).project(0, 0, START, new TurtlePath());
+
+        assertEquals(expected.getLineCount(), actual.getLineCount());
+        for (int i = 0; i < expected.getLineCount(); i++) {
+            assertEquals(expected.getX1(i), actual.getX1(i), 1e-3);
+            assertEquals(expected.getY1(i), actual.getY1(i), 1e-3);
+            assertEquals(expected.getX2(i), actual.getX2(i), 1e-3);
+            assertEquals(expected.getY2(i), actual.getY2(i), 1e-3);
+            assertEquals(expected.getDepth(i), actual.getDepth(i));
+            assertEquals(expected.getBranchId(i), actual.getBranchId(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Should pitch and roll the turtle frame")
+    void shouldPitchAndRoll() {
+        TurtlePath3D path =
+                new TurtleGraphics3D(Math.toRadians(90), 10)
+                        .interpret(ModuleString.parse("[&F][\\+F][^(45)|F]F"));
+        float[] coordinates = path.coordinateArray();
+
+        // Pitching down heads away from the viewer
+        assertArrayEquals(new float[] {0, 0, -10}, end(coordinates, 0), 1e-6f);
+        // Rolling left brings the left vector towards the viewer, turning left follows it
+        assertArrayEquals(new float[] {0, 0, 10}, end(coordinates, 1), 1e-6f);
+        // Turning around after pitching up by 45 degrees heads down and back
+        float diagonal = (float) (10 / Math.sqrt(2));
+        assertArrayEquals(new float[] {0, -diagonal, -diagonal}, end(coordinates, 2), 1e-5f);
+        // The branches restored the initial frame
+        assertArrayEquals(new float[] {0, 10, 0}, end(coordinates, 3), 1e-6f);
+    }
+
+    @Test
+    @DisplayName("Should draw a streamed derivation like its final generation")
+    void shouldInterpretStreamedDerivations() {
+        LSystemEngine engine = new LSystemEngine(new SimplePlant());
+        TurtleGraphics3D interpreter = new TurtleGraphics3D();
+
+        TurtlePath3D expected = interpreter.interpret(engine.generateModules(5));
+        TurtlePath3D actual =
+                interpreter.interpret(engine, 5, new DerivationContext(1), new TurtlePath3D());
+
+        int count = expected.getLineCount();
+        assertEquals(count, actual.getLineCount());
+        for (int i = 0; i < 6 * count; i++) {
+            assertEquals(expected.coordinateArray()[i], actual.coordinateArray()[i]);
+        }
+    }
+
+    private static float[] end(float[] coordinates, int segment) {
+        return new float[] {
+            coordinates[6 * segment + 3], coordinates[6 * segment + 4], coordinates[6 * segment + 5]
+        };
+    }
+}
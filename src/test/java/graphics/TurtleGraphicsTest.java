@@ -0,0 +1,204 @@
+package graphics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import core.DerivationContext;
+import core.LSystemEngine;
+import core.ModuleString;
+import core.grammar.RuleParser;
+import core.impl.BinaryTree;
+import core.impl.SimplePlant;
+import core.impl.StochasticBinaryTree;
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the turtle interpreter.
+ */
+class TurtleGraphicsTest {
+
+    private static final Point2D START = new Point2D.Double(400, 600);
+
+    @Test
+    @DisplayName("Should draw the same path from a string as from its modules")
+    void shouldInterpretStringsLikeModules() {
+        ModuleString modules = new LSystemEngine(new BinaryTree()).generateModules(6);
+        TurtleGraphics interpreter = new TurtleGraphics();
+
+        TurtlePath fromModules = interpreter.interpret(modules, START);
+        TurtlePath fromString = interpreter.interpret(modules.toString(), START);
+
+        assertEquals(fromModules.getLineCount(), fromString.getLineCount());
+        for (int i = 0; i < fromModules.getLineCount(); i++) {
+            Line2D.Double expected = fromModules.getLines().get(i);
+            Line2D.Double actual = fromString.getLines().get(i);
+
+            assertEquals(expected.getP1(), actual.getP1());
+            assertEquals(expected.getP2(), actual.getP2());
+        }
+    }
+
+    @Test
+    @DisplayName("Should interpret branches in parallel exactly like sequentially")
+    void shouldInterpretInParallelLikeSequentially() {
+        ModuleString plant = new LSystemEngine(new SimplePlant()).generateModules(7);
+        ModuleString tree =
+                new LSystemEngine(new StochasticBinaryTree())
+                        .generateModules(12, new DerivationContext(42));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        for (ModuleString modules : new ModuleString[] {plant, tree}) {
+            TurtleGraphics interpreter = new TurtleGraphics();
+            TurtlePath expected = interpreter.interpret(modules, START);
+
+            interpreter.setParallel(pool);
+            TurtlePath actual = interpreter.interpret(modules, START);
+
+            assertSamePath(expected, actual);
+        }
+
+        pool.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should draw a derivation as it is streamed like its final generation")
+    void shouldInterpretStreamedDerivations() {
+        LSystemEngine[] engines = {
+            new LSystemEngine(new SimplePlant()),
+            new LSystemEngine(new StochasticBinaryTree()),
+            new LSystemEngine(RuleParser.parse("axiom: BA\nB < A -> B\nA -> FA[+A]A\nB -> A\n"))
+        };
+        TurtleGraphics interpreter = new TurtleGraphics();
+
+        for (LSystemEngine engine : engines) {
+            ModuleString modules = engine.generateModules(6, new DerivationContext(42));
+            TurtlePath expected = interpreter.interpret(modules, START);
+            TurtlePath actual = new TurtlePath();
+            interpreter.interpret(engine, 6, new DerivationContext(42), START, actual);
+
+            assertFalse(expected.isEmpty());
+            assertSamePath(expected, actual);
+        }
+    }
+
+    private static void assertSamePath(TurtlePath expected, TurtlePath actual) {
+        int count = expected.getLineCount();
+        assertEquals(count, actual.getLineCount());
+        assertArrayEquals(
+                Arrays.copyOf(expected.coordinateArray(), 4 * count),
+                Arrays.copyOf(actual.coordinateArray(), 4 * count));
+        for (int i = 0; i < count; i++) {
+            assertEquals(expected.getDepth(i), actual.getDepth(i));
+            assertEquals(expected.getBranchId(i), actual.getBranchId(i));
+            assertEquals(expected.getWidth(i), actual.getWidth(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Should restore the state saved by '[' and ignore unbalanced ']'")
+    void shouldRestoreBranchState() {
+        TurtlePath path = new TurtleGraphics(Math.toRadians(90), 10).interpret("F[+F]F]F", START);
+
+        assertEquals(4, path.getLineCount());
+        assertEquals(new Point2D.Double(400, 590), path.getLines().get(2).getP1());
+        assertEquals(new Point2D.Double(400, 570), path.getLines().get(3).getP2());
+    }
+
+    @Test
+    @DisplayName("Should tag segments with their depth, branch and width")
+    void shouldTagSegments() {
+        // F0 [1 +2 F3 [4 !5 F6 ]7 ]8 F9
+        TurtlePath path =
+                new TurtleGraphics().interpret(ModuleString.parse("F[+F[!(3)F]]F"), START);
+
+        assertEquals(4, path.getLineCount());
+        assertArrayEquals(
+                new int[] {0, 1, 2, 0},
+                new int[] {path.getDepth(0), path.getDepth(1), path.getDepth(2), path.getDepth(3)});
+        assertEquals(TurtlePath.TRUNK, path.getBranchId(0));
+        assertEquals(1, path.getBranchId(1));
+        assertEquals(4, path.getBranchId(2));
+        assertEquals(TurtlePath.TRUNK, path.getBranchId(3));
+        assertEquals(3f, path.getWidth(2));
+        assertEquals(TurtlePath.DEFAULT_WIDTH, path.getWidth(3));
+    }
+
+    @Test
+    @DisplayName("Should draw the same path as turning by angles with sin and cos")
+    void shouldMatchAngleBasedInterpretation() {
+        ModuleString[] inputs = {
+            new LSystemEngine(new SimplePlant()).generateModules(7),
+            new LSystemEngine(new BinaryTree()).generateModules(10),
+            new LSystemEngine(new StochasticBinaryTree()).generateModules(10)
+        };
+
+        for (ModuleString modules : inputs) {
+            TurtlePath path = new TurtleGraphics().interpret(modules, START);
+            double[] expected = interpretWithAngles(modules);
+
+            assertEquals(expected.length / 4, path.getLineCount());
+            float[] actual = path.coordinateArray();
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], actual[i], 1e-3, "Coordinate " + i);
+            }
+        }
+    }
+
+    /**
+     * Reference interpretation tracking the heading as an angle, like the original interpreter
+     */
+    private static double[] interpretWithAngles(ModuleString modules) {
+        double increment = Math.toRadians(25);
+        double x = START.getX();
+        double y = START.getY();
+        double angle = Math.toRadians(90);
+        Deque<double[]> stack = new ArrayDeque<>();
+        double[] lines = new double[modules.size() * 4];
+        int size = 0;
+
+        for (int i = 0; i < modules.size(); i++) {
+            boolean parametric = modules.parameterCount(i) > 0;
+
+            switch (modules.symbolAt(i)) {
+                case 'F':
+                    double step = parametric ? modules.parameter(i, 0) : 8;
+                    double newX = x + step * Math.cos(angle);
+                    double newY = y - step * Math.sin(angle);
+                    lines[size++] = x;
+                    lines[size++] = y;
+                    lines[size++] = newX;
+                    lines[size++] = newY;
+                    x = newX;
+                    y = newY;
+                    break;
+                case 'A':
+                    if (parametric) angle += Math.toRadians(modules.parameter(i, 0));
+                    break;
+                case '+':
+                    angle += increment;
+                    break;
+                case '-':
+                    angle -= increment;
+                    break;
+                case '[':
+                    stack.push(new double[] {x, y, angle});
+                    break;
+                case ']':
+                    double[] state = stack.pop();
+                    x = state[0];
+                    y = state[1];
+                    angle = state[2];
+                    break;
+            }
+        }
+
+        return Arrays.copyOf(lines, size);
+    }
+}